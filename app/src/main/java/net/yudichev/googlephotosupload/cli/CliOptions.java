@@ -15,6 +15,177 @@ public final class CliOptions {
                     .longOpt("no-resume")
                     .desc("Forget previous state and force re-upload of all files")
                     .build())
+            .addOption(Option.builder("t")
+                    .longOpt("upload-threads")
+                    .hasArg()
+                    .argName("COUNT")
+                    .desc("Number of concurrent upload workers; overrides the value in preferences")
+                    .build())
+            .addOption(Option.builder("q")
+                    .longOpt("upload-queue-size")
+                    .hasArg()
+                    .argName("COUNT")
+                    .desc("Max number of upload tasks waiting for a free worker; overrides the value in preferences")
+                    .build())
+            .addOption(Option.builder()
+                    .longOpt("virtual-threads")
+                    .desc("Run uploads and API calls on virtual threads instead of a fixed thread pool")
+                    .build())
+            .addOption(Option.builder()
+                    .longOpt("virtual-thread-permits")
+                    .hasArg()
+                    .argName("COUNT")
+                    .desc("Max number of tasks running at the same time when using virtual threads; overrides the value in preferences")
+                    .build())
+            .addOption(Option.builder()
+                    .longOpt("metadata-threads")
+                    .hasArg()
+                    .argName("COUNT")
+                    .desc("Number of threads performing Google Photos API calls that do not transfer file contents; overrides the value in preferences")
+                    .build())
+            .addOption(Option.builder()
+                    .longOpt("metadata-queue-size")
+                    .hasArg()
+                    .argName("COUNT")
+                    .desc("Max number of API calls waiting for a free metadata thread; overrides the value in preferences")
+                    .build())
+            .addOption(Option.builder()
+                    .longOpt("metadata-channels")
+                    .hasArg()
+                    .argName("COUNT")
+                    .desc("Number of connections Photos Library API calls are spread over, up to 8; overrides the value in preferences")
+                    .build())
+            .addOption(Option.builder()
+                    .longOpt("metadata-channel-selection")
+                    .hasArg()
+                    .argName("SELECTION")
+                    .desc("How a connection is picked for an API call: round-robin or least-loaded; overrides the value in preferences")
+                    .build())
+            .addOption(Option.builder()
+                    .longOpt("listing-threads")
+                    .hasArg()
+                    .argName("COUNT")
+                    .desc("Number of threads listing the cloud library and reconciling albums; overrides the value in preferences")
+                    .build())
+            .addOption(Option.builder()
+                    .longOpt("listing-queue-size")
+                    .hasArg()
+                    .argName("COUNT")
+                    .desc("Max number of listing calls waiting for a free listing thread; overrides the value in preferences")
+                    .build())
+            .addOption(Option.builder()
+                    .longOpt("adaptive-concurrency")
+                    .desc("Adjust the number of concurrent Google Photos API operations automatically based on quota errors and latency")
+                    .build())
+            .addOption(Option.builder()
+                    .longOpt("max-adaptive-concurrency")
+                    .hasArg()
+                    .argName("COUNT")
+                    .desc("Max number of concurrent Google Photos API operations with --adaptive-concurrency; overrides the value in preferences")
+                    .build())
+            .addOption(Option.builder()
+                    .longOpt("api-rate-limit")
+                    .numberOfArgs(2)
+                    .valueSeparator('=')
+                    .argName("TYPE=PER_MINUTE")
+                    .desc("Client side budget per minute for a type of API call (upload - bytes, batch-create, album-create, album-list, " +
+                            "album-items - requests); can be repeated; overrides the value in preferences")
+                    .build())
+            .addOption(Option.builder()
+                    .longOpt("max-active-dirs")
+                    .hasArg()
+                    .argName("COUNT")
+                    .desc("Max number of directories being uploaded at the same time; overrides the value in preferences")
+                    .build())
+            .addOption(Option.builder()
+                    .longOpt("max-in-flight-files")
+                    .hasArg()
+                    .argName("COUNT")
+                    .desc("Max number of files being uploaded at the same time; overrides the value in preferences")
+                    .build())
+            .addOption(Option.builder()
+                    .longOpt("max-mb-in-flight")
+                    .hasArg()
+                    .argName("MEGABYTES")
+                    .desc("Max total size of files being uploaded at the same time; overrides the value in preferences")
+                    .build())
+            .addOption(Option.builder()
+                    .longOpt("large-file-threshold-mb")
+                    .hasArg()
+                    .argName("MEGABYTES")
+                    .desc("Files of this size or bigger are uploaded in the large file lane; overrides the value in preferences")
+                    .build())
+            .addOption(Option.builder()
+                    .longOpt("small-file-lane")
+                    .hasArg()
+                    .argName("COUNT")
+                    .desc("Max number of small files being uploaded at the same time; overrides the value in preferences")
+                    .build())
+            .addOption(Option.builder()
+                    .longOpt("large-file-lane")
+                    .hasArg()
+                    .argName("COUNT")
+                    .desc("Max number of large files being uploaded at the same time; overrides the value in preferences")
+                    .build())
+            .addOption(Option.builder()
+                    .longOpt("resumable-chunk-mb")
+                    .hasArg()
+                    .argName("MEGABYTES")
+                    .desc("Large files are uploaded in chunks of this size and resumed after the last complete chunk; overrides the value in " +
+                            "preferences")
+                    .build())
+            .addOption(Option.builder()
+                    .longOpt("streaming-transport")
+                    .desc("Upload small files with the app's own streaming HTTP client instead of the Google Photos client library")
+                    .build())
+            .addOption(Option.builder()
+                    .longOpt("upload-order")
+                    .hasArg()
+                    .argName("ORDER")
+                    .desc("Which files are uploaded first: path, smallest-first, newest-first or oldest-first; overrides the value in preferences")
+                    .build())
+            .addOption(Option.builder()
+                    .longOpt("upload-stall-timeout-s")
+                    .hasArg()
+                    .argName("SECONDS")
+                    .desc("An upload of a large file, or any upload with --streaming-transport, making no progress for this long is abandoned " +
+                            "and retried; overrides the value in preferences")
+                    .build())
+            .addOption(Option.builder()
+                    .longOpt("min-upload-kbps")
+                    .hasArg()
+                    .argName("KILOBYTES")
+                    .desc("Slowest upload speed, in kilobytes per second, that is still considered healthy; overrides the value in preferences")
+                    .build())
+            .addOption(Option.builder()
+                    .longOpt("bandwidth-schedule")
+                    .hasArg()
+                    .argName("SCHEDULE")
+                    .desc("Upload bandwidth limits by time of day, as comma separated HH:mm-HH:mm=KB_PER_SECOND entries, e.g. 08:00-19:00=5120; " +
+                            "not limited outside of the given periods; overrides the value in preferences")
+                    .build())
+            .addOption(Option.builder()
+                    .longOpt("streaming-create")
+                    .desc("Create media items in batches as soon as enough of them are uploaded, without waiting for the whole directory")
+                    .build())
+            .addOption(Option.builder()
+                    .longOpt("cross-directory-batching")
+                    .desc("When adding to albums after creating items, create items of different directories together in full batches")
+                    .build())
+            .addOption(Option.builder()
+                    .longOpt("create-linger-ms")
+                    .hasArg()
+                    .argName("MILLIS")
+                    .desc("Max time an uploaded item waits for its batch to fill up before the batch is created anyway; overrides the value in " +
+                            "preferences")
+                    .build())
+            .addOption(Option.builder()
+                    .longOpt("state-write-behind-ms")
+                    .hasArg()
+                    .argName("MILLIS")
+                    .desc("Write upload state in batches at least this often instead of committing every change; a crash may lose this much " +
+                            "of the latest progress; overrides the value in preferences")
+                    .build())
             .addOption(Option.builder("v")
                     .longOpt("version")
                     .desc("Print app version")
@@ -11,7 +11,9 @@ import org.slf4j.LoggerFactory;
 
 import javax.inject.Inject;
 import java.time.Duration;
+import java.util.List;
 import java.util.Optional;
+import java.util.OptionalLong;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -36,6 +38,7 @@ final class LoggingProgressStatusFactory implements ProgressStatusFactory {
             private int successCount;
             private Optional<Integer> totalCount = totalCountOpt;
             private int failureCount;
+            private int stallCount;
 
             @Override
             public void updateSuccess(int newValue) {
@@ -67,6 +70,29 @@ final class LoggingProgressStatusFactory implements ProgressStatusFactory {
                 }
             }
 
+            @Override
+            public void onConcurrencyLimitChange(int currentLimit, List<Integer> limitHistory) {
+                logger.info("{}: concurrency limit is now {} (recent values: {})", name, currentLimit, limitHistory);
+            }
+
+            @Override
+            public void onTransferStalled() {
+                int count = inLock(lock, () -> ++stallCount);
+                logger.warn("{}: a stalled transfer was abandoned and will be retried ({} so far)", name, count);
+            }
+
+            @Override
+            public void onBandwidthLimitChange(OptionalLong bytesPerSecond) {
+                bytesPerSecond.ifPresentOrElse(
+                        limit -> logger.info("{}: upload bandwidth limited to {} KB/s", name, limit / 1024),
+                        () -> logger.info("{}: upload bandwidth not limited", name));
+            }
+
+            @Override
+            public void onBytesLostToExpiry(long totalBytes) {
+                logger.warn("{}: an upload token expired and the file will be uploaded again ({} MB re-uploaded so far)", name, totalBytes / (1024 * 1024));
+            }
+
             @Override
             public void addFailure(KeyedError keyedError) {
                 logger.warn("Failure for {}: {}", keyedError.getKey(), keyedError.getError());
@@ -1,19 +1,35 @@
 package net.yudichev.googlephotosupload.cli;
 
+import net.yudichev.googlephotosupload.core.ApiCallType;
+import net.yudichev.googlephotosupload.core.BandwidthSchedules;
+import net.yudichev.googlephotosupload.core.MetadataChannelSelection;
 import net.yudichev.googlephotosupload.core.Preferences;
 import net.yudichev.googlephotosupload.core.PreferencesManager;
+import net.yudichev.googlephotosupload.core.UploadExecutionMode;
+import net.yudichev.googlephotosupload.core.UploadOrder;
+import net.yudichev.googlephotosupload.core.UploadTransport;
 import net.yudichev.jiotty.common.varstore.VarStore;
+import org.apache.commons.cli.CommandLine;
 
 import javax.inject.Inject;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
 import java.util.function.Function;
 
+import static com.google.common.base.Preconditions.checkArgument;
+
 final class PreferencesManagerImpl implements PreferencesManager {
     private static final String VAR_STORE_KEY = "preferences";
     private final Preferences preferences;
 
     @Inject
-    PreferencesManagerImpl(VarStore varStore) {
-        preferences = varStore.readValue(Preferences.class, VAR_STORE_KEY).orElseGet(() -> Preferences.builder().build());
+    PreferencesManagerImpl(VarStore varStore, CommandLine commandLine) {
+        preferences = applyCommandLineOverrides(
+                varStore.readValue(Preferences.class, VAR_STORE_KEY).orElseGet(() -> Preferences.builder().build()),
+                commandLine);
     }
 
     @Override
@@ -25,4 +41,116 @@ final class PreferencesManagerImpl implements PreferencesManager {
     public Preferences get() {
         return preferences;
     }
+
+    private static Preferences applyCommandLineOverrides(Preferences preferences, CommandLine commandLine) {
+        var result = preferences;
+        result = intOption(commandLine, "upload-threads").map(result::withUploadThreadCount).orElse(result);
+        result = intOption(commandLine, "upload-queue-size").map(result::withUploadQueueCapacity).orElse(result);
+        if (commandLine.hasOption("virtual-threads")) {
+            result = result.withUploadExecutionMode(UploadExecutionMode.VIRTUAL_THREADS);
+        }
+        result = intOption(commandLine, "virtual-thread-permits").map(result::withVirtualThreadPermitCount).orElse(result);
+        result = intOption(commandLine, "metadata-threads").map(result::withMetadataThreadCount).orElse(result);
+        result = intOption(commandLine, "metadata-queue-size").map(result::withMetadataQueueCapacity).orElse(result);
+        result = intOption(commandLine, "metadata-channels").map(result::withMetadataChannelCount).orElse(result);
+        if (commandLine.hasOption("metadata-channel-selection")) {
+            result = result.withMetadataChannelSelection(parseMetadataChannelSelection(commandLine.getOptionValue("metadata-channel-selection")));
+        }
+        result = intOption(commandLine, "listing-threads").map(result::withListingThreadCount).orElse(result);
+        result = intOption(commandLine, "listing-queue-size").map(result::withListingQueueCapacity).orElse(result);
+        result = intOption(commandLine, "max-adaptive-concurrency").map(result::withMaxAdaptiveConcurrency).orElse(result);
+        result = intOption(commandLine, "max-active-dirs").map(result::withMaxActiveDirectories).orElse(result);
+        result = intOption(commandLine, "max-in-flight-files").map(result::withMaxInFlightFiles).orElse(result);
+        result = intOption(commandLine, "max-mb-in-flight").map(result::withMaxMegabytesInFlight).orElse(result);
+        result = intOption(commandLine, "large-file-threshold-mb").map(result::withLargeFileThresholdMegabytes).orElse(result);
+        result = intOption(commandLine, "small-file-lane").map(result::withSmallFileLaneConcurrency).orElse(result);
+        result = intOption(commandLine, "large-file-lane").map(result::withLargeFileLaneConcurrency).orElse(result);
+        result = intOption(commandLine, "resumable-chunk-mb").map(result::withResumableUploadChunkMegabytes).orElse(result);
+        if (commandLine.hasOption("streaming-transport")) {
+            result = result.withUploadTransport(UploadTransport.STREAMING);
+        }
+        if (commandLine.hasOption("upload-order")) {
+            result = result.withUploadOrder(parseUploadOrder(commandLine.getOptionValue("upload-order")));
+        }
+        result = intOption(commandLine, "upload-stall-timeout-s").map(result::withUploadStallTimeoutSeconds).orElse(result);
+        result = intOption(commandLine, "min-upload-kbps").map(result::withMinUploadKilobytesPerSecond).orElse(result);
+        if (commandLine.hasOption("bandwidth-schedule")) {
+            result = result.withBandwidthSchedule(BandwidthSchedules.parse(commandLine.getOptionValue("bandwidth-schedule")));
+        }
+        if (commandLine.hasOption("adaptive-concurrency")) {
+            result = result.withAdaptiveConcurrency(true);
+        }
+        if (commandLine.hasOption("streaming-create")) {
+            result = result.withStreamingMediaItemCreation(true);
+        }
+        if (commandLine.hasOption("cross-directory-batching")) {
+            result = result.withCrossDirectoryMediaItemBatching(true);
+        }
+        if (commandLine.hasOption("create-linger-ms")) {
+            result = result.withMediaItemCreationLingerMillis(parsePositiveLong("create-linger-ms", commandLine.getOptionValue("create-linger-ms")));
+        }
+        if (commandLine.hasOption("state-write-behind-ms")) {
+            result = result.withStateWriteBehindMillis(parsePositiveLong("state-write-behind-ms", commandLine.getOptionValue("state-write-behind-ms")));
+        }
+        if (commandLine.hasOption("api-rate-limit")) {
+            Map<ApiCallType, Long> rateLimits = new EnumMap<>(ApiCallType.class);
+            rateLimits.putAll(result.apiRateLimitsPerMinute());
+            commandLine.getOptionProperties("api-rate-limit").forEach((type, limit) -> rateLimits.put(
+                    parseCallType((String) type),
+                    parsePositiveLong("api-rate-limit", (String) limit)));
+            result = result.withApiRateLimitsPerMinute(rateLimits);
+        }
+        return result;
+    }
+
+    private static ApiCallType parseCallType(String value) {
+        try {
+            return ApiCallType.valueOf(value.toUpperCase(Locale.ROOT).replace('-', '_'));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown API call type: " + value + ", must be one of " + Arrays.toString(ApiCallType.values()), e);
+        }
+    }
+
+    private static UploadOrder parseUploadOrder(String value) {
+        try {
+            return UploadOrder.valueOf(value.toUpperCase(Locale.ROOT).replace('-', '_'));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown upload order: " + value + ", must be one of " + Arrays.toString(UploadOrder.values()), e);
+        }
+    }
+
+    private static MetadataChannelSelection parseMetadataChannelSelection(String value) {
+        try {
+            return MetadataChannelSelection.valueOf(value.toUpperCase(Locale.ROOT).replace('-', '_'));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown metadata channel selection: " + value + ", must be one of " +
+                    Arrays.toString(MetadataChannelSelection.values()), e);
+        }
+    }
+
+    private static long parsePositiveLong(String longOpt, String value) {
+        long result;
+        try {
+            result = Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Option --" + longOpt + " must be an integer, but was: " + value, e);
+        }
+        checkArgument(result > 0, "Option --%s must be positive, but was: %s", longOpt, result);
+        return result;
+    }
+
+    private static Optional<Integer> intOption(CommandLine commandLine, String longOpt) {
+        return Optional.ofNullable(commandLine.getOptionValue(longOpt))
+                .map(value -> {
+                    try {
+                        return Integer.parseInt(value);
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("Option --" + longOpt + " must be an integer, but was: " + value, e);
+                    }
+                })
+                .map(value -> {
+                    checkArgument(value > 0, "Option --%s must be positive, but was: %s", longOpt, value);
+                    return value;
+                });
+    }
 }
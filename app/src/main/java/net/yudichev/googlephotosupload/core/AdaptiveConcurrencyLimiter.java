@@ -0,0 +1,30 @@
+package net.yudichev.googlephotosupload.core;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+
+interface AdaptiveConcurrencyLimiter {
+    /**
+     * Runs the action as soon as the number of actions in flight drops below the current limit. The outcome and the latency of the action are
+     * used to adjust the limit.
+     *
+     * @param executor where the action is started if it has to wait for a permit, rather than on the thread that released the permit
+     * @param bytes    the number of bytes the action uploads, if any; the latency of uploads is compared per byte, so that a big file is not
+     *                 mistaken for an overload
+     */
+    <T> CompletableFuture<T> withPermit(Executor executor, long bytes, Supplier<CompletableFuture<T>> action);
+
+    int currentLimit();
+
+    /**
+     * @return the most recent limit values, oldest first, the last one being the current limit
+     */
+    List<Integer> limitHistory();
+
+    void addLimitChangeListener(IntConsumer listener);
+
+    void removeLimitChangeListener(IntConsumer listener);
+}
@@ -0,0 +1,255 @@
+package net.yudichev.googlephotosupload.core;
+
+import com.google.api.gax.rpc.ResourceExhaustedException;
+import com.google.api.gax.rpc.UnavailableException;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import net.yudichev.jiotty.common.inject.BaseLifecycleComponent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Throwables.getCausalChain;
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static net.yudichev.jiotty.common.lang.Locks.inLock;
+
+/**
+ * AIMD limiter: every healthy completion adds {@code 1/limit} to the limit (i.e. roughly +1 per "round trip" of all permits), every overload
+ * signal from Google halves it. Only one decrease is applied per overload episode: a failure of an operation that started before the last
+ * decrease does not decrease the limit again. The limit starts low and grows from there up to {@link Preferences#maxAdaptiveConcurrency()}.
+ * <p>
+ * Byte transfers and metadata API calls each have a limiter of their own, so that a few long uploads do not take the permits cheap API calls
+ * need, and the latencies of the two kinds of call are not compared with each other.
+ */
+abstract class AdaptiveConcurrencyLimiterImpl extends BaseLifecycleComponent implements AdaptiveConcurrencyLimiter {
+    private static final Logger logger = LoggerFactory.getLogger(AdaptiveConcurrencyLimiterImpl.class);
+    private static final Set<Class<? extends Throwable>> OVERLOAD_EXCEPTION_TYPES = ImmutableSet.of(
+            ResourceExhaustedException.class,
+            UnavailableException.class);
+    private static final double MIN_LIMIT = 1;
+    private static final int INITIAL_LIMIT = 4;
+    private static final double DECREASE_FACTOR = 0.5;
+    /**
+     * Completion is considered healthy if its latency (per byte, for uploads) does not exceed the smoothed one by more than this factor.
+     */
+    private static final double LATENCY_TOLERANCE = 2.0;
+    private static final double LATENCY_SMOOTHING_FACTOR = 0.1;
+    private static final int HISTORY_SIZE = 50;
+
+    private final PreferencesManager preferencesManager;
+    private final String laneName;
+    private final Lock lock = new ReentrantLock();
+    private final Deque<CompletableFuture<Void>> waiters = new ArrayDeque<>();
+    private final Deque<Integer> history = new ArrayDeque<>(HISTORY_SIZE);
+    private final List<IntConsumer> listeners = new CopyOnWriteArrayList<>();
+
+    private boolean enabled;
+    private int maxLimit;
+    private double limit;
+    private int inFlight;
+    private double smoothedLatencyNanos;
+    private double smoothedNanosPerByte;
+    private long lastDecreaseNanos;
+
+    AdaptiveConcurrencyLimiterImpl(PreferencesManager preferencesManager, String laneName) {
+        this.preferencesManager = checkNotNull(preferencesManager);
+        this.laneName = checkNotNull(laneName);
+    }
+
+    @Override
+    public <T> CompletableFuture<T> withPermit(Executor executor, long bytes, Supplier<CompletableFuture<T>> action) {
+        var permit = acquire();
+        // a waiter is admitted on the thread releasing a permit, typically a transport callback thread, which must not run the action
+        return (permit.isDone() ? permit : permit.thenApplyAsync(ignored -> null, executor)).thenCompose(ignored -> {
+            var startNanos = System.nanoTime();
+            CompletableFuture<T> result;
+            try {
+                result = action.get();
+            } catch (RuntimeException e) {
+                release(startNanos, bytes, e);
+                throw e;
+            }
+            return result.whenComplete((value, exception) -> release(startNanos, bytes, exception));
+        });
+    }
+
+    @Override
+    public int currentLimit() {
+        return inLock(lock, this::effectiveLimit);
+    }
+
+    @Override
+    public List<Integer> limitHistory() {
+        return inLock(lock, () -> ImmutableList.copyOf(history));
+    }
+
+    @Override
+    public void addLimitChangeListener(IntConsumer listener) {
+        listeners.add(checkNotNull(listener));
+    }
+
+    @Override
+    public void removeLimitChangeListener(IntConsumer listener) {
+        listeners.remove(listener);
+    }
+
+    @Override
+    protected void doStart() {
+        var preferences = preferencesManager.get();
+        var adaptiveConcurrency = preferences.adaptiveConcurrency();
+        var maxConcurrency = preferences.maxAdaptiveConcurrency();
+        var initialLimit = Math.min(INITIAL_LIMIT, maxConcurrency);
+        inLock(lock, () -> {
+            enabled = adaptiveConcurrency;
+            maxLimit = maxConcurrency;
+            limit = initialLimit;
+            inFlight = 0;
+            smoothedLatencyNanos = 0;
+            smoothedNanosPerByte = 0;
+            lastDecreaseNanos = System.nanoTime();
+            history.clear();
+            history.add(initialLimit);
+        });
+        if (adaptiveConcurrency) {
+            logger.info("Adaptive {} concurrency enabled, initial limit {}, max limit {}", laneName, initialLimit, maxConcurrency);
+        }
+    }
+
+    @Override
+    protected void doStop() {
+        List<CompletableFuture<Void>> abandonedWaiters = inLock(lock, () -> {
+            if (enabled) {
+                logger.info("{} concurrency limit history: {}", laneName, history);
+            }
+            List<CompletableFuture<Void>> result = new ArrayList<>(waiters);
+            waiters.clear();
+            enabled = false;
+            return result;
+        });
+        abandonedWaiters.forEach(waiter -> waiter.completeExceptionally(new IllegalStateException("concurrency limiter stopped")));
+    }
+
+    private CompletableFuture<Void> acquire() {
+        return inLock(lock, () -> {
+            if (!enabled) {
+                return completedFuture(null);
+            }
+            if (inFlight < effectiveLimit()) {
+                inFlight++;
+                return completedFuture(null);
+            }
+            var waiter = new CompletableFuture<Void>();
+            waiters.add(waiter);
+            return waiter;
+        });
+    }
+
+    private void release(long startNanos, long bytes, @Nullable Throwable exception) {
+        List<CompletableFuture<Void>> admittedWaiters = new ArrayList<>();
+        Optional<Integer> changedLimit = inLock(lock, () -> {
+            if (!enabled) {
+                return Optional.empty();
+            }
+            inFlight--;
+            var oldLimit = effectiveLimit();
+            adjustLimit(startNanos, bytes, exception);
+            var newLimit = effectiveLimit();
+            while (inFlight < newLimit && !waiters.isEmpty()) {
+                inFlight++;
+                admittedWaiters.add(waiters.poll());
+            }
+            if (newLimit == oldLimit) {
+                return Optional.empty();
+            }
+            if (history.size() == HISTORY_SIZE) {
+                history.removeFirst();
+            }
+            history.addLast(newLimit);
+            logger.debug("{} concurrency limit changed {} -> {}", laneName, oldLimit, newLimit);
+            return Optional.of(newLimit);
+        });
+        changedLimit.ifPresent(this::notifyListeners);
+        admittedWaiters.forEach(waiter -> waiter.complete(null));
+    }
+
+    private void adjustLimit(long startNanos, long bytes, @Nullable Throwable exception) {
+        var nowNanos = System.nanoTime();
+        if (exception != null) {
+            if (isOverload(exception) && startNanos - lastDecreaseNanos > 0) {
+                limit = Math.max(MIN_LIMIT, limit * DECREASE_FACTOR);
+                lastDecreaseNanos = nowNanos;
+            }
+            return;
+        }
+        boolean healthy;
+        if (bytes > 0) {
+            var nanosPerByte = (double) (nowNanos - startNanos) / bytes;
+            healthy = isHealthy(nanosPerByte, smoothedNanosPerByte);
+            smoothedNanosPerByte = smooth(smoothedNanosPerByte, nanosPerByte);
+        } else {
+            double latencyNanos = nowNanos - startNanos;
+            healthy = isHealthy(latencyNanos, smoothedLatencyNanos);
+            smoothedLatencyNanos = smooth(smoothedLatencyNanos, latencyNanos);
+        }
+        if (healthy) {
+            limit = Math.min(maxLimit, limit + 1 / limit);
+        }
+    }
+
+    private int effectiveLimit() {
+        //noinspection NumericCastThatLosesPrecision intended
+        return (int) limit;
+    }
+
+    private void notifyListeners(int newLimit) {
+        for (var listener : listeners) {
+            try {
+                listener.accept(newLimit);
+            } catch (RuntimeException e) {
+                logger.warn("Concurrency limit listener failed", e);
+            }
+        }
+    }
+
+    private static boolean isHealthy(double latency, double smoothedLatency) {
+        return smoothedLatency == 0 || latency <= smoothedLatency * LATENCY_TOLERANCE;
+    }
+
+    private static double smooth(double smoothedValue, double value) {
+        return smoothedValue == 0 ? value : smoothedValue + LATENCY_SMOOTHING_FACTOR * (value - smoothedValue);
+    }
+
+    private static boolean isOverload(Throwable exception) {
+        return getCausalChain(exception).stream().anyMatch(e -> OVERLOAD_EXCEPTION_TYPES.contains(e.getClass()));
+    }
+
+    static final class ByteTransfer extends AdaptiveConcurrencyLimiterImpl {
+        @Inject
+        ByteTransfer(PreferencesManager preferencesManager) {
+            super(preferencesManager, "upload");
+        }
+    }
+
+    static final class MetadataCalls extends AdaptiveConcurrencyLimiterImpl {
+        @Inject
+        MetadataCalls(PreferencesManager preferencesManager) {
+            super(preferencesManager, "api");
+        }
+    }
+}
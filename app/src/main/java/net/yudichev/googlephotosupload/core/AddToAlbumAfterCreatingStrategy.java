@@ -22,32 +22,51 @@ import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.collect.ImmutableList.toImmutableList;
 import static com.google.common.collect.Lists.partition;
 import static java.util.Comparator.comparing;
-import static net.yudichev.googlephotosupload.core.Bindings.Backpressured;
+import static net.yudichev.googlephotosupload.core.Bindings.MetadataCalls;
 import static net.yudichev.googlephotosupload.core.GooglePhotosUploaderImpl.GOOGLE_PHOTOS_API_BATCH_SIZE;
+import static net.yudichev.jiotty.common.lang.CompletableFutures.toFutureOfList;
 import static net.yudichev.jiotty.common.lang.CompletableFutures.toFutureOfListChaining;
 
 final class AddToAlbumAfterCreatingStrategy implements AddToAlbumStrategy {
     private final Provider<ExecutorService> executorServiceProvider;
     private final FatalUserCorrectableRemoteApiExceptionHandler fatalUserCorrectableHandler;
     private final CloudOperationHelper cloudOperationHelper;
+    private final PreferencesManager preferencesManager;
+    private final CreateMediaItemsBatcher createMediaItemsBatcher;
 
     @Inject
-    AddToAlbumAfterCreatingStrategy(@Backpressured Provider<ExecutorService> executorServiceProvider,
+    AddToAlbumAfterCreatingStrategy(@MetadataCalls Provider<ExecutorService> executorServiceProvider,
                                     FatalUserCorrectableRemoteApiExceptionHandler fatalUserCorrectableHandler,
-                                    CloudOperationHelper cloudOperationHelper) {
+                                    CloudOperationHelper cloudOperationHelper,
+                                    PreferencesManager preferencesManager,
+                                    CreateMediaItemsBatcher createMediaItemsBatcher) {
         this.executorServiceProvider = checkNotNull(executorServiceProvider);
         this.fatalUserCorrectableHandler = checkNotNull(fatalUserCorrectableHandler);
         this.cloudOperationHelper = checkNotNull(cloudOperationHelper);
+        this.preferencesManager = checkNotNull(preferencesManager);
+        this.createMediaItemsBatcher = checkNotNull(createMediaItemsBatcher);
     }
 
     @Override
-    public CompletableFuture<Void> addToAlbum(CompletableFuture<List<PathState>> createMediaDataResultsFuture,
+    public CompletableFuture<Void> addToAlbum(List<CompletableFuture<PathState>> createMediaDataResultFutures,
                                               Optional<GooglePhotosAlbum> googlePhotosAlbum,
                                               ProgressStatus fileProgressStatus,
                                               ProgressStatus directoryProgressStatus,
                                               BiFunction<Optional<String>, List<PathState>, CompletableFuture<List<PathMediaItemOrError>>> createMediaItems,
                                               Function<Path, ItemState> itemStateRetriever) {
-        return createMediaDataResultsFuture
+        if (preferencesManager.get().crossDirectoryMediaItemBatching()) {
+            // items are created without an album, so items from all directories can share full batches; album membership is added per directory
+            return createMediaDataResultFutures.stream()
+                    .map(createMediaDataResultFuture -> createMediaDataResultFuture.thenCompose(
+                            pathState -> createMediaItemsBatcher.create(Optional.empty(), pathState, createMediaItems)))
+                    .collect(toFutureOfList())
+                    .thenCompose(createdItems -> addToAlbum(googlePhotosAlbum,
+                            createdItems.stream().flatMap(Optional::stream),
+                            fileProgressStatus,
+                            directoryProgressStatus));
+        }
+        return createMediaDataResultFutures.stream()
+                .collect(toFutureOfList())
                 .thenCompose(createMediaDataResults -> partition(createMediaDataResults, GOOGLE_PHOTOS_API_BATCH_SIZE).stream()
                         .collect(toFutureOfListChaining(pathStates -> createMediaItems.apply(Optional.empty(), pathStates)))
                         .thenApply(lists -> lists.stream().flatMap(Collection::stream)))
@@ -72,12 +91,14 @@ final class AddToAlbumAfterCreatingStrategy implements AddToAlbumStrategy {
                             // (see https://github.com/ylexus/jiotty-photos-uploader/issues/34#issuecomment-639876779)
                             .distinct()
                             .collect(toImmutableList());
-                    return cloudOperationHelper.withBackOffAndRetry("add items to album",
-                            () -> partition(mediaItemsToAddToAlbum, GOOGLE_PHOTOS_API_BATCH_SIZE).stream()
-                                    .collect(toFutureOfListChaining(mediaItems -> album
-                                            .addMediaItems(mediaItems, statusUpdatingExecutor(album, directoryProgressStatus))))
-                                    .<Void>thenApply(ignored -> null),
-                            fileProgressStatus::onBackoffDelay)
+                    // each batch is a separate request, so paced and retried on its own
+                    return partition(mediaItemsToAddToAlbum, GOOGLE_PHOTOS_API_BATCH_SIZE).stream()
+                            .collect(toFutureOfListChaining(mediaItems -> cloudOperationHelper.withBackOffAndRetry(
+                                    ApiCallType.ALBUM_ITEMS,
+                                    "add items to album",
+                                    () -> album.addMediaItems(mediaItems, statusUpdatingExecutor(album, directoryProgressStatus)),
+                                    fileProgressStatus::onBackoffDelay)))
+                            .<Void>thenApply(ignored -> null)
                             .exceptionallyCompose(exception -> fatalUserCorrectableHandler.handle(
                                     "adding items to album " + album.getTitle(), exception)
                                     .map(errorMessage -> {
@@ -10,7 +10,7 @@ import java.util.function.BiFunction;
 import java.util.function.Function;
 
 interface AddToAlbumStrategy {
-    CompletableFuture<Void> addToAlbum(CompletableFuture<List<PathState>> createMediaDataResultsFuture,
+    CompletableFuture<Void> addToAlbum(List<CompletableFuture<PathState>> createMediaDataResultFutures,
                                        Optional<GooglePhotosAlbum> googlePhotosAlbum,
                                        ProgressStatus fileProgressStatus,
                                        ProgressStatus directoryProgressStatus,
@@ -2,6 +2,7 @@ package net.yudichev.googlephotosupload.core;
 
 import net.yudichev.jiotty.connector.google.photos.GooglePhotosAlbum;
 
+import javax.inject.Inject;
 import java.nio.file.Path;
 import java.util.List;
 import java.util.Optional;
@@ -9,25 +10,48 @@ import java.util.concurrent.CompletableFuture;
 import java.util.function.BiFunction;
 import java.util.function.Function;
 
+import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.collect.Lists.partition;
 import static net.yudichev.googlephotosupload.core.GooglePhotosUploaderImpl.GOOGLE_PHOTOS_API_BATCH_SIZE;
 import static net.yudichev.jiotty.common.lang.CompletableFutures.toFutureOfList;
 
 final class AddToAlbumWhileCreatingStrategy implements AddToAlbumStrategy {
+    private final PreferencesManager preferencesManager;
+    private final CreateMediaItemsBatcher createMediaItemsBatcher;
+
+    @Inject
+    AddToAlbumWhileCreatingStrategy(PreferencesManager preferencesManager,
+                                    CreateMediaItemsBatcher createMediaItemsBatcher) {
+        this.preferencesManager = checkNotNull(preferencesManager);
+        this.createMediaItemsBatcher = checkNotNull(createMediaItemsBatcher);
+    }
+
     @Override
-    public CompletableFuture<Void> addToAlbum(CompletableFuture<List<PathState>> createMediaDataResultsFuture,
+    public CompletableFuture<Void> addToAlbum(List<CompletableFuture<PathState>> createMediaDataResultFutures,
                                               Optional<GooglePhotosAlbum> googlePhotosAlbum,
                                               ProgressStatus fileProgressStatus,
                                               ProgressStatus directoryProgressStatus,
                                               BiFunction<Optional<String>, List<PathState>, CompletableFuture<List<PathMediaItemOrError>>> createMediaItems,
                                               Function<Path, ItemState> itemStateRetriever) {
-        return createMediaDataResultsFuture
+        var albumId = googlePhotosAlbum.map(GooglePhotosAlbum::getId);
+        if (preferencesManager.get().streamingMediaItemCreation()) {
+            // items are created as soon as a batch worth of them is uploaded, while the rest of the directory is still uploading
+            return createMediaDataResultFutures.stream()
+                    .map(createMediaDataResultFuture -> createMediaDataResultFuture.thenCompose(pathState -> {
+                        directoryProgressStatus.updateDescription(googlePhotosAlbum.map(GooglePhotosAlbum::getTitle).orElse(""));
+                        return createMediaItemsBatcher.create(albumId, pathState, createMediaItems);
+                    }))
+                    .collect(toFutureOfList())
+                    .thenApply(voids -> null);
+        }
+        return createMediaDataResultFutures.stream()
+                .collect(toFutureOfList())
                 .thenCompose(createMediaDataResults -> partition(createMediaDataResults, GOOGLE_PHOTOS_API_BATCH_SIZE).stream()
                         .map(pathStates -> {
                             directoryProgressStatus.updateDescription(googlePhotosAlbum.map(GooglePhotosAlbum::getTitle).orElse(""));
-                            return createMediaItems.apply(googlePhotosAlbum.map(GooglePhotosAlbum::getId), pathStates);
+                            return createMediaItems.apply(albumId, pathStates);
                         })
                         .collect(toFutureOfList())
                         .thenApply(voids -> null));
     }
-}
\ No newline at end of file
+}
@@ -28,7 +28,8 @@ import static com.google.common.collect.ImmutableList.toImmutableList;
 import static com.google.common.collect.ImmutableMap.toImmutableMap;
 import static java.lang.Math.min;
 import static java.util.concurrent.CompletableFuture.completedFuture;
-import static net.yudichev.googlephotosupload.core.Bindings.Backpressured;
+import static net.yudichev.googlephotosupload.core.Bindings.Listing;
+import static net.yudichev.googlephotosupload.core.Bindings.MetadataCalls;
 import static net.yudichev.jiotty.common.lang.CompletableFutures.toFutureOfList;
 import static net.yudichev.jiotty.common.lang.MoreThrowables.getAsUnchecked;
 
@@ -36,21 +37,25 @@ final class AlbumManagerImpl extends BaseLifecycleComponent implements AlbumMana
     private static final Logger logger = LoggerFactory.getLogger(AlbumManagerImpl.class);
 
     private final GooglePhotosClient googlePhotosClient;
-    private final Provider<ExecutorService> executorServiceProvider;
+    private final Provider<ExecutorService> listingExecutorServiceProvider;
+    private final Provider<ExecutorService> metadataExecutorServiceProvider;
     private final CloudOperationHelper cloudOperationHelper;
     private final ProgressStatusFactory progressStatusFactory;
     private final ResourceBundle resourceBundle;
 
-    private volatile ExecutorService executorService;
+    private volatile ExecutorService listingExecutorService;
+    private volatile ExecutorService metadataExecutorService;
 
     @Inject
     AlbumManagerImpl(GooglePhotosClient googlePhotosClient,
-                     @Backpressured Provider<ExecutorService> executorServiceProvider,
+                     @Listing Provider<ExecutorService> listingExecutorServiceProvider,
+                     @MetadataCalls Provider<ExecutorService> metadataExecutorServiceProvider,
                      CloudOperationHelper cloudOperationHelper,
                      ProgressStatusFactory progressStatusFactory,
                      ResourceBundle resourceBundle) {
         this.googlePhotosClient = checkNotNull(googlePhotosClient);
-        this.executorServiceProvider = checkNotNull(executorServiceProvider);
+        this.listingExecutorServiceProvider = checkNotNull(listingExecutorServiceProvider);
+        this.metadataExecutorServiceProvider = checkNotNull(metadataExecutorServiceProvider);
         this.cloudOperationHelper = checkNotNull(cloudOperationHelper);
         this.progressStatusFactory = checkNotNull(progressStatusFactory);
         this.resourceBundle = checkNotNull(resourceBundle);
@@ -58,7 +63,8 @@ final class AlbumManagerImpl extends BaseLifecycleComponent implements AlbumMana
 
     @Override
     protected void doStart() {
-        executorService = executorServiceProvider.get();
+        listingExecutorService = listingExecutorServiceProvider.get();
+        metadataExecutorService = metadataExecutorServiceProvider.get();
     }
 
     @Override
@@ -144,14 +150,14 @@ final class AlbumManagerImpl extends BaseLifecycleComponent implements AlbumMana
                                 }
                                 var addOperationName = "add " + itemsToAdd.size() + " items for " + sourceAlbum.getTitle() +
                                         " to album " + destinationAlbum.getId();
-                                addFuture = cloudOperationHelper.withBackOffAndRetry(addOperationName,
-                                        () -> withInvalidMediaItemErrorIgnored(addOperationName, destinationAlbum.addMediaItems(itemsToAdd, executorService)),
+                                addFuture = cloudOperationHelper.withBackOffAndRetry(ApiCallType.ALBUM_ITEMS, addOperationName,
+                                        () -> withInvalidMediaItemErrorIgnored(addOperationName, destinationAlbum.addMediaItems(itemsToAdd, listingExecutorService)),
                                         backoffEventConsumer);
                             }
                             var removeOperationName = "remove " + itemsInGroup.size() + " items for " + sourceAlbum.getTitle() +
                                     " from album " + sourceAlbum.getId();
-                            return addFuture.thenCompose(aVoid -> cloudOperationHelper.withBackOffAndRetry(removeOperationName,
-                                    () -> withInvalidMediaItemErrorIgnored(removeOperationName, sourceAlbum.removeMediaItems(itemsInGroup, executorService)),
+                            return addFuture.thenCompose(aVoid -> cloudOperationHelper.withBackOffAndRetry(ApiCallType.ALBUM_ITEMS, removeOperationName,
+                                    () -> withInvalidMediaItemErrorIgnored(removeOperationName, sourceAlbum.removeMediaItems(itemsInGroup, listingExecutorService)),
                                     backoffEventConsumer));
                         })
                         .collect(toFutureOfList())
@@ -166,8 +172,9 @@ final class AlbumManagerImpl extends BaseLifecycleComponent implements AlbumMana
 
     private CompletableFuture<List<GoogleMediaItem>> getItemsInAlbum(GooglePhotosAlbum sourceAlbum, LongConsumer backoffEventConsumer) {
         return cloudOperationHelper.withBackOffAndRetry(
+                ApiCallType.ALBUM_LIST,
                 "get media items in album " + sourceAlbum.getId(),
-                () -> sourceAlbum.getMediaItems(executorService),
+                () -> sourceAlbum.getMediaItems(listingExecutorService),
                 backoffEventConsumer);
     }
 
@@ -217,8 +224,9 @@ final class AlbumManagerImpl extends BaseLifecycleComponent implements AlbumMana
                 .orElseGet(() -> {
                     logger.info("Creating album [{}] for path [{}]", filesystemAlbumTitle, path);
                     return cloudOperationHelper.withBackOffAndRetry(
+                            ApiCallType.ALBUM_CREATE,
                             "create album " + filesystemAlbumTitle,
-                            () -> googlePhotosClient.createAlbum(filesystemAlbumTitle, executorService),
+                            () -> googlePhotosClient.createAlbum(filesystemAlbumTitle, metadataExecutorService),
                             backoffEventConsumer);
                 });
     }
@@ -0,0 +1,28 @@
+package net.yudichev.googlephotosupload.core;
+
+/**
+ * Kinds of remote calls that have separate request budgets, see {@link Preferences#apiRateLimitsPerMinute()}.
+ */
+public enum ApiCallType {
+    /**
+     * Upload of media bytes; budgeted in bytes rather than requests.
+     */
+    UPLOAD,
+    /**
+     * {@code mediaItems.batchCreate}.
+     */
+    BATCH_CREATE,
+    ALBUM_CREATE,
+    /**
+     * Listing of albums and of media items in an album.
+     */
+    ALBUM_LIST,
+    /**
+     * Adding media items to and removing them from an album.
+     */
+    ALBUM_ITEMS,
+    /**
+     * Google Drive calls; not subject to Google Photos quotas, so never throttled by the adaptive concurrency limiter.
+     */
+    DRIVE,
+}
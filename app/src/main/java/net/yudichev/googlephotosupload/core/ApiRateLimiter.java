@@ -0,0 +1,21 @@
+package net.yudichev.googlephotosupload.core;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+interface ApiRateLimiter {
+    /**
+     * @return future that completes when the call may proceed; completed immediately if there is no budget configured for the call type
+     */
+    CompletableFuture<Void> acquire(ApiCallType callType, long permits);
+
+    default CompletableFuture<Void> acquire(ApiCallType callType) {
+        return acquire(callType, 1);
+    }
+
+    /**
+     * @return total time calls spent waiting for permits since start, only including call types that had to wait
+     */
+    Map<ApiCallType, Duration> waitTimeByCallType();
+}
@@ -0,0 +1,94 @@
+package net.yudichev.googlephotosupload.core;
+
+import com.google.common.collect.ImmutableMap;
+import net.yudichev.jiotty.common.inject.BaseLifecycleComponent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static java.util.concurrent.CompletableFuture.delayedExecutor;
+import static java.util.concurrent.CompletableFuture.runAsync;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static net.yudichev.jiotty.common.lang.Locks.inLock;
+
+final class ApiRateLimiterImpl extends BaseLifecycleComponent implements ApiRateLimiter {
+    private static final Logger logger = LoggerFactory.getLogger(ApiRateLimiterImpl.class);
+    /**
+     * Burst allowance, expressed as the amount of budget accumulated over this period; small enough to keep requests evenly paced.
+     */
+    private static final Duration BURST_PERIOD = Duration.ofSeconds(1);
+
+    private final PreferencesManager preferencesManager;
+    private final Lock lock = new ReentrantLock();
+    private final Map<ApiCallType, TokenBucket> bucketsByCallType = new EnumMap<>(ApiCallType.class);
+    private final Map<ApiCallType, Long> waitNanosByCallType = new EnumMap<>(ApiCallType.class);
+
+    @Inject
+    ApiRateLimiterImpl(PreferencesManager preferencesManager) {
+        this.preferencesManager = checkNotNull(preferencesManager);
+    }
+
+    @Override
+    public CompletableFuture<Void> acquire(ApiCallType callType, long permits) {
+        long delayNanos = inLock(lock, () -> {
+            var bucket = bucketsByCallType.get(callType);
+            if (bucket == null) {
+                return 0L;
+            }
+            var delay = bucket.reserve(permits, System.nanoTime());
+            if (delay > 0) {
+                waitNanosByCallType.merge(callType, delay, Long::sum);
+            }
+            return delay;
+        });
+        if (delayNanos == 0) {
+            return completedFuture(null);
+        }
+        logger.debug("Rate limiting {}: waiting {}ms for {} permit(s)", callType, NANOSECONDS.toMillis(delayNanos), permits);
+        // completes on a pool thread rather than the JDK timer thread, so the continuation may safely do real work
+        return runAsync(() -> {}, delayedExecutor(delayNanos, NANOSECONDS));
+    }
+
+    @Override
+    public Map<ApiCallType, Duration> waitTimeByCallType() {
+        return inLock(lock, () -> waitNanosByCallType.entrySet().stream()
+                .collect(ImmutableMap.toImmutableMap(Map.Entry::getKey, entry -> Duration.ofNanos(entry.getValue()))));
+    }
+
+    @Override
+    protected void doStart() {
+        var limitsPerMinute = preferencesManager.get().apiRateLimitsPerMinute();
+        inLock(lock, () -> {
+            bucketsByCallType.clear();
+            waitNanosByCallType.clear();
+            var nowNanos = System.nanoTime();
+            limitsPerMinute.forEach((callType, limitPerMinute) -> {
+                var permitsPerSecond = limitPerMinute / 60.0;
+                bucketsByCallType.put(callType, new TokenBucket(
+                        permitsPerSecond,
+                        Math.max(1, permitsPerSecond * BURST_PERIOD.toMillis() / 1000),
+                        nowNanos));
+            });
+        });
+        if (!limitsPerMinute.isEmpty()) {
+            logger.info("API rate limits per minute: {}", limitsPerMinute);
+        }
+    }
+
+    @Override
+    protected void doStop() {
+        var waitTimeByCallType = waitTimeByCallType();
+        if (!waitTimeByCallType.isEmpty()) {
+            logger.info("Time spent waiting for API rate limit permits: {}", waitTimeByCallType);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package net.yudichev.googlephotosupload.core;
+
+import javax.annotation.Nullable;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static net.yudichev.jiotty.common.lang.Locks.inLock;
+
+/**
+ * Semaphore that never blocks: an acquirer gets a future that completes once the permits are granted. Permits are granted in priority order
+ * (lower first), FIFO within the same priority, so a big request is not starved by a stream of small ones of the same priority.
+ */
+final class AsyncSemaphore {
+    private static final Comparator<Waiter> WAITER_ORDER = Comparator.<Waiter>comparingLong(waiter -> waiter.priority)
+            .thenComparingLong(waiter -> waiter.sequenceNumber);
+
+    private final Lock lock = new ReentrantLock();
+    private final Queue<Waiter> waiters = new PriorityQueue<>(WAITER_ORDER);
+    /**
+     * Makes granting a trampoline: a granted action that completes synchronously and releases its permits does not recurse into granting the
+     * next waiter, which matters for long queues.
+     */
+    private final AtomicInteger grantRequests = new AtomicInteger();
+    private final long totalPermits;
+    private long availablePermits;
+    private long nextSequenceNumber;
+
+    AsyncSemaphore(long totalPermits) {
+        checkArgument(totalPermits > 0, "totalPermits must be positive: %s", totalPermits);
+        this.totalPermits = totalPermits;
+        availablePermits = totalPermits;
+    }
+
+    CompletableFuture<Void> acquire(long permits) {
+        return acquire(permits, 0);
+    }
+
+    CompletableFuture<Void> acquire(long permits, long priority) {
+        checkArgument(permits > 0 && permits <= totalPermits, "permits must be within (0, %s]: %s", totalPermits, permits);
+        return inLock(lock, () -> {
+            if (waiters.isEmpty() && availablePermits >= permits) {
+                availablePermits -= permits;
+                return completedFuture(null);
+            }
+            var waiter = new Waiter(permits, priority, nextSequenceNumber++);
+            waiters.add(waiter);
+            return waiter.future;
+        });
+    }
+
+    void release(long permits) {
+        inLock(lock, () -> {
+            availablePermits += permits;
+        });
+        grantWaiters();
+    }
+
+    /**
+     * Runs the action once the permits are granted, releasing them when the action's future completes.
+     */
+    <T> CompletableFuture<T> withPermits(long permits, Supplier<CompletableFuture<T>> action) {
+        return withPermits(permits, 0, action);
+    }
+
+    <T> CompletableFuture<T> withPermits(long permits, long priority, Supplier<CompletableFuture<T>> action) {
+        return acquire(permits, priority).thenCompose(ignored -> {
+            CompletableFuture<T> result;
+            try {
+                result = action.get();
+            } catch (RuntimeException e) {
+                release(permits);
+                throw e;
+            }
+            return result.whenComplete((value, exception) -> release(permits));
+        });
+    }
+
+    long availablePermits() {
+        return inLock(lock, () -> availablePermits);
+    }
+
+    int queueLength() {
+        return inLock(lock, waiters::size);
+    }
+
+    private void grantWaiters() {
+        if (grantRequests.getAndIncrement() != 0) {
+            return;
+        }
+        do {
+            Waiter waiter;
+            while ((waiter = nextGrantedWaiter()) != null) {
+                waiter.future.complete(null);
+            }
+        } while (grantRequests.decrementAndGet() != 0);
+    }
+
+    @Nullable
+    private Waiter nextGrantedWaiter() {
+        return inLock(lock, () -> {
+            if (waiters.isEmpty() || waiters.peek().permits > availablePermits) {
+                return null;
+            }
+            var waiter = waiters.remove();
+            availablePermits -= waiter.permits;
+            return waiter;
+        });
+    }
+
+    private static final class Waiter {
+        final long permits;
+        final long priority;
+        final long sequenceNumber;
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        Waiter(long permits, long priority, long sequenceNumber) {
+            this.permits = permits;
+            this.priority = priority;
+            this.sequenceNumber = sequenceNumber;
+        }
+    }
+}
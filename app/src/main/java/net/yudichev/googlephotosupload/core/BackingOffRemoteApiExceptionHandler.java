@@ -1,12 +1,8 @@
 package net.yudichev.googlephotosupload.core;
 
-import java.util.Optional;
-
 interface BackingOffRemoteApiExceptionHandler {
     /**
-     * @return backoff delay applied, in milliseconds, or 0, if no backoff delay was applied
+     * @return back-off state of a single logical operation (e.g. an upload of one file), to be used for all retries of that operation only
      */
-    Optional<Long> handle(String operationName, Throwable exception);
-
-    void reset();
+    OperationBackOff createOperationBackOff(String operationName);
 }
@@ -1,12 +1,10 @@
 package net.yudichev.googlephotosupload.core;
 
 import com.google.api.gax.rpc.*;
-import com.google.common.collect.BiMap;
-import com.google.common.collect.ImmutableBiMap;
+import com.google.common.collect.ImmutableMap;
 import com.google.inject.BindingAnnotation;
 import net.yudichev.jiotty.common.lang.backoff.BackOff;
 import net.yudichev.jiotty.common.lang.backoff.ExponentialBackOff;
-import net.yudichev.jiotty.common.lang.backoff.SynchronizedBackOff;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -14,13 +12,16 @@ import javax.inject.Inject;
 import java.lang.annotation.Retention;
 import java.lang.annotation.Target;
 import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Supplier;
 
+import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Throwables.getCausalChain;
 import static java.lang.Integer.MAX_VALUE;
 import static java.lang.annotation.ElementType.*;
 import static java.lang.annotation.RetentionPolicy.RUNTIME;
-import static net.yudichev.jiotty.common.lang.MoreThrowables.asUnchecked;
 import static net.yudichev.jiotty.common.lang.MoreThrowables.getAsUnchecked;
 import static net.yudichev.jiotty.common.lang.backoff.BackOff.STOP;
 
@@ -28,50 +29,70 @@ final class BackingOffRemoteApiExceptionHandlerImpl implements BackingOffRemoteA
     private static final Logger logger = LoggerFactory.getLogger(BackingOffRemoteApiExceptionHandlerImpl.class);
     // Unfortunately, the "retryable" flag in most, if not all, all these exceptions is not reliable; some of these
     // are marked as not retryable while in reality they are
-    private final BiMap<Class<? extends Throwable>, BackOff> backoffByRetryableExceptionType;
+    private final Map<Class<? extends Throwable>, Supplier<BackOff>> backOffFactoryByRetryableExceptionType;
+    private final SharedQuotaSignal quotaSignal;
 
     @Inject
-    BackingOffRemoteApiExceptionHandlerImpl(@GlobalInitialDelayOverride Optional<Duration> globalInitialDelayOverride) {
-        backoffByRetryableExceptionType = ImmutableBiMap.of(
+    BackingOffRemoteApiExceptionHandlerImpl(@GlobalInitialDelayOverride Optional<Duration> globalInitialDelayOverride,
+                                            SharedQuotaSignal quotaSignal) {
+        this.quotaSignal = checkNotNull(quotaSignal);
+        backOffFactoryByRetryableExceptionType = ImmutableMap.<Class<? extends Throwable>, Supplier<BackOff>>builder()
                 // defaults as per https://developers.google.com/photos/library/guides/best-practices#retrying-failed-requests
-                ResourceExhaustedException.class, createBackOff(globalInitialDelayOverride.orElse(Duration.ofSeconds(30)), MAX_VALUE),
-                UnavailableException.class, createBackOff(globalInitialDelayOverride.orElse(Duration.ofSeconds(1)), MAX_VALUE),
-                DeadlineExceededException.class, createBackOff(globalInitialDelayOverride.orElse(Duration.ofSeconds(1)), MAX_VALUE),
-                AbortedException.class, createBackOff(globalInitialDelayOverride.orElse(Duration.ofSeconds(1)), MAX_VALUE),
+                .put(ResourceExhaustedException.class, () -> createBackOff(globalInitialDelayOverride.orElse(Duration.ofSeconds(30)), MAX_VALUE))
+                .put(UnavailableException.class, () -> createBackOff(globalInitialDelayOverride.orElse(Duration.ofSeconds(1)), MAX_VALUE))
+                .put(DeadlineExceededException.class, () -> createBackOff(globalInitialDelayOverride.orElse(Duration.ofSeconds(1)), MAX_VALUE))
+                .put(AbortedException.class, () -> createBackOff(globalInitialDelayOverride.orElse(Duration.ofSeconds(1)), MAX_VALUE))
                 // Internal failures are strange; https://github.com/ylexus/jiotty-photos-uploader/issues/98 showed that INTERNAL could be retryable or not.
                 // So give a max of 10 seconds, then fail
-                InternalException.class, createBackOff(globalInitialDelayOverride.orElse(Duration.ofSeconds(1)), 10_000));
+                .put(InternalException.class, () -> createBackOff(globalInitialDelayOverride.orElse(Duration.ofSeconds(1)), 10_000))
+                // our own watchdog gave up on a transfer - most likely a flaky link
+                .put(StalledTransferException.class, () -> createBackOff(globalInitialDelayOverride.orElse(Duration.ofSeconds(5)), MAX_VALUE))
+                // resumable upload interrupted - will continue from the last acknowledged chunk
+                .put(InterruptedUploadException.class, () -> createBackOff(globalInitialDelayOverride.orElse(Duration.ofSeconds(5)), MAX_VALUE))
+                .build();
     }
 
     private static BackOff createBackOff(Duration initialDelay, int maxElapsedTimeMillis) {
         //noinspection NumericCastThatLosesPrecision thanks to ExponentialBackOff API using int
-        return new SynchronizedBackOff(new ExponentialBackOff.Builder()
+        return new ExponentialBackOff.Builder()
                 .setInitialIntervalMillis((int) initialDelay.toMillis())
                 .setMaxIntervalMillis(60000)
                 .setMaxElapsedTimeMillis(maxElapsedTimeMillis)
-                .build());
+                .build();
     }
 
     @Override
-    public Optional<Long> handle(String operationName, Throwable exception) {
-        for (var e : getCausalChain(exception)) {
-            var backOff = backoffByRetryableExceptionType.get(e.getClass());
-            if (backOff != null) {
-                long backOffMs = getAsUnchecked(backOff::nextBackOffMillis);
-                if (backOffMs == STOP) {
-                    return Optional.empty();
+    public OperationBackOff createOperationBackOff(String operationName) {
+        return new OperationBackOffImpl(operationName);
+    }
+
+    private final class OperationBackOffImpl implements OperationBackOff {
+        private final String operationName;
+        private final Map<Class<? extends Throwable>, BackOff> backOffByExceptionType = new HashMap<>();
+
+        OperationBackOffImpl(String operationName) {
+            this.operationName = checkNotNull(operationName);
+        }
+
+        @Override
+        public Optional<Long> handle(Throwable exception) {
+            for (var e : getCausalChain(exception)) {
+                var backOffFactory = backOffFactoryByRetryableExceptionType.get(e.getClass());
+                if (backOffFactory != null) {
+                    var backOff = backOffByExceptionType.computeIfAbsent(e.getClass(), exceptionType -> backOffFactory.get());
+                    long backOffMs = getAsUnchecked(backOff::nextBackOffMillis);
+                    if (backOffMs == STOP) {
+                        return Optional.empty();
+                    }
+                    logger.debug("Retryable exception performing operation '{}', backing off by {}ms", operationName, backOffMs, e);
+                    if (e instanceof ResourceExhaustedException) {
+                        quotaSignal.onQuotaExhausted(Duration.ofMillis(backOffMs));
+                    }
+                    return Optional.of(backOffMs);
                 }
-                logger.debug("Retryable exception performing operation '{}', backing off by waiting for {}ms", operationName, backOffMs, e);
-                asUnchecked(() -> Thread.sleep(backOffMs));
-                return Optional.of(backOffMs);
             }
+            return Optional.empty();
         }
-        return Optional.empty();
-    }
-
-    @Override
-    public void reset() {
-        backoffByRetryableExceptionType.values().forEach(backOff -> asUnchecked(backOff::reset));
     }
 
     @BindingAnnotation
@@ -5,35 +5,67 @@ import net.yudichev.jiotty.common.inject.BaseLifecycleComponent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.inject.Inject;
 import javax.inject.Provider;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadPoolExecutor;
 
-import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.util.concurrent.MoreExecutors.shutdownAndAwaitTermination;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.concurrent.TimeUnit.SECONDS;
 
-final class BackpressuredExecutorServiceProvider extends BaseLifecycleComponent implements Provider<ExecutorService> {
+/**
+ * Executor of one of the bulkheaded lanes: byte transfer, metadata API calls and library listing / reconciliation are run on separate
+ * executors, so that slow uploads of large files do not hold up cheap API calls and vice versa.
+ * <p>
+ * When the platform thread pool of a lane is saturated, a task submitted by one of its own threads is run by that thread, which slows down
+ * the lane's producers. A task submitted by any other thread, e.g. one of another lane, waits for room in the queue instead, so that a lane
+ * never takes over another lane's threads; the number of such tasks is bounded by the upload limits upstream (files and bytes in flight).
+ */
+abstract class BackpressuredExecutorServiceProvider extends BaseLifecycleComponent implements Provider<ExecutorService> {
     private static final Logger logger = LoggerFactory.getLogger(BackpressuredExecutorServiceProvider.class);
-    private ThreadPoolExecutor executor;
+    private final PreferencesManager preferencesManager;
+    private final String laneName;
+    private final ThreadLocal<Boolean> laneThread = ThreadLocal.withInitial(() -> false);
+    private InstrumentedExecutorService executor;
+
+    BackpressuredExecutorServiceProvider(PreferencesManager preferencesManager, String laneName) {
+        this.preferencesManager = checkNotNull(preferencesManager);
+        this.laneName = checkNotNull(laneName);
+    }
 
     @Override
     public ExecutorService get() {
         return whenStartedAndNotLifecycling(() -> executor);
     }
 
-    private static void rejectedExecution(Runnable task, ThreadPoolExecutor executor) {
-        checkState(!executor.isShutdown(), "Executor shut down: %s", executor);
-        task.run();
+    private void rejectedExecution(Runnable task, ThreadPoolExecutor executor) {
+        if (executor.isShutdown()) {
+            throw new RejectedExecutionException("Executor shut down: " + executor);
+        }
+        if (laneThread.get()) {
+            task.run();
+        } else {
+            Thread.ofVirtual().name(laneName + "-admission").start(() -> {
+                try {
+                    executor.getQueue().put(task);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
     }
 
     @Override
     protected void doStop() {
+        logger.info("{} executor queue stats: {}", laneName, executor.stats());
         executor.shutdownNow();
         if (!shutdownAndAwaitTermination(executor, 5, SECONDS)) {
-            logger.warn("Failed to shutdown upload thread pool in 5 seconds!");
+            logger.warn("Failed to shutdown {} thread pool in 5 seconds!", laneName);
         }
         //noinspection AssignmentToNull
         executor = null;
@@ -41,15 +73,107 @@ final class BackpressuredExecutorServiceProvider extends BaseLifecycleComponent
 
     @Override
     protected void doStart() {
-        executor = new ThreadPoolExecutor(
-                1,
-                1,
+        var preferences = preferencesManager.get();
+        executor = new InstrumentedExecutorService(switch (preferences.uploadExecutionMode()) {
+            case PLATFORM_THREADS -> createPlatformThreadPool(threadCount(preferences), queueCapacity(preferences));
+            case VIRTUAL_THREADS -> createVirtualThreadExecutor(virtualThreadPermitCount(preferences));
+        });
+    }
+
+    protected abstract int threadCount(Preferences preferences);
+
+    protected abstract int queueCapacity(Preferences preferences);
+
+    protected abstract int virtualThreadPermitCount(Preferences preferences);
+
+    private ExecutorService createPlatformThreadPool(int threadCount, int queueCapacity) {
+        logger.info("Starting {} thread pool with {} thread(s) and queue capacity of {}", laneName, threadCount, queueCapacity);
+        var threadFactory = new ThreadFactoryBuilder()
+                .setNameFormat(laneName + "-pool-%s")
+                .setDaemon(true)
+                .build();
+        return new ThreadPoolExecutor(
+                threadCount,
+                threadCount,
                 0L, MILLISECONDS,
-                new LinkedBlockingQueue<>(2),
-                new ThreadFactoryBuilder()
-                        .setNameFormat("upload-pool-%s")
-                        .setDaemon(true)
-                        .build(),
-                BackpressuredExecutorServiceProvider::rejectedExecution);
+                new LinkedBlockingQueue<>(queueCapacity),
+                runnable -> threadFactory.newThread(() -> {
+                    laneThread.set(true);
+                    runnable.run();
+                }),
+                this::rejectedExecution);
+    }
+
+    private ExecutorService createVirtualThreadExecutor(int permitCount) {
+        logger.info("Starting {} virtual thread executor with {} permit(s)", laneName, permitCount);
+        return new PermitLimitedExecutorService(
+                Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(laneName + "-vt-", 0).factory()),
+                permitCount);
+    }
+
+    static final class ByteTransfer extends BackpressuredExecutorServiceProvider {
+        @Inject
+        ByteTransfer(PreferencesManager preferencesManager) {
+            super(preferencesManager, "upload");
+        }
+
+        @Override
+        protected int threadCount(Preferences preferences) {
+            return preferences.uploadThreadCount();
+        }
+
+        @Override
+        protected int queueCapacity(Preferences preferences) {
+            return preferences.uploadQueueCapacity();
+        }
+
+        @Override
+        protected int virtualThreadPermitCount(Preferences preferences) {
+            return preferences.virtualThreadPermitCount();
+        }
+    }
+
+    static final class MetadataCalls extends BackpressuredExecutorServiceProvider {
+        @Inject
+        MetadataCalls(PreferencesManager preferencesManager) {
+            super(preferencesManager, "api");
+        }
+
+        @Override
+        protected int threadCount(Preferences preferences) {
+            return preferences.metadataThreadCount();
+        }
+
+        @Override
+        protected int queueCapacity(Preferences preferences) {
+            return preferences.metadataQueueCapacity();
+        }
+
+        @Override
+        protected int virtualThreadPermitCount(Preferences preferences) {
+            return preferences.metadataThreadCount();
+        }
+    }
+
+    static final class Listing extends BackpressuredExecutorServiceProvider {
+        @Inject
+        Listing(PreferencesManager preferencesManager) {
+            super(preferencesManager, "listing");
+        }
+
+        @Override
+        protected int threadCount(Preferences preferences) {
+            return preferences.listingThreadCount();
+        }
+
+        @Override
+        protected int queueCapacity(Preferences preferences) {
+            return preferences.listingQueueCapacity();
+        }
+
+        @Override
+        protected int virtualThreadPermitCount(Preferences preferences) {
+            return preferences.listingThreadCount();
+        }
     }
 }
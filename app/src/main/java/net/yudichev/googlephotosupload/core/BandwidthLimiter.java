@@ -0,0 +1,29 @@
+package net.yudichev.googlephotosupload.core;
+
+import java.util.OptionalLong;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+interface BandwidthLimiter {
+    /**
+     * Reserves the bytes without waiting. Used by transports that write the file themselves, so that the limit applies, and changes, within a
+     * transfer.
+     *
+     * @return how long, in nanoseconds, the caller has to wait before sending the bytes
+     */
+    long reserveBytes(long bytes);
+
+    /**
+     * Used for transports that cannot be paced while sending: completes once the whole transfer fits into the budget.
+     */
+    CompletableFuture<Void> acquire(long bytes);
+
+    /**
+     * @return the current limit, in bytes per second, empty if uploads are not limited at the moment
+     */
+    OptionalLong currentLimit();
+
+    void addLimitChangeListener(Consumer<OptionalLong> listener);
+
+    void removeLimitChangeListener(Consumer<OptionalLong> listener);
+}
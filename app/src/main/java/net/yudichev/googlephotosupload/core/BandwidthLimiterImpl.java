@@ -0,0 +1,150 @@
+package net.yudichev.googlephotosupload.core;
+
+import net.yudichev.jiotty.common.async.ExecutorFactory;
+import net.yudichev.jiotty.common.async.SchedulingExecutor;
+import net.yudichev.jiotty.common.inject.BaseLifecycleComponent;
+import net.yudichev.jiotty.common.time.CurrentDateTimeProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import java.time.Duration;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static java.util.concurrent.CompletableFuture.delayedExecutor;
+import static java.util.concurrent.CompletableFuture.runAsync;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static net.yudichev.jiotty.common.lang.Locks.inLock;
+
+/**
+ * A token bucket on bytes, shared by all uploads, whose rate follows {@link Preferences#bandwidthSchedule()}. The schedule, and the preferences
+ * themselves, are re-evaluated periodically; when the limit changes, the bucket is replaced, so the new rate applies to the very next bytes sent
+ * while transfers in progress carry on.
+ */
+final class BandwidthLimiterImpl extends BaseLifecycleComponent implements BandwidthLimiter {
+    private static final Logger logger = LoggerFactory.getLogger(BandwidthLimiterImpl.class);
+    private static final Duration SCHEDULE_CHECK_PERIOD = Duration.ofSeconds(15);
+    /**
+     * Burst allowance, expressed as the amount of budget accumulated over this period.
+     */
+    private static final Duration BURST_PERIOD = Duration.ofSeconds(1);
+
+    private final PreferencesManager preferencesManager;
+    private final CurrentDateTimeProvider currentDateTimeProvider;
+    private final ExecutorFactory executorFactory;
+    private final Lock lock = new ReentrantLock();
+    private final List<Consumer<OptionalLong>> listeners = new CopyOnWriteArrayList<>();
+
+    private OptionalLong currentLimit = OptionalLong.empty();
+    private TokenBucket bucket;
+    private long waitNanos;
+    private SchedulingExecutor executor;
+
+    @Inject
+    BandwidthLimiterImpl(PreferencesManager preferencesManager, CurrentDateTimeProvider currentDateTimeProvider, ExecutorFactory executorFactory) {
+        this.preferencesManager = checkNotNull(preferencesManager);
+        this.currentDateTimeProvider = checkNotNull(currentDateTimeProvider);
+        this.executorFactory = checkNotNull(executorFactory);
+    }
+
+    @Override
+    public long reserveBytes(long bytes) {
+        return reserve(bytes);
+    }
+
+    @Override
+    public CompletableFuture<Void> acquire(long bytes) {
+        var delayNanos = reserve(bytes);
+        if (delayNanos == 0) {
+            return completedFuture(null);
+        }
+        logger.debug("Bandwidth limit: waiting {}ms for {} byte(s)", NANOSECONDS.toMillis(delayNanos), bytes);
+        // completes on a pool thread rather than the JDK timer thread, so the continuation may safely do real work
+        return runAsync(() -> {}, delayedExecutor(delayNanos, NANOSECONDS));
+    }
+
+    @Override
+    public OptionalLong currentLimit() {
+        return inLock(lock, () -> currentLimit);
+    }
+
+    @Override
+    public void addLimitChangeListener(Consumer<OptionalLong> listener) {
+        listeners.add(checkNotNull(listener));
+    }
+
+    @Override
+    public void removeLimitChangeListener(Consumer<OptionalLong> listener) {
+        listeners.remove(listener);
+    }
+
+    @Override
+    protected void doStart() {
+        inLock(lock, () -> {
+            currentLimit = OptionalLong.empty();
+            bucket = null;
+            waitNanos = 0;
+        });
+        checkSchedule();
+        executor = executorFactory.createSingleThreadedSchedulingExecutor("bandwidth-schedule");
+        executor.scheduleAtFixedRate(SCHEDULE_CHECK_PERIOD, SCHEDULE_CHECK_PERIOD, this::checkSchedule);
+    }
+
+    @Override
+    protected void doStop() {
+        executor.close();
+        var totalWaitNanos = inLock(lock, () -> waitNanos);
+        if (totalWaitNanos > 0) {
+            logger.info("Time spent waiting for upload bandwidth: {}", Duration.ofNanos(totalWaitNanos));
+        }
+    }
+
+    private long reserve(long bytes) {
+        return inLock(lock, () -> {
+            if (bucket == null) {
+                return 0L;
+            }
+            var delay = bucket.reserve(bytes, System.nanoTime());
+            waitNanos += delay;
+            return delay;
+        });
+    }
+
+    private void checkSchedule() {
+        var now = currentDateTimeProvider.currentInstant().atZone(ZoneId.systemDefault()).toLocalTime();
+        var newLimit = preferencesManager.get().bandwidthSchedule().stream()
+                .filter(window -> window.contains(now))
+                .findFirst()
+                .map(window -> OptionalLong.of(window.kilobytesPerSecond() * 1024))
+                .orElse(OptionalLong.empty());
+        boolean changed = inLock(lock, () -> {
+            if (newLimit.equals(currentLimit)) {
+                return false;
+            }
+            currentLimit = newLimit;
+            bucket = newLimit.isPresent() ?
+                    new TokenBucket(newLimit.getAsLong(), newLimit.getAsLong() * BURST_PERIOD.toMillis() / 1000.0, System.nanoTime()) :
+                    null;
+            return true;
+        });
+        if (changed) {
+            logger.info("Upload bandwidth limit is now {}", newLimit.isPresent() ? newLimit.getAsLong() / 1024 + " KB/s" : "off");
+            for (var listener : listeners) {
+                try {
+                    listener.accept(newLimit);
+                } catch (RuntimeException e) {
+                    logger.warn("Bandwidth limit listener failed", e);
+                }
+            }
+        }
+    }
+}
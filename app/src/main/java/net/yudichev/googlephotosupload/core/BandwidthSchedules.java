@@ -0,0 +1,44 @@
+package net.yudichev.googlephotosupload.core;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.stream.Collectors.joining;
+
+/**
+ * Text form of {@link Preferences#bandwidthSchedule()}, as used on the command line and in the preferences dialog: comma separated
+ * {@code HH:mm-HH:mm=KB_PER_SECOND} entries, e.g. {@code 08:00-19:00=5120}.
+ */
+public final class BandwidthSchedules {
+    private static final Pattern WINDOW_PATTERN = Pattern.compile("(\\d{2}:\\d{2})-(\\d{2}:\\d{2})=(\\d{1,9})");
+
+    private BandwidthSchedules() {
+    }
+
+    public static List<BandwidthLimitWindow> parse(String value) {
+        return Splitter.on(',').trimResults().omitEmptyStrings().splitToStream(value)
+                .map(BandwidthSchedules::parseWindow)
+                .collect(ImmutableList.toImmutableList());
+    }
+
+    public static String format(List<BandwidthLimitWindow> schedule) {
+        return schedule.stream()
+                .map(window -> window.from() + '-' + window.to() + '=' + window.kilobytesPerSecond())
+                .collect(joining(", "));
+    }
+
+    private static BandwidthLimitWindow parseWindow(String value) {
+        var matcher = WINDOW_PATTERN.matcher(value);
+        checkArgument(matcher.matches(), "Bandwidth limit must look like HH:mm-HH:mm=KB_PER_SECOND, but was: %s", value);
+        try {
+            return BandwidthLimitWindow.of(matcher.group(1), matcher.group(2), Long.parseLong(matcher.group(3)));
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid time in bandwidth limit: " + value, e);
+        }
+    }
+}
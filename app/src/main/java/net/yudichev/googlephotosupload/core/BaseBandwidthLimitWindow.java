@@ -0,0 +1,59 @@
+package net.yudichev.googlephotosupload.core;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import net.yudichev.jiotty.common.lang.PublicImmutablesStyle;
+import org.immutables.value.Value;
+import org.immutables.value.Value.Immutable;
+
+import java.time.LocalTime;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * A daily period of local time, {@code HH:mm} to {@code HH:mm}, during which uploads are limited to the given rate. A period that ends before
+ * it starts spans midnight; one that ends when it starts lasts all day.
+ */
+@Immutable
+@PublicImmutablesStyle
+@JsonSerialize
+@JsonDeserialize
+interface BaseBandwidthLimitWindow {
+    @Value.Parameter
+    String from();
+
+    @Value.Parameter
+    String to();
+
+    @Value.Parameter
+    long kilobytesPerSecond();
+
+    @JsonIgnore
+    @Value.Derived
+    default LocalTime fromTime() {
+        return LocalTime.parse(from());
+    }
+
+    @JsonIgnore
+    @Value.Derived
+    default LocalTime toTime() {
+        return LocalTime.parse(to());
+    }
+
+    default boolean contains(LocalTime time) {
+        var fromTime = fromTime();
+        var toTime = toTime();
+        if (fromTime.equals(toTime)) {
+            return true;
+        }
+        return fromTime.isBefore(toTime) ?
+                !time.isBefore(fromTime) && time.isBefore(toTime) :
+                !time.isBefore(fromTime) || time.isBefore(toTime);
+    }
+
+    @Value.Check
+    default void validate() {
+        checkArgument(kilobytesPerSecond() > 0, "kilobytesPerSecond cannot be <=0: %s", kilobytesPerSecond());
+    }
+}
@@ -14,6 +14,7 @@ import java.nio.file.FileSystems;
 import java.nio.file.Path;
 import java.nio.file.PathMatcher;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
@@ -88,11 +89,272 @@ abstract class BasePreferences {
 
     public abstract Optional<FailOnDriveSpaceOption> failOnDriveSpace();
 
+    /**
+     * Number of worker threads performing uploads and Google Photos API calls concurrently.
+     */
+    @Value.Default
+    public int uploadThreadCount() {
+        return 1;
+    }
+
+    /**
+     * Max number of tasks waiting for a free upload worker; when exceeded, the submitting thread runs the task itself, which keeps the amount
+     * of work in flight (and hence memory) bounded.
+     */
+    @Value.Default
+    public int uploadQueueCapacity() {
+        return 2;
+    }
+
+    @Value.Default
+    public UploadExecutionMode uploadExecutionMode() {
+        return UploadExecutionMode.PLATFORM_THREADS;
+    }
+
+    /**
+     * Max number of tasks running at the same time in {@link UploadExecutionMode#VIRTUAL_THREADS} mode.
+     */
+    @Value.Default
+    public int virtualThreadPermitCount() {
+        return 64;
+    }
+
+    /**
+     * Number of worker threads (or, in {@link UploadExecutionMode#VIRTUAL_THREADS} mode, tasks running at the same time) performing Google
+     * Photos API calls that do not transfer file contents, such as creating media items and adding them to albums.
+     */
+    @Value.Default
+    public int metadataThreadCount() {
+        return 2;
+    }
+
+    @Value.Default
+    public int metadataQueueCapacity() {
+        return 4;
+    }
+
+    /**
+     * Number of Photos Library clients, each with its own channel, that metadata calls are spread over; capped at
+     * {@value PhotosChannelPoolModule#MAX_CHANNEL_COUNT}.
+     */
+    @Value.Default
+    public int metadataChannelCount() {
+        return 4;
+    }
+
+    @Value.Default
+    public MetadataChannelSelection metadataChannelSelection() {
+        return MetadataChannelSelection.LEAST_LOADED;
+    }
+
+    /**
+     * Number of worker threads (or, in {@link UploadExecutionMode#VIRTUAL_THREADS} mode, tasks running at the same time) listing the cloud
+     * library and reconciling albums.
+     */
+    @Value.Default
+    public int listingThreadCount() {
+        return 1;
+    }
+
+    @Value.Default
+    public int listingQueueCapacity() {
+        return 2;
+    }
+
+    /**
+     * Whether the number of concurrent Google Photos API operations is adjusted automatically (additive increase, multiplicative decrease)
+     * based on the quota errors and latency observed; the limit starts low and grows up to {@link #maxAdaptiveConcurrency()}.
+     */
+    @Value.Default
+    public boolean adaptiveConcurrency() {
+        return false;
+    }
+
+    /**
+     * The ceiling for the number of concurrent Google Photos API operations in {@link #adaptiveConcurrency()} mode.
+     */
+    @Value.Default
+    public int maxAdaptiveConcurrency() {
+        return 64;
+    }
+
+    /**
+     * Client side budgets per call type, per minute: bytes for {@link ApiCallType#UPLOAD}, requests for others. Calls of types with no budget
+     * are not paced.
+     */
+    public abstract Map<ApiCallType, Long> apiRateLimitsPerMinute();
+
+    /**
+     * If enabled, in {@link AddToAlbumMethod#WHILE_CREATING_ITEMS} mode, media items are created as soon as a full batch of them is uploaded
+     * (or {@link #mediaItemCreationLingerMillis()} elapses), rather than after the whole directory is uploaded. Items then appear in the
+     * album in batches, ordered by name within each batch only.
+     */
+    @Value.Default
+    public boolean streamingMediaItemCreation() {
+        return false;
+    }
+
+    /**
+     * If enabled, in {@link AddToAlbumMethod#AFTER_CREATING_ITEMS_SORTED} mode, media items of different directories are created together in
+     * full batches, which saves a lot of API calls when directories are small.
+     */
+    @Value.Default
+    public boolean crossDirectoryMediaItemBatching() {
+        return false;
+    }
+
+    /**
+     * Max time an uploaded item waits for its batch to fill up before the batch is created anyway.
+     */
+    @Value.Default
+    public long mediaItemCreationLingerMillis() {
+        return 2000;
+    }
+
+    /**
+     * If positive, item state changes are queued and written in batches, one transaction each, at least this often, rather than committed
+     * one by one. A crash may then lose up to this much of the latest progress, in which case the affected files are uploaded again.
+     */
+    @Value.Default
+    public long stateWriteBehindMillis() {
+        return 0;
+    }
+
+    /**
+     * Max number of directories being uploaded at the same time; the next directory starts as soon as one of these completes.
+     */
+    @Value.Default
+    public int maxActiveDirectories() {
+        return 16;
+    }
+
+    /**
+     * Max number of files, across all active directories, whose media data is being uploaded at the same time.
+     */
+    @Value.Default
+    public int maxInFlightFiles() {
+        return 256;
+    }
+
+    /**
+     * Max total size of files being read and uploaded at the same time. A file bigger than this is uploaded on its own; large files never take
+     * more than three quarters of this budget, so small files keep going through.
+     */
+    @Value.Default
+    public int maxMegabytesInFlight() {
+        return 512;
+    }
+
+    /**
+     * Files of this size or bigger are uploaded in the large file lane, others - in the small file lane. Both lanes feed the same media item
+     * creation.
+     */
+    @Value.Default
+    public int largeFileThresholdMegabytes() {
+        return 32;
+    }
+
+    /**
+     * Max number of small files being uploaded at the same time; small files are limited by the API request rate, so many can go in parallel.
+     */
+    @Value.Default
+    public int smallFileLaneConcurrency() {
+        return 32;
+    }
+
+    /**
+     * Max number of large files being uploaded at the same time; large files are limited by the bandwidth, so a few are enough to saturate it.
+     */
+    @Value.Default
+    public int largeFileLaneConcurrency() {
+        return 2;
+    }
+
+    /**
+     * Files of {@link #largeFileThresholdMegabytes()} or bigger are uploaded in chunks of this size, so that an interrupted upload continues
+     * after the last chunk the server acknowledged instead of starting over.
+     */
+    @Value.Default
+    public int resumableUploadChunkMegabytes() {
+        return 16;
+    }
+
+    /**
+     * An upload reporting no progress for this long is abandoned and retried. Only applies to uploads that can be aborted: those of large files
+     * and those going through {@link UploadTransport#STREAMING}.
+     */
+    @Value.Default
+    public int uploadStallTimeoutSeconds() {
+        return 120;
+    }
+
+    /**
+     * The slowest acceptable upload speed: an upload taking longer than {@link #uploadStallTimeoutSeconds()} plus its size divided by this
+     * speed is abandoned and retried. Applies to the same uploads as {@link #uploadStallTimeoutSeconds()}.
+     */
+    @Value.Default
+    public int minUploadKilobytesPerSecond() {
+        return 32;
+    }
+
+    /**
+     * Upload bandwidth limits by time of day, the first window containing the current local time applying; uploads are not limited outside
+     * of all windows. The limit takes effect immediately when the current window changes, including for uploads in progress.
+     */
+    public abstract List<BandwidthLimitWindow> bandwidthSchedule();
+
+    @Value.Default
+    public UploadTransport uploadTransport() {
+        return UploadTransport.LIBRARY;
+    }
+
+    @Value.Default
+    public UploadOrder uploadOrder() {
+        return UploadOrder.PATH;
+    }
+
     @Value.Check
     void validateRelevantDirDepthLimit() {
         relevantDirDepthLimit().ifPresent(value -> checkArgument(value > 0, "validateRelevantDirDepthLimit cannot be <=0: %s", value));
     }
 
+    @Value.Check
+    void validateUploadPool() {
+        checkArgument(uploadThreadCount() > 0, "uploadThreadCount cannot be <=0: %s", uploadThreadCount());
+        checkArgument(uploadQueueCapacity() > 0, "uploadQueueCapacity cannot be <=0: %s", uploadQueueCapacity());
+        checkArgument(virtualThreadPermitCount() > 0, "virtualThreadPermitCount cannot be <=0: %s", virtualThreadPermitCount());
+        checkArgument(metadataThreadCount() > 0, "metadataThreadCount cannot be <=0: %s", metadataThreadCount());
+        checkArgument(metadataQueueCapacity() > 0, "metadataQueueCapacity cannot be <=0: %s", metadataQueueCapacity());
+        checkArgument(metadataChannelCount() > 0, "metadataChannelCount cannot be <=0: %s", metadataChannelCount());
+        checkArgument(listingThreadCount() > 0, "listingThreadCount cannot be <=0: %s", listingThreadCount());
+        checkArgument(listingQueueCapacity() > 0, "listingQueueCapacity cannot be <=0: %s", listingQueueCapacity());
+        checkArgument(maxAdaptiveConcurrency() > 0, "maxAdaptiveConcurrency cannot be <=0: %s", maxAdaptiveConcurrency());
+        checkArgument(maxActiveDirectories() > 0, "maxActiveDirectories cannot be <=0: %s", maxActiveDirectories());
+        checkArgument(maxInFlightFiles() > 0, "maxInFlightFiles cannot be <=0: %s", maxInFlightFiles());
+        checkArgument(maxMegabytesInFlight() > 0, "maxMegabytesInFlight cannot be <=0: %s", maxMegabytesInFlight());
+        checkArgument(largeFileThresholdMegabytes() > 0, "largeFileThresholdMegabytes cannot be <=0: %s", largeFileThresholdMegabytes());
+        checkArgument(resumableUploadChunkMegabytes() > 0, "resumableUploadChunkMegabytes cannot be <=0: %s", resumableUploadChunkMegabytes());
+        checkArgument(smallFileLaneConcurrency() > 0, "smallFileLaneConcurrency cannot be <=0: %s", smallFileLaneConcurrency());
+        checkArgument(uploadStallTimeoutSeconds() > 0, "uploadStallTimeoutSeconds cannot be <=0: %s", uploadStallTimeoutSeconds());
+        checkArgument(minUploadKilobytesPerSecond() > 0, "minUploadKilobytesPerSecond cannot be <=0: %s", minUploadKilobytesPerSecond());
+        checkArgument(largeFileLaneConcurrency() > 0, "largeFileLaneConcurrency cannot be <=0: %s", largeFileLaneConcurrency());
+    }
+
+    @Value.Check
+    void validateMediaItemCreationLinger() {
+        checkArgument(mediaItemCreationLingerMillis() >= 0, "mediaItemCreationLingerMillis cannot be <0: %s", mediaItemCreationLingerMillis());
+    }
+
+    @Value.Check
+    void validateStateWriteBehind() {
+        checkArgument(stateWriteBehindMillis() >= 0, "stateWriteBehindMillis cannot be <0: %s", stateWriteBehindMillis());
+    }
+
+    @Value.Check
+    void validateApiRateLimits() {
+        apiRateLimitsPerMinute().forEach((callType, limit) -> checkArgument(limit > 0, "API rate limit for %s cannot be <=0: %s", callType, limit));
+    }
+
     public static boolean validatePathPattern(String pattern) {
         var fileSystem = FileSystems.getDefault();
         try {
@@ -0,0 +1,44 @@
+package net.yudichev.googlephotosupload.core;
+
+import net.yudichev.jiotty.common.lang.PackagePrivateImmutablesStyle;
+import org.immutables.value.Value;
+import org.immutables.value.Value.Immutable;
+
+import java.time.Instant;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * A resumable upload session of a file, along with the file version it was started for.
+ */
+@Immutable
+@PackagePrivateImmutablesStyle
+interface BaseUploadSession {
+    @Value.Parameter
+    String sessionUrl();
+
+    /**
+     * Every chunk except the last one must be a multiple of this size.
+     */
+    @Value.Parameter
+    long chunkGranularity();
+
+    @Value.Parameter
+    long fileSize();
+
+    @Value.Parameter
+    Instant fileLastModified();
+
+    /**
+     * How many bytes, from the start of the file, the server has acknowledged.
+     */
+    @Value.Parameter
+    long committedOffset();
+
+    @Value.Check
+    default void validate() {
+        checkArgument(chunkGranularity() > 0, "chunkGranularity cannot be <=0: %s", chunkGranularity());
+        checkArgument(committedOffset() >= 0 && committedOffset() <= fileSize(),
+                "committedOffset must be within [0, %s]: %s", fileSize(), committedOffset());
+    }
+}
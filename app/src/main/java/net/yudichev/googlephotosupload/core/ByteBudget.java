@@ -0,0 +1,48 @@
+package net.yudichev.googlephotosupload.core;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Admission control by the number of bytes in flight. Each file claims its size (capped by the budget) for the duration of its transfer.
+ * Large files are additionally limited to a share of the budget, so that the rest always remains available for small files, which then keep
+ * flowing while a few big videos are being uploaded.
+ */
+final class ByteBudget {
+    /**
+     * Files bigger than this fraction of the budget are considered large.
+     */
+    private static final int SMALL_FILE_FRACTION = 16;
+    private static final double LARGE_FILES_SHARE = 0.75;
+
+    private final long totalBytes;
+    private final long smallFileLimit;
+    private final long largeFilesBytes;
+    private final AsyncSemaphore allBytes;
+    private final AsyncSemaphore largeFileBytes;
+
+    ByteBudget(long totalBytes) {
+        checkArgument(totalBytes > 0, "totalBytes must be positive: %s", totalBytes);
+        this.totalBytes = totalBytes;
+        smallFileLimit = Math.max(1, totalBytes / SMALL_FILE_FRACTION);
+        largeFilesBytes = Math.max(1, (long) (totalBytes * LARGE_FILES_SHARE));
+        allBytes = new AsyncSemaphore(totalBytes);
+        largeFileBytes = new AsyncSemaphore(largeFilesBytes);
+    }
+
+    <T> CompletableFuture<T> withBytes(long size, Supplier<CompletableFuture<T>> action) {
+        // an empty file still costs a request
+        var claim = Math.max(1, size);
+        if (claim <= smallFileLimit) {
+            return allBytes.withPermits(claim, action);
+        }
+        var largeClaim = Math.min(claim, largeFilesBytes);
+        return largeFileBytes.withPermits(largeClaim, () -> allBytes.withPermits(largeClaim, action));
+    }
+
+    long bytesInFlight() {
+        return totalBytes - allBytes.availablePermits();
+    }
+}
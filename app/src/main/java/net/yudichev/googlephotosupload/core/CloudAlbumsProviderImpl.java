@@ -15,7 +15,7 @@ import java.util.concurrent.ExecutorService;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static java.util.stream.Collectors.groupingBy;
 import static java.util.stream.Collectors.toList;
-import static net.yudichev.googlephotosupload.core.Bindings.Backpressured;
+import static net.yudichev.googlephotosupload.core.Bindings.Listing;
 
 final class CloudAlbumsProviderImpl extends BaseLifecycleComponent implements CloudAlbumsProvider {
     private static final Logger logger = LoggerFactory.getLogger(CloudAlbumsProviderImpl.class);
@@ -30,7 +30,7 @@ final class CloudAlbumsProviderImpl extends BaseLifecycleComponent implements Cl
     @Inject
     CloudAlbumsProviderImpl(CloudOperationHelper cloudOperationHelper,
                             GooglePhotosClient googlePhotosClient,
-                            @SuppressWarnings("BoundedWildcard") @Backpressured Provider<ExecutorService> executorServiceProvider,
+                            @SuppressWarnings("BoundedWildcard") @Listing Provider<ExecutorService> executorServiceProvider,
                             ProgressStatusFactory progressStatusFactory,
                             ResourceBundle resourceBundle) {
         this.cloudOperationHelper = checkNotNull(cloudOperationHelper);
@@ -46,6 +46,7 @@ final class CloudAlbumsProviderImpl extends BaseLifecycleComponent implements Cl
         logger.info("Loading albums in cloud (may take several minutes)...");
         var progressStatus = progressStatusFactory.create(resourceBundle.getString("cloudAlbumsProviderProgressTitle"), Optional.empty());
         return cloudOperationHelper.withBackOffAndRetry(
+                ApiCallType.ALBUM_LIST,
                 "get all albums",
                 () -> googlePhotosClient.listAlbums(progressStatus::updateSuccess, executorService),
                 progressStatus::onBackoffDelay)
@@ -5,5 +5,8 @@ import java.util.function.LongConsumer;
 import java.util.function.Supplier;
 
 interface CloudOperationHelper {
-    <T> CompletableFuture<T> withBackOffAndRetry(String operationName, Supplier<CompletableFuture<T>> action, LongConsumer backoffEventConsumer);
+    <T> CompletableFuture<T> withBackOffAndRetry(ApiCallType callType,
+                                                 String operationName,
+                                                 Supplier<CompletableFuture<T>> action,
+                                                 LongConsumer backoffEventConsumer);
 }
@@ -6,30 +6,56 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.inject.Inject;
+import javax.inject.Provider;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
 import java.util.function.LongConsumer;
 import java.util.function.Supplier;
 
 import static com.google.common.base.Preconditions.checkNotNull;
+import static java.util.concurrent.CompletableFuture.delayedExecutor;
+import static java.util.concurrent.CompletableFuture.runAsync;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static net.yudichev.googlephotosupload.core.Bindings.MetadataCalls;
 
 final class CloudOperationHelperImpl implements CloudOperationHelper {
     private static final Logger logger = LoggerFactory.getLogger(CloudOperationHelperImpl.class);
     private final BackingOffRemoteApiExceptionHandler backOffHandler;
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+    private final ApiRateLimiter rateLimiter;
+    private final SharedQuotaSignal quotaSignal;
+    private final Provider<ExecutorService> metadataExecutorServiceProvider;
 
     @Inject
-    CloudOperationHelperImpl(BackingOffRemoteApiExceptionHandler backOffHandler) {
+    CloudOperationHelperImpl(BackingOffRemoteApiExceptionHandler backOffHandler,
+                             @MetadataCalls AdaptiveConcurrencyLimiter concurrencyLimiter,
+                             ApiRateLimiter rateLimiter,
+                             SharedQuotaSignal quotaSignal,
+                             @MetadataCalls Provider<ExecutorService> metadataExecutorServiceProvider) {
         this.backOffHandler = checkNotNull(backOffHandler);
+        this.concurrencyLimiter = checkNotNull(concurrencyLimiter);
+        this.rateLimiter = checkNotNull(rateLimiter);
+        this.quotaSignal = checkNotNull(quotaSignal);
+        this.metadataExecutorServiceProvider = checkNotNull(metadataExecutorServiceProvider);
     }
 
     @Override
-    public <T> CompletableFuture<T> withBackOffAndRetry(String operationName, Supplier<CompletableFuture<T>> action, LongConsumer backoffEventConsumer) {
-        return action.get()
-                .thenApply(value -> {
-                    backOffHandler.reset();
-                    return Either.<T, RetryableFailure>left(value);
-                })
+    public <T> CompletableFuture<T> withBackOffAndRetry(ApiCallType callType,
+                                                        String operationName,
+                                                        Supplier<CompletableFuture<T>> action,
+                                                        LongConsumer backoffEventConsumer) {
+        return withBackOffAndRetry(callType, operationName, action, backoffEventConsumer, backOffHandler.createOperationBackOff(operationName));
+    }
+
+    private <T> CompletableFuture<T> withBackOffAndRetry(ApiCallType callType,
+                                                         String operationName,
+                                                         Supplier<CompletableFuture<T>> action,
+                                                         LongConsumer backoffEventConsumer,
+                                                         OperationBackOff operationBackOff) {
+        return attempt(callType, action)
+                .thenApply(Either::<T, RetryableFailure>left)
                 .exceptionally(exception -> {
-                    var backoffDelayMs = backOffHandler.handle(operationName, exception);
+                    var backoffDelayMs = operationBackOff.handle(exception);
                     return Either.right(RetryableFailure.of(exception, backoffDelayMs));
                 })
                 .thenCompose(eitherValueOrRetryableFailure -> eitherValueOrRetryableFailure.map(
@@ -38,9 +64,21 @@ final class CloudOperationHelperImpl implements CloudOperationHelper {
                                 .map(backoffDelayMs -> {
                                     logger.debug("Retrying operation '{}' with backoff {}ms", operationName, retryableFailure.backoffDelayMs());
                                     backoffEventConsumer.accept(backoffDelayMs);
-                                    return withBackOffAndRetry(operationName, action, backoffEventConsumer);
+                                    // no thread is parked while backing off, and the retry resumes on the metadata lane
+                                    return runAsync(() -> {}, delayedExecutor(backoffDelayMs, MILLISECONDS, metadataExecutorServiceProvider.get()))
+                                            .thenCompose(ignored -> withBackOffAndRetry(callType, operationName, action, backoffEventConsumer, operationBackOff));
                                 })
                                 .orElseGet(() -> CompletableFutures.failure(retryableFailure.exception()))
                 ));
     }
+
+    private <T> CompletableFuture<T> attempt(ApiCallType callType, Supplier<CompletableFuture<T>> action) {
+        if (callType == ApiCallType.DRIVE) {
+            // not subject to Google Photos quotas
+            return rateLimiter.acquire(callType).thenCompose(ignored -> action.get());
+        }
+        return quotaSignal.whenQuotaAvailable()
+                .thenCompose(ignored -> rateLimiter.acquire(callType))
+                .thenCompose(ignored -> concurrencyLimiter.withPermit(metadataExecutorServiceProvider.get(), 0, action));
+    }
 }
@@ -0,0 +1,24 @@
+package net.yudichev.googlephotosupload.core;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiFunction;
+
+/**
+ * Coalesces creation of media items into batches of up to {@link GooglePhotosUploaderImpl#GOOGLE_PHOTOS_API_BATCH_SIZE} items per album
+ * (or without an album, across directories), flushing a batch once it is full, or once its first item has waited for {@link Preferences#mediaItemCreationLingerMillis()}.
+ */
+interface CreateMediaItemsBatcher {
+    /**
+     * @param createMediaItems performs the actual creation of a batch; only successfully created items are expected in the result. Only items
+     *                         given the same instance share a batch, so callers whose items may be created together must pass the same
+     *                         instance
+     * @return the created media item; empty if the item did not need creating, or failed to be created (such failures are expected to be
+     * reported by {@code createMediaItems})
+     */
+    CompletableFuture<Optional<PathMediaItemOrError>> create(
+            Optional<String> albumId,
+            PathState pathState,
+            BiFunction<Optional<String>, List<PathState>, CompletableFuture<List<PathMediaItemOrError>>> createMediaItems);
+}
@@ -0,0 +1,147 @@
+package net.yudichev.googlephotosupload.core;
+
+import com.google.common.collect.HashBasedTable;
+import com.google.common.collect.Table;
+import net.yudichev.jiotty.common.inject.BaseLifecycleComponent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.collect.ImmutableMap.toImmutableMap;
+import static java.util.Comparator.comparing;
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static java.util.concurrent.CompletableFuture.delayedExecutor;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static net.yudichev.googlephotosupload.core.GooglePhotosUploaderImpl.GOOGLE_PHOTOS_API_BATCH_SIZE;
+import static net.yudichev.jiotty.common.lang.Locks.inLock;
+
+final class CreateMediaItemsBatcherImpl extends BaseLifecycleComponent implements CreateMediaItemsBatcher {
+    private static final Logger logger = LoggerFactory.getLogger(CreateMediaItemsBatcherImpl.class);
+    private final PreferencesManager preferencesManager;
+    private final UploadTokenTracker uploadTokenTracker;
+    private final Lock lock = new ReentrantLock();
+    /**
+     * By album ID and by the function creating the batch, which is compared by identity.
+     */
+    private final Table<Optional<String>, BiFunction<Optional<String>, List<PathState>, CompletableFuture<List<PathMediaItemOrError>>>, Batch> openBatches =
+            HashBasedTable.create();
+    private long lingerMillis;
+
+    @Inject
+    CreateMediaItemsBatcherImpl(PreferencesManager preferencesManager, UploadTokenTracker uploadTokenTracker) {
+        this.preferencesManager = checkNotNull(preferencesManager);
+        this.uploadTokenTracker = checkNotNull(uploadTokenTracker);
+    }
+
+    @Override
+    public CompletableFuture<Optional<PathMediaItemOrError>> create(
+            Optional<String> albumId,
+            PathState pathState,
+            BiFunction<Optional<String>, List<PathState>, CompletableFuture<List<PathMediaItemOrError>>> createMediaItems) {
+        checkStarted();
+        var itemStateOptional = pathState.state().toSuccess();
+        if (itemStateOptional.isEmpty() || itemStateOptional.get().mediaId().isPresent()) {
+            return completedFuture(Optional.empty());
+        }
+
+        var item = new PendingItem(pathState);
+        // an item whose upload token is about to expire does not wait for the batch to fill up
+        var urgent = itemStateOptional.get().uploadState().map(uploadTokenTracker::nearingExpiry).orElse(false);
+        var fullBatch = inLock(lock, () -> {
+            var batch = openBatches.get(albumId, createMediaItems);
+            if (batch == null) {
+                batch = new Batch(albumId, createMediaItems);
+                openBatches.put(albumId, createMediaItems, batch);
+                scheduleLingerFlush(batch);
+            }
+            batch.items.add(item);
+            if (batch.items.size() < GOOGLE_PHOTOS_API_BATCH_SIZE && !urgent) {
+                return null;
+            }
+            openBatches.remove(albumId, createMediaItems);
+            return batch;
+        });
+        if (fullBatch != null) {
+            flush(fullBatch);
+        }
+        return item.result;
+    }
+
+    @Override
+    protected void doStart() {
+        lingerMillis = preferencesManager.get().mediaItemCreationLingerMillis();
+    }
+
+    @Override
+    protected void doStop() {
+        List<Batch> abandonedBatches = inLock(lock, () -> {
+            List<Batch> batches = new ArrayList<>(openBatches.values());
+            openBatches.clear();
+            return batches;
+        });
+        abandonedBatches.forEach(batch -> batch.items.forEach(
+                item -> item.result.completeExceptionally(new IllegalStateException("stopped before media items were created"))));
+    }
+
+    private void scheduleLingerFlush(Batch batch) {
+        delayedExecutor(lingerMillis, MILLISECONDS).execute(() -> {
+            if (inLock(lock, () -> openBatches.get(batch.albumId, batch.createMediaItems) == batch &&
+                    openBatches.remove(batch.albumId, batch.createMediaItems) != null)) {
+                logger.debug("Flushing {} item(s) for album {} after linger time", batch.items.size(), batch.albumId);
+                flush(batch);
+            }
+        });
+    }
+
+    private static void flush(Batch batch) {
+        // the batch is no longer reachable by other threads, so its items are safe to read
+        List<PathState> pathStates = batch.items.stream()
+                .map(item -> item.pathState)
+                .sorted(comparing(pathState -> pathState.path().getFileName().toString()))
+                .collect(toImmutableList());
+        completedFuture(pathStates)
+                .thenCompose(states -> batch.createMediaItems.apply(batch.albumId, states))
+                .whenComplete((createdItems, exception) -> {
+                    if (exception != null) {
+                        batch.items.forEach(item -> item.result.completeExceptionally(exception));
+                    } else {
+                        Map<Path, PathMediaItemOrError> createdItemsByPath = createdItems.stream()
+                                .collect(toImmutableMap(PathMediaItemOrError::path, Function.identity(), (item1, item2) -> item1));
+                        batch.items.forEach(item -> item.result.complete(Optional.ofNullable(createdItemsByPath.get(item.pathState.path()))));
+                    }
+                });
+    }
+
+    private static final class Batch {
+        final Optional<String> albumId;
+        final BiFunction<Optional<String>, List<PathState>, CompletableFuture<List<PathMediaItemOrError>>> createMediaItems;
+        final List<PendingItem> items = new ArrayList<>(GOOGLE_PHOTOS_API_BATCH_SIZE);
+
+        Batch(Optional<String> albumId, BiFunction<Optional<String>, List<PathState>, CompletableFuture<List<PathMediaItemOrError>>> createMediaItems) {
+            this.albumId = albumId;
+            this.createMediaItems = createMediaItems;
+        }
+    }
+
+    private static final class PendingItem {
+        final PathState pathState;
+        final CompletableFuture<Optional<PathMediaItemOrError>> result = new CompletableFuture<>();
+
+        PendingItem(PathState pathState) {
+            this.pathState = pathState;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package net.yudichev.googlephotosupload.core;
+
+import javax.inject.Inject;
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Reuses direct buffers for reading files being uploaded: allocating direct memory is expensive and only gets reclaimed on GC, so allocating a
+ * buffer per request would defeat the purpose of using direct buffers.
+ */
+final class DirectBufferPool {
+    private static final int DEFAULT_BUFFER_SIZE = 256 * 1024;
+    private static final int DEFAULT_MAX_POOLED_BUFFERS = 64;
+
+    private final int bufferSize;
+    private final int maxPooledBuffers;
+    private final Queue<ByteBuffer> pooledBuffers = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pooledBufferCount = new AtomicInteger();
+
+    @Inject
+    DirectBufferPool() {
+        this(DEFAULT_BUFFER_SIZE, DEFAULT_MAX_POOLED_BUFFERS);
+    }
+
+    DirectBufferPool(int bufferSize, int maxPooledBuffers) {
+        checkArgument(bufferSize > 0, "bufferSize cannot be <=0: %s", bufferSize);
+        this.bufferSize = bufferSize;
+        this.maxPooledBuffers = maxPooledBuffers;
+    }
+
+    ByteBuffer acquire() {
+        var buffer = pooledBuffers.poll();
+        if (buffer == null) {
+            return ByteBuffer.allocateDirect(bufferSize);
+        }
+        pooledBufferCount.decrementAndGet();
+        return buffer.clear();
+    }
+
+    void release(ByteBuffer buffer) {
+        if (pooledBufferCount.incrementAndGet() <= maxPooledBuffers) {
+            pooledBuffers.add(buffer);
+        } else {
+            pooledBufferCount.decrementAndGet();
+        }
+    }
+}
@@ -61,7 +61,7 @@ final class DirectoryStructureSupplierImpl implements DirectoryStructureSupplier
         var rootNameCount = rootDir.getNameCount();
         preferences.relevantDirDepthLimit().ifPresent(limit -> logger.info("Only using directories up to depth level {} as albums", limit));
         var relevantDepthLimit = preferences.relevantDirDepthLimit().orElse(Integer.MAX_VALUE);
-        Map<Path, ImmutableList.Builder<Path>> fileListBuilderByParentDir = new HashMap<>();
+        Map<Path, DirectoryContents> contentsByParentDir = new HashMap<>();
         asUnchecked(() -> Files.walkFileTree(rootDir, new SimpleFileVisitor<>() {
             private int currentDepth;
             private Path currentRelevantDir;
@@ -89,9 +89,9 @@ final class DirectoryStructureSupplierImpl implements DirectoryStructureSupplier
             @Override
             public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
                 if (preferences.shouldIncludePath(file)) {
-                    fileListBuilderByParentDir
-                            .computeIfAbsent(currentRelevantDir, ignored -> ImmutableList.builder())
-                            .add(file);
+                    contentsByParentDir
+                            .computeIfAbsent(currentRelevantDir, ignored -> new DirectoryContents())
+                            .add(file, attrs);
                     progressStatus.updateDescription(file.toAbsolutePath().toString());
                     logger.debug("Including file: {}", file);
                     progressStatus.incrementSuccess();
@@ -107,11 +107,14 @@ final class DirectoryStructureSupplierImpl implements DirectoryStructureSupplier
             }
         }));
 
-        return fileListBuilderByParentDir.entrySet().stream()
+        return contentsByParentDir.entrySet().stream()
                 .map(entry -> AlbumDirectory.builder()
                         .setPath(entry.getKey())
                         .setAlbumTitle(toAlbumTitle(entry.getKey(), preferences.albumDelimiter(), rootNameCount))
-                        .setFiles(entry.getValue().build())
+                        .setFiles(entry.getValue().files.build())
+                        .setTotalSize(entry.getValue().totalSize)
+                        .setOldestModifiedMillis(entry.getValue().oldestModifiedMillis)
+                        .setNewestModifiedMillis(entry.getValue().newestModifiedMillis)
                         .build());
     }
 
@@ -127,6 +130,21 @@ final class DirectoryStructureSupplierImpl implements DirectoryStructureSupplier
         }
     }
 
+    private static final class DirectoryContents {
+        final ImmutableList.Builder<Path> files = ImmutableList.builder();
+        long totalSize;
+        long oldestModifiedMillis = Long.MAX_VALUE;
+        long newestModifiedMillis = Long.MIN_VALUE;
+
+        void add(Path file, BasicFileAttributes attributes) {
+            files.add(file);
+            totalSize += attributes.size();
+            var modifiedMillis = attributes.lastModifiedTime().toMillis();
+            oldestModifiedMillis = Math.min(oldestModifiedMillis, modifiedMillis);
+            newestModifiedMillis = Math.max(newestModifiedMillis, modifiedMillis);
+        }
+    }
+
     @Value.Immutable
     @PackagePrivateImmutablesStyle
     interface BaseAlbumDirectory {
@@ -135,5 +153,14 @@ final class DirectoryStructureSupplierImpl implements DirectoryStructureSupplier
         Optional<String> albumTitle();
 
         List<Path> files();
+
+        /**
+         * Used to decide the {@link UploadOrder} of directories.
+         */
+        long totalSize();
+
+        long oldestModifiedMillis();
+
+        long newestModifiedMillis();
     }
 }
\ No newline at end of file
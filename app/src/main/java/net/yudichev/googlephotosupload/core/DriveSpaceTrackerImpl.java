@@ -112,7 +112,7 @@ final class DriveSpaceTrackerImpl implements DriveSpaceTracker {
         if (driveSpaceStatus == null) {
             driveSpaceStatus = progressStatusFactory.create(resourceBundle.getString("driveSpaceStatusTitle"), Optional.empty());
         }
-        cloudOperationHelper.withBackOffAndRetry("Get drive quota",
+        cloudOperationHelper.withBackOffAndRetry(ApiCallType.DRIVE, "Get drive quota",
                 // Creating a file in Drive refreshes usage stats
                 () -> googleDriveClient.getAppDataFolder(directExecutor()).createFile("file.txt", "text/plain", NO_DATA)
                         .thenCompose(GoogleDrivePath::delete)
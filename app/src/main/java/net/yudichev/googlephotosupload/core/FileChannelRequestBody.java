@@ -0,0 +1,94 @@
+package net.yudichev.googlephotosupload.core;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.FileChannel;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Streams a region of a file through a pooled direct buffer, so that the file is never held in heap memory. Reads are positional, so the body
+ * can be written more than once if the HTTP client retries the request. Every buffer is paced by the {@link BandwidthLimiter}; the
+ * {@link TransferListener} is told about every wait, so that it is not taken for a stall.
+ */
+final class FileChannelRequestBody extends RequestBody {
+    private static final MediaType OCTET_STREAM = MediaType.get("application/octet-stream");
+
+    private final FileChannel channel;
+    private final long position;
+    private final long length;
+    private final DirectBufferPool bufferPool;
+    private final BandwidthLimiter bandwidthLimiter;
+    private final TransferListener listener;
+
+    FileChannelRequestBody(FileChannel channel,
+                           long position,
+                           long length,
+                           DirectBufferPool bufferPool,
+                           BandwidthLimiter bandwidthLimiter,
+                           TransferListener listener) {
+        this.channel = checkNotNull(channel);
+        this.position = position;
+        this.length = length;
+        this.bufferPool = checkNotNull(bufferPool);
+        this.bandwidthLimiter = checkNotNull(bandwidthLimiter);
+        this.listener = checkNotNull(listener);
+    }
+
+    @Override
+    public MediaType contentType() {
+        return OCTET_STREAM;
+    }
+
+    @Override
+    public long contentLength() {
+        return length;
+    }
+
+    @Override
+    public void writeTo(BufferedSink sink) throws IOException {
+        var buffer = bufferPool.acquire();
+        try {
+            var written = 0L;
+            while (written < length) {
+                buffer.clear();
+                //noinspection NumericCastThatLosesPrecision bounded by buffer capacity
+                buffer.limit((int) Math.min(buffer.capacity(), length - written));
+                var read = channel.read(buffer, position + written);
+                if (read < 0) {
+                    throw new EOFException("file is shorter than expected: " + (position + written));
+                }
+                buffer.flip();
+                awaitBandwidth(read);
+                while (buffer.hasRemaining()) {
+                    sink.write(buffer);
+                }
+                written += read;
+                listener.onProgress();
+            }
+        } finally {
+            bufferPool.release(buffer);
+        }
+    }
+
+    private void awaitBandwidth(int bytes) throws InterruptedIOException {
+        try {
+            var delayNanos = bandwidthLimiter.reserveBytes(bytes);
+            if (delayNanos > 0) {
+                listener.onThrottled(delayNanos);
+                NANOSECONDS.sleep(delayNanos);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            var exception = new InterruptedIOException("interrupted while waiting for upload bandwidth");
+            exception.initCause(e);
+            throw exception;
+        }
+    }
+}
@@ -1,9 +1,11 @@
 package net.yudichev.googlephotosupload.core;
 
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 import com.google.rpc.Code;
 import net.yudichev.jiotty.common.inject.BaseLifecycleComponent;
+import net.yudichev.jiotty.common.lang.CompletableFutures;
 import net.yudichev.jiotty.common.lang.ResultOrFailure;
 import net.yudichev.jiotty.common.time.CurrentDateTimeProvider;
 import net.yudichev.jiotty.connector.google.photos.GooglePhotosAlbum;
@@ -14,28 +16,39 @@ import org.slf4j.LoggerFactory;
 
 import javax.inject.Inject;
 import javax.inject.Provider;
+import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.ResourceBundle;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiFunction;
 import java.util.function.Function;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.base.Throwables.getCausalChain;
 import static com.google.common.collect.ImmutableList.toImmutableList;
-import static java.time.temporal.ChronoUnit.HOURS;
 import static java.util.Comparator.comparing;
+import static java.util.Comparator.comparingLong;
 import static java.util.concurrent.CompletableFuture.completedFuture;
+import static java.util.concurrent.CompletableFuture.delayedExecutor;
+import static java.util.concurrent.CompletableFuture.runAsync;
 import static java.util.concurrent.CompletableFuture.supplyAsync;
-import static java.util.stream.Collectors.toConcurrentMap;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.stream.Collectors.toList;
-import static net.yudichev.googlephotosupload.core.Bindings.Backpressured;
-import static net.yudichev.jiotty.common.lang.CompletableFutures.toFutureOfList;
+import static net.yudichev.googlephotosupload.core.Bindings.ByteTransfer;
+import static net.yudichev.googlephotosupload.core.Bindings.MetadataCalls;
 import static net.yudichev.jiotty.common.lang.CompletableFutures.toFutureOfListChaining;
 import static net.yudichev.jiotty.common.lang.ResultOrFailure.failure;
 import static net.yudichev.jiotty.common.lang.ResultOrFailure.success;
@@ -46,6 +59,10 @@ final class GooglePhotosUploaderImpl extends BaseLifecycleComponent implements G
      * Max number of media items to upload in one directory before drive space is checked; only applicable if drive space check is enabled.
      */
     public static final int DRIVE_SPACE_MONITORING_BATCH_SIZE = 20;
+    /**
+     * Item states are loaded per directory as the directory is uploaded, and cached; uploads in progress are kept on top of this bound.
+     */
+    private static final int MAX_CACHED_ITEM_STATES = 100_000;
 
     @SuppressWarnings("NonConstantLogger") // as designed
     private final Logger logger = LoggerFactory.getLogger(getClass());
@@ -57,19 +74,53 @@ final class GooglePhotosUploaderImpl extends BaseLifecycleComponent implements G
     private final GooglePhotosClient googlePhotosClient;
     private final UploadStateManager uploadStateManager;
     private final CurrentDateTimeProvider currentDateTimeProvider;
-    private final Provider<ExecutorService> executorServiceProvider;
+    private final Provider<ExecutorService> byteTransferExecutorServiceProvider;
+    private final Provider<ExecutorService> metadataExecutorServiceProvider;
     private final BackingOffRemoteApiExceptionHandler backOffHandler;
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+    private final ApiRateLimiter rateLimiter;
+    private final SharedQuotaSignal quotaSignal;
+    private final PreferencesManager preferencesManager;
+    private final UploadTokenTracker uploadTokenTracker;
+    private final ResumableMediaUploader resumableMediaUploader;
+    private final StreamingMediaUploader streamingMediaUploader;
+    private final BandwidthLimiter bandwidthLimiter;
+    /**
+     * One function per file progress status, i.e. per upload run, so that items of all directories of the run can share media item creation
+     * batches.
+     */
+    private final Map<ProgressStatus, BiFunction<Optional<String>, List<PathState>, CompletableFuture<List<PathMediaItemOrError>>>>
+            createMediaItemsByProgressStatus = new ConcurrentHashMap<>();
+    /**
+     * Uploads in progress, kept here until they complete so that the size bound of {@link #uploadedItemStateByPath} cannot drop them and
+     * start the same upload again.
+     */
+    private final Map<Path, CompletableFuture<ItemState>> inFlightItemStateByPath = new ConcurrentHashMap<>();
 
     // memory barrier for access to non-finals (as we must survive a restart), but should NOT be used to guard internal state of any other objects
     private volatile boolean memoryBarrier = true;
 
-    private ExecutorService executorService;
+    private ExecutorService byteTransferExecutorService;
+    private ExecutorService metadataExecutorService;
+    private AsyncSemaphore inFlightFiles;
+    private ByteBudget bytesInFlight;
+    private AsyncSemaphore smallFileLane;
+    private AsyncSemaphore largeFileLane;
+    private long largeFileThresholdBytes;
+    private UploadOrder uploadOrder;
+    private UploadTransport uploadTransport;
+    private Duration uploadStallTimeout;
+    private long minUploadKilobytesPerSecond;
+    /**
+     * Bounded in size, so it may evict any entry, including an upload in progress; see {@link #inFlightItemStateByPath}.
+     */
     private Map<Path, CompletableFuture<ItemState>> uploadedItemStateByPath;
     private boolean requestedToForgetUploadStateOnShutdown;
 
     @Inject
     GooglePhotosUploaderImpl(GooglePhotosClient googlePhotosClient,
-                             @Backpressured Provider<ExecutorService> executorServiceProvider,
+                             @ByteTransfer Provider<ExecutorService> byteTransferExecutorServiceProvider,
+                             @MetadataCalls Provider<ExecutorService> metadataExecutorServiceProvider,
                              BackingOffRemoteApiExceptionHandler backOffHandler,
                              FatalUserCorrectableRemoteApiExceptionHandler fatalUserCorrectableHandler,
                              UploadStateManager uploadStateManager,
@@ -77,8 +128,17 @@ final class GooglePhotosUploaderImpl extends BaseLifecycleComponent implements G
                              CloudOperationHelper cloudOperationHelper,
                              AddToAlbumStrategy addToAlbumStrategy,
                              DriveSpaceTracker driveSpaceTracker,
-                             ResourceBundle resourceBundle) {
-        this.executorServiceProvider = checkNotNull(executorServiceProvider);
+                             ResourceBundle resourceBundle,
+                             @ByteTransfer AdaptiveConcurrencyLimiter concurrencyLimiter,
+                             ApiRateLimiter rateLimiter,
+                             SharedQuotaSignal quotaSignal,
+                             PreferencesManager preferencesManager,
+                             UploadTokenTracker uploadTokenTracker,
+                             ResumableMediaUploader resumableMediaUploader,
+                             StreamingMediaUploader streamingMediaUploader,
+                             BandwidthLimiter bandwidthLimiter) {
+        this.byteTransferExecutorServiceProvider = checkNotNull(byteTransferExecutorServiceProvider);
+        this.metadataExecutorServiceProvider = checkNotNull(metadataExecutorServiceProvider);
         this.backOffHandler = checkNotNull(backOffHandler);
         this.fatalUserCorrectableHandler = checkNotNull(fatalUserCorrectableHandler);
         this.googlePhotosClient = checkNotNull(googlePhotosClient);
@@ -88,6 +148,14 @@ final class GooglePhotosUploaderImpl extends BaseLifecycleComponent implements G
         this.addToAlbumStrategy = checkNotNull(addToAlbumStrategy);
         this.driveSpaceTracker = checkNotNull(driveSpaceTracker);
         this.resourceBundle = checkNotNull(resourceBundle);
+        this.concurrencyLimiter = checkNotNull(concurrencyLimiter);
+        this.rateLimiter = checkNotNull(rateLimiter);
+        this.quotaSignal = checkNotNull(quotaSignal);
+        this.preferencesManager = checkNotNull(preferencesManager);
+        this.uploadTokenTracker = checkNotNull(uploadTokenTracker);
+        this.resumableMediaUploader = checkNotNull(resumableMediaUploader);
+        this.streamingMediaUploader = checkNotNull(streamingMediaUploader);
+        this.bandwidthLimiter = checkNotNull(bandwidthLimiter);
     }
 
     @Override
@@ -97,28 +165,38 @@ final class GooglePhotosUploaderImpl extends BaseLifecycleComponent implements G
                                                    ProgressStatus fileProgressStatus) {
         checkStarted();
 
-        return supplyAsync(() -> files, executorService)
-                .thenCompose(paths -> {
+        // the uploads are scheduled from the byte transfer lane, so that a saturated byte lane never runs a transfer on a metadata thread
+        return supplyAsync(() -> uploadStateManager.loadItemStates(files), metadataExecutorService)
+                .thenComposeAsync(persistedItemStates -> {
                     directoryProgressStatus.updateDescription(googlePhotosAlbum.map(GooglePhotosAlbum::getTitle).orElse(""));
-                    var sortedPaths = paths.stream()
+                    var sortedPaths = files.stream()
                             .sorted(comparing(path -> path.getFileName().toString()))
                             .collect(toList());
                     Function<List<Path>, CompletableFuture<Void>> uploader = partition -> {
-                        var createMediaDataResultsFuture = partition.stream()
-                                .map(path -> createMediaData(path, fileProgressStatus)
-                                        .thenApply(itemState -> {
-                                            itemState.toFailure().ifPresentOrElse(
-                                                    error -> fileProgressStatus.addFailure(KeyedError.of(path, error)),
-                                                    fileProgressStatus::incrementSuccess);
-                                            return PathState.of(path, itemState);
-                                        }))
-                                .collect(toFutureOfList());
+                        // scheduled in the configured upload order, but the results are kept in name order for the albums
+                        Map<Path, CompletableFuture<PathState>> resultFutureByPath = new HashMap<>();
+                        partition.stream()
+                                .map(this::toScheduledFile)
+                                .sorted(comparingLong(scheduledFile -> scheduledFile.priority))
+                                .forEach(scheduledFile -> resultFutureByPath.put(
+                                        scheduledFile.path,
+                                        scheduleCreateMediaData(scheduledFile, Optional.ofNullable(persistedItemStates.get(scheduledFile.path)), fileProgressStatus)
+                                                .thenApply(itemState -> {
+                                                    itemState.toFailure().ifPresentOrElse(
+                                                            error -> fileProgressStatus.addFailure(KeyedError.of(scheduledFile.path, error)),
+                                                            fileProgressStatus::incrementSuccess);
+                                                    return PathState.of(scheduledFile.path, itemState);
+                                                })));
+                        List<CompletableFuture<PathState>> createMediaDataResultFutures = partition.stream()
+                                .map(resultFutureByPath::get)
+                                .collect(toImmutableList());
                         return addToAlbumStrategy.addToAlbum(
-                                createMediaDataResultsFuture,
+                                createMediaDataResultFutures,
                                 googlePhotosAlbum,
                                 fileProgressStatus,
                                 directoryProgressStatus,
-                                (albumId, pathStates) -> createMediaItems(albumId, fileProgressStatus, pathStates),
+                                createMediaItemsByProgressStatus.computeIfAbsent(fileProgressStatus,
+                                        progressStatus -> (albumId, pathStates) -> createMediaItems(albumId, progressStatus, pathStates)),
                                 this::getItemState);
                     };
                     return driveSpaceTracker.validationEnabled() ?
@@ -126,7 +204,7 @@ final class GooglePhotosUploaderImpl extends BaseLifecycleComponent implements G
                                     .collect(toFutureOfListChaining(partition -> uploader.apply(files)))
                                     .<Void>thenApply(list -> null) :
                             uploader.apply(sortedPaths);
-                });
+                }, byteTransferExecutorService);
     }
 
     @Override
@@ -143,17 +221,37 @@ final class GooglePhotosUploaderImpl extends BaseLifecycleComponent implements G
 
     @Override
     protected void doStart() {
-        executorService = executorServiceProvider.get();
-        uploadedItemStateByPath = uploadStateManager.loadUploadedMediaItemIdByAbsolutePath().entrySet().stream()
-                .collect(toConcurrentMap(
-                        entry -> Paths.get(entry.getKey()),
-                        entry -> completedFuture(entry.getValue())));
+        byteTransferExecutorService = byteTransferExecutorServiceProvider.get();
+        metadataExecutorService = metadataExecutorServiceProvider.get();
+        var preferences = preferencesManager.get();
+        inFlightFiles = new AsyncSemaphore(preferences.maxInFlightFiles());
+        bytesInFlight = new ByteBudget(preferences.maxMegabytesInFlight() * 1024L * 1024L);
+        smallFileLane = new AsyncSemaphore(preferences.smallFileLaneConcurrency());
+        largeFileLane = new AsyncSemaphore(preferences.largeFileLaneConcurrency());
+        largeFileThresholdBytes = preferences.largeFileThresholdMegabytes() * 1024L * 1024L;
+        uploadOrder = preferences.uploadOrder();
+        uploadTransport = preferences.uploadTransport();
+        uploadStallTimeout = Duration.ofSeconds(preferences.uploadStallTimeoutSeconds());
+        minUploadKilobytesPerSecond = preferences.minUploadKilobytesPerSecond();
+        uploadStateManager.setWriteBehindWindow(Duration.ofMillis(preferences.stateWriteBehindMillis()));
+        uploadTokenTracker.reset();
+        createMediaItemsByProgressStatus.clear();
+        inFlightItemStateByPath.clear();
+        uploadedItemStateByPath = CacheBuilder.newBuilder()
+                .maximumSize(MAX_CACHED_ITEM_STATES)
+                .<Path, CompletableFuture<ItemState>>build()
+                .asMap();
+        uploadStateManager.loadItemStatesPendingMediaCreation().forEach(uploadTokenTracker::onItemStateChanged);
         memoryBarrier = true;
     }
 
     @Override
     protected void doStop() {
         checkState(memoryBarrier);
+        var bytesLostToExpiry = uploadTokenTracker.bytesLostToExpiry();
+        if (bytesLostToExpiry > 0) {
+            logger.info("Re-uploaded {} byte(s) because of expired upload tokens", bytesLostToExpiry);
+        }
         if (requestedToForgetUploadStateOnShutdown) {
             forgetUploadState();
             requestedToForgetUploadStateOnShutdown = false;
@@ -162,11 +260,25 @@ final class GooglePhotosUploaderImpl extends BaseLifecycleComponent implements G
     }
 
     private ItemState getItemState(Path path) {
-        var itemState = uploadedItemStateByPath.get(path).getNow(null);
+        var itemStateFuture = uploadedItemStateByPath.get(path);
+        if (itemStateFuture == null) {
+            return persistedItemState(path);
+        }
+        var itemState = itemStateFuture.getNow(null);
         checkState(itemState != null, "item state future must be completed");
         return itemState;
     }
 
+    /**
+     * For an item evicted from the cache. Uploads in progress stay in {@link #inFlightItemStateByPath}, so the evicted item's state has already
+     * been passed to {@link UploadStateManager#saveItemState(Path, ItemState)}, and loading flushes the state queued by write-behind.
+     */
+    private ItemState persistedItemState(Path path) {
+        var itemState = uploadStateManager.loadItemStates(ImmutableList.of(path)).get(path);
+        checkState(itemState != null, "no state saved for %s", path);
+        return itemState;
+    }
+
     /**
      * @return list of items that were successfully created, which may be less in size than the specified
      * {@code createMediaDataResults}
@@ -193,6 +305,7 @@ final class GooglePhotosUploaderImpl extends BaseLifecycleComponent implements G
                         .build())
                 .collect(toImmutableList());
         return cloudOperationHelper.withBackOffAndRetry(
+                ApiCallType.BATCH_CREATE,
                 "create media items",
                 () -> googlePhotosClient.createMediaItems(albumId, pendingNewMediaItems, createMediaItemsExecutor(pendingPathStates, fileProgressStatus)),
                 fileProgressStatus::onBackoffDelay)
@@ -204,12 +317,16 @@ final class GooglePhotosUploaderImpl extends BaseLifecycleComponent implements G
                         mediaItemOrError.errorStatus().ifPresent(status -> fileProgressStatus.addFailure(
                                 KeyedError.of(pathState.path(), Code.forNumber(status.getCode()) + ": " + status.getMessage())));
                         mediaItemOrError.item().ifPresent(item -> {
+                            // if evicted, the state the batch was created from is the one whose token created the item
+                            var batchedItemState = pathState.state().toSuccess().get();
+                            // only the new state is worked out under the cache lock; it is saved once the lock is released
                             uploadedItemStateByPath.compute(pathState.path(),
-                                    (path, itemStateFuture) -> checkNotNull(itemStateFuture).thenApply(itemState -> {
-                                        var newItemState = itemState.withMediaId(item.getId());
-                                        uploadStateManager.saveItemState(path, newItemState);
-                                        return newItemState;
-                                    }));
+                                            (path, itemStateFuture) -> (itemStateFuture == null ? completedFuture(batchedItemState) : itemStateFuture)
+                                                    .thenApply(itemState -> itemState.withMediaId(item.getId())))
+                                    .thenAccept(newItemState -> {
+                                        uploadStateManager.saveItemState(pathState.path(), newItemState);
+                                        uploadTokenTracker.onItemStateChanged(pathState.path(), newItemState);
+                                    });
                             resultListBuilder.add(PathMediaItemOrError.of(pathState.path(), item));
                         });
                     }
@@ -232,17 +349,42 @@ final class GooglePhotosUploaderImpl extends BaseLifecycleComponent implements G
         logger.info("Was asked not to resume - forgetting {} previously uploaded item(s)", uploadedItemStateByPath.size());
         uploadStateManager.forgetState();
         uploadedItemStateByPath.clear();
+        inFlightItemStateByPath.clear();
+        uploadTokenTracker.reset();
         memoryBarrier = true;
     }
 
-    private CompletableFuture<ResultOrFailure<ItemState>> createMediaData(Path file, ProgressStatus fileProgressStatus) {
+    private CompletableFuture<ResultOrFailure<ItemState>> createMediaData(Path file,
+                                                                          Optional<ItemState> persistedItemState,
+                                                                          ProgressStatus fileProgressStatus) {
+        return createMediaData(file, persistedItemState, fileProgressStatus, backOffHandler.createOperationBackOff("uploading file " + file));
+    }
+
+    /**
+     * The cache only gets a placeholder for a new upload under its lock; the upload itself is started once the lock is released, since it may
+     * run on the calling thread for as long as the transfer takes.
+     *
+     * @param persistedItemState the state saved by previous runs, used unless a more recent one is cached
+     */
+    private CompletableFuture<ResultOrFailure<ItemState>> createMediaData(Path file,
+                                                                          Optional<ItemState> persistedItemState,
+                                                                          ProgressStatus fileProgressStatus,
+                                                                          OperationBackOff operationBackOff) {
         checkStarted();
         checkState(memoryBarrier);
-        return uploadedItemStateByPath.compute(file,
+        var uploadToStart = new AtomicReference<CompletableFuture<ItemState>>();
+        var uploadTokenExpired = new AtomicBoolean();
+        var itemStateFuture = uploadedItemStateByPath.compute(file,
                 (theFile, currentFuture) -> {
+                    if (currentFuture == null) {
+                        currentFuture = inFlightItemStateByPath.get(theFile);
+                    }
+                    if (currentFuture == null && persistedItemState.isPresent()) {
+                        currentFuture = completedFuture(persistedItemState.get());
+                    }
                     if (currentFuture == null || currentFuture.isCompletedExceptionally()) {
                         logger.info("Scheduling upload of {}", file);
-                        currentFuture = doCreateMediaData(theFile, fileProgressStatus);
+                        currentFuture = uploadPlaceholder(theFile, uploadToStart);
                     } else {
                         var itemState = currentFuture.getNow(null);
                         if (itemState != null) {
@@ -251,7 +393,7 @@ final class GooglePhotosUploaderImpl extends BaseLifecycleComponent implements G
                                         if (itemState.mediaId().isPresent()) {
                                             return true;
                                         }
-                                        return uploadTokenNotExpired(file, uploadMediaItemState);
+                                        return uploadTokenNotExpired(file, uploadMediaItemState, uploadTokenExpired);
                                     })
                                     .map(uploadMediaItemState -> {
                                         logger.info("Media data already uploaded, skipping: {}", file);
@@ -259,46 +401,121 @@ final class GooglePhotosUploaderImpl extends BaseLifecycleComponent implements G
                                     })
                                     .orElseGet(() -> {
                                         logger.info("Media data uploaded, but upload token expired, re-uploading: {}", file);
-                                        return doCreateMediaData(theFile, fileProgressStatus);
+                                        return uploadPlaceholder(theFile, uploadToStart);
                                     });
                         } else {
                             logger.error("Unexpected future state for {}: {}", file, currentFuture);
                         }
                     }
                     return currentFuture;
-                })
+                });
+        if (uploadTokenExpired.get()) {
+            fileProgressStatus.onBytesLostToExpiry(uploadTokenTracker.bytesLostToExpiry());
+        }
+        var upload = uploadToStart.get();
+        if (upload != null) {
+            startUpload(file, fileProgressStatus, upload);
+        }
+        return itemStateFuture
                 .thenApply(itemState -> {
                     checkState(memoryBarrier);
                     uploadStateManager.saveItemState(file, itemState);
-                    backOffHandler.reset();
+                    uploadTokenTracker.onItemStateChanged(file, itemState);
                     return success(itemState);
                 })
                 .exceptionallyCompose(exception -> {
                     var operationName = "uploading file " + file;
                     return fatalUserCorrectableHandler.handle(operationName, exception)
                             .<CompletableFuture<ResultOrFailure<ItemState>>>map(errorMessage -> completedFuture(failure(errorMessage)))
-                            .orElseGet(() -> {
-                                if (backOffHandler.handle(operationName, exception).isPresent()) {
-                                    logger.debug("Retrying upload of {}", file);
-                                    return createMediaData(file, fileProgressStatus);
-                                } else {
-                                    throw new RuntimeException(exception);
-                                }
-                            });
+                            .orElseGet(() -> operationBackOff.handle(exception)
+                                    .map(backoffDelayMs -> {
+                                        logger.debug("Retrying upload of {} with backoff {}ms", file, backoffDelayMs);
+                                        fileProgressStatus.onBackoffDelay(backoffDelayMs);
+                                        return runAsync(() -> {}, delayedExecutor(backoffDelayMs, MILLISECONDS, byteTransferExecutorService))
+                                                .thenCompose(ignored -> createMediaData(file, persistedItemState, fileProgressStatus, operationBackOff));
+                                    })
+                                    .orElseThrow(() -> new RuntimeException(exception)));
                 });
     }
 
-    private boolean uploadTokenNotExpired(Path file, UploadMediaItemState uploadMediaItemState) {
-        var expiry = uploadMediaItemState.uploadInstant().plus(23, HOURS);
-        var notExpired = expiry.isAfter(currentDateTimeProvider.currentInstant());
-        if (!notExpired) {
+    private ScheduledFile toScheduledFile(Path file) {
+        try {
+            var attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            return new ScheduledFile(file, attributes.size(), UploadOrdering.filePriority(uploadOrder, attributes));
+        } catch (IOException e) {
+            // will fail properly when uploaded
+            return new ScheduledFile(file, 0, 0);
+        }
+    }
+
+    /**
+     * Large files wait in their own lane, so that they neither hold up small files nor take all in-flight slots while waiting.
+     */
+    private CompletableFuture<ResultOrFailure<ItemState>> scheduleCreateMediaData(ScheduledFile file,
+                                                                                  Optional<ItemState> persistedItemState,
+                                                                                  ProgressStatus fileProgressStatus) {
+        var lane = file.size >= largeFileThresholdBytes ? largeFileLane : smallFileLane;
+        return lane.withPermits(1, file.priority,
+                () -> inFlightFiles.withPermits(1, file.priority, () -> createMediaData(file.path, persistedItemState, fileProgressStatus)));
+    }
+
+    private boolean uploadTokenNotExpired(Path file, UploadMediaItemState uploadMediaItemState, AtomicBoolean uploadTokenExpired) {
+        if (uploadTokenTracker.expired(uploadMediaItemState)) {
             logger.debug("upload token for {} expired, forgetting: {}", file, uploadMediaItemState);
+            uploadTokenTracker.onExpired(file);
+            uploadTokenExpired.set(true);
+            return false;
+        }
+        return true;
+    }
+
+    private void startUpload(Path file, ProgressStatus fileProgressStatus, CompletableFuture<ItemState> placeholder) {
+        try {
+            doCreateMediaData(file, fileProgressStatus).whenComplete((itemState, exception) -> {
+                if (exception == null) {
+                    placeholder.complete(itemState);
+                } else {
+                    placeholder.completeExceptionally(exception);
+                }
+            });
+        } catch (RuntimeException e) {
+            placeholder.completeExceptionally(e);
         }
-        return notExpired;
+    }
+
+    private CompletableFuture<ItemState> uploadPlaceholder(Path file, AtomicReference<CompletableFuture<ItemState>> uploadToStart) {
+        var placeholder = pinnedWhileInFlight(file, new CompletableFuture<>());
+        uploadToStart.set(placeholder);
+        return placeholder;
+    }
+
+    private CompletableFuture<ItemState> pinnedWhileInFlight(Path file, CompletableFuture<ItemState> itemStateFuture) {
+        inFlightItemStateByPath.put(file, itemStateFuture);
+        itemStateFuture.whenComplete((itemState, exception) -> inFlightItemStateByPath.remove(file, itemStateFuture));
+        return itemStateFuture;
     }
 
     private CompletableFuture<ItemState> doCreateMediaData(Path file, ProgressStatus fileProgressStatus) {
-        return googlePhotosClient.uploadMediaData(file, createMediaDataExecutor(file, fileProgressStatus))
+        long fileSize;
+        try {
+            fileSize = Files.size(file);
+        } catch (IOException e) {
+            return CompletableFutures.failure(e);
+        }
+        var watchdog = new TransferWatchdog("upload of " + file,
+                uploadStallTimeout.plusSeconds(fileSize / 1024 / minUploadKilobytesPerSecond),
+                uploadStallTimeout);
+        return quotaSignal.whenQuotaAvailable()
+                .thenCompose(ignored -> rateLimiter.acquire(ApiCallType.UPLOAD, fileSize))
+                .thenCompose(ignored -> acquireBandwidthUpFront(fileSize))
+                .thenCompose(ignored -> bytesInFlight.withBytes(fileSize, () -> concurrencyLimiter.withPermit(byteTransferExecutorService, fileSize,
+                        () -> uploadMediaData(file, fileSize, createMediaDataExecutor(file, fileProgressStatus, watchdog), watchdog))))
+                .whenComplete((uploadToken, exception) -> {
+                    if (exception != null && getCausalChain(exception).stream().anyMatch(e -> e instanceof StalledTransferException)) {
+                        logger.warn("Upload of {} stalled, will retry", file);
+                        fileProgressStatus.onTransferStalled();
+                    }
+                })
                 .thenApply(uploadToken -> {
                     logger.info("Uploaded file {}", file);
                     logger.debug("Upload token {}", uploadToken);
@@ -308,19 +525,62 @@ final class GooglePhotosUploaderImpl extends BaseLifecycleComponent implements G
                 });
     }
 
-    private Executor createMediaDataExecutor(Path file, ProgressStatus fileProgressStatus) {
-        return command -> executorService.execute(() -> {
+    /**
+     * Large files go through the resumable protocol, so that a failure near the end of a multi-gigabyte video does not restart it from scratch;
+     * small files are not worth the extra round trips and go through the configured transport.
+     * <p>
+     * The library transport cannot be aborted, so it is not watched: abandoning it would leave it running while its retry starts.
+     */
+    private CompletableFuture<String> uploadMediaData(Path file, long fileSize, Executor executor, TransferWatchdog watchdog) {
+        if (fileSize >= largeFileThresholdBytes) {
+            return watchdog.watch(resumableMediaUploader.uploadMediaData(file, executor, watchdog));
+        }
+        return switch (uploadTransport) {
+            case LIBRARY -> googlePhotosClient.uploadMediaData(file, executor);
+            case STREAMING -> watchdog.watch(streamingMediaUploader.uploadMediaData(file, executor, watchdog));
+        };
+    }
+
+    /**
+     * The app's own transports pace every buffer they send; the library transport can only be held back as a whole before it starts.
+     */
+    private CompletableFuture<Void> acquireBandwidthUpFront(long fileSize) {
+        if (fileSize >= largeFileThresholdBytes || uploadTransport == UploadTransport.STREAMING) {
+            return completedFuture(null);
+        }
+        return bandwidthLimiter.acquire(fileSize);
+    }
+
+    private Executor createMediaDataExecutor(Path file, ProgressStatus fileProgressStatus, TransferWatchdog watchdog) {
+        return command -> byteTransferExecutorService.execute(() -> {
             fileProgressStatus.updateDescription(file.toAbsolutePath().toString());
             driveSpaceTracker.beforeUpload();
-            command.run();
+            watchdog.onStarted();
+            try {
+                command.run();
+            } finally {
+                watchdog.onFinished();
+            }
         });
     }
 
     private Executor createMediaItemsExecutor(List<PathState> pathStates, ProgressStatus fileProgressStatus) {
-        return command -> executorService.execute(() -> {
+        return command -> metadataExecutorService.execute(() -> {
             fileProgressStatus.updateDescription(String.format(resourceBundle.getString("uploaderFinalizing"), pathStates.size()));
             command.run();
             driveSpaceTracker.afterUpload(pathStates);
         });
     }
+
+    private static final class ScheduledFile {
+        final Path path;
+        final long size;
+        final long priority;
+
+        ScheduledFile(Path path, long size, long priority) {
+            this.path = path;
+            this.size = size;
+            this.priority = priority;
+        }
+    }
 }
@@ -6,7 +6,6 @@ import net.yudichev.jiotty.common.lang.TypedBuilder;
 import net.yudichev.jiotty.connector.google.common.GoogleApiAuthSettings;
 import net.yudichev.jiotty.connector.google.common.GoogleAuthorizationModule;
 import net.yudichev.jiotty.connector.google.drive.GoogleDriveModule;
-import net.yudichev.jiotty.connector.google.photos.GooglePhotosModule;
 
 import javax.inject.Singleton;
 import java.nio.file.Path;
@@ -47,8 +46,9 @@ public final class GoogleServicesModule extends AbstractModule {
                 .setSettings(settings)
                 .addRequiredScopes(DRIVE_APPDATA, SCOPE_PHOTOS_LIBRARY)
                 .build());
-        install(GooglePhotosModule.builder().build());
+        install(new PhotosChannelPoolModule());
         install(GoogleDriveModule.builder().build());
+        install(new UploadTransportModule());
     }
 
     public static final class Builder implements TypedBuilder<Module> {
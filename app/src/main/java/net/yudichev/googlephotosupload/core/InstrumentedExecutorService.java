@@ -0,0 +1,98 @@
+package net.yudichev.googlephotosupload.core;
+
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Collects queue metrics of the delegate: how many tasks were submitted, how many of them ended up being run by the submitting thread
+ * (i.e. the executor was saturated), how long the others waited in the queue and how deep the queue got.
+ */
+final class InstrumentedExecutorService extends AbstractExecutorService {
+    private final ExecutorService delegate;
+    private final LongAdder submittedCount = new LongAdder();
+    private final LongAdder callerRunCount = new LongAdder();
+    private final LongAdder queueWaitNanos = new LongAdder();
+    private final AtomicInteger queueLength = new AtomicInteger();
+    private final LongAccumulator maxQueueLength = new LongAccumulator(Math::max, 0);
+
+    InstrumentedExecutorService(ExecutorService delegate) {
+        this.delegate = checkNotNull(delegate);
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        submittedCount.increment();
+        maxQueueLength.accumulate(queueLength.incrementAndGet());
+        var submittingThread = Thread.currentThread();
+        var submitted = new AtomicBoolean();
+        var enqueuedNanos = System.nanoTime();
+        try {
+            delegate.execute(() -> {
+                queueLength.decrementAndGet();
+                if (!submitted.get() && Thread.currentThread() == submittingThread) {
+                    callerRunCount.increment();
+                } else {
+                    queueWaitNanos.add(System.nanoTime() - enqueuedNanos);
+                }
+                command.run();
+            });
+        } catch (RuntimeException e) {
+            queueLength.decrementAndGet();
+            throw e;
+        }
+        submitted.set(true);
+    }
+
+    int queueLength() {
+        return queueLength.get();
+    }
+
+    String stats() {
+        var submitted = submittedCount.sum();
+        var callerRuns = callerRunCount.sum();
+        var queued = submitted - callerRuns;
+        return "submitted " + submitted +
+                ", run by caller " + callerRuns +
+                ", max queue length " + maxQueueLength.get() +
+                ", average queue wait " + (queued == 0 ? 0 : NANOSECONDS.toMillis(queueWaitNanos.sum() / queued)) + "ms";
+    }
+
+    @Override
+    public void shutdown() {
+        delegate.shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        return delegate.shutdownNow();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return delegate.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return delegate.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return delegate.awaitTermination(timeout, unit);
+    }
+
+    @Override
+    public String toString() {
+        return "InstrumentedExecutorService{" + stats() + ", delegate=" + delegate + '}';
+    }
+}
@@ -0,0 +1,14 @@
+package net.yudichev.googlephotosupload.core;
+
+/**
+ * A resumable upload was interrupted by a network or a transient server failure and can be continued.
+ */
+final class InterruptedUploadException extends RuntimeException {
+    InterruptedUploadException(String message) {
+        super(message);
+    }
+
+    InterruptedUploadException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
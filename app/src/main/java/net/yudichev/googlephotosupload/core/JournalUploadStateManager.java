@@ -0,0 +1,703 @@
+package net.yudichev.googlephotosupload.core;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.BindingAnnotation;
+import net.yudichev.jiotty.common.inject.BaseLifecycleComponent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import java.io.IOException;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static java.lang.annotation.ElementType.*;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static net.yudichev.jiotty.common.lang.Locks.inLock;
+import static net.yudichev.jiotty.common.lang.MoreThrowables.asUnchecked;
+import static net.yudichev.jiotty.common.lang.MoreThrowables.getAsUnchecked;
+
+/**
+ * Appends every state change to a journal and keeps the current state in memory.
+ * <p>
+ * Paths are journaled once, when first seen, under an integer id; every other record refers to the path by that id. A record is framed as
+ * {@code [payload length][CRC32 of payload][payload]} and its payload has a fixed layout; for an item state:
+ * {@code [type][path id][flags][upload timestamp seconds][nanos][token][media id]}. A record cut short or garbled by a crash, or the zeros
+ * a file system may leave at the end of a file after one, fails its length or CRC check, and is dropped along with anything after it.
+ * <p>
+ * Records are written with sequential {@link FileChannel} writes and forced to disk in batches: concurrent writers share a single
+ * {@link FileChannel#force(boolean) force()} and, in write-behind mode, records are buffered and forced at least once per write-behind window.
+ * <p>
+ * Once the journal outgrows the last snapshot, the current state is written to a new snapshot, compacted: just the latest record of each item
+ * and upload session. Writers move on to a new journal generation at that point, and the older generations are deleted once the snapshot is in
+ * place. At start, the snapshot is read, then the journal generations written after it are replayed; both are read through a fixed size
+ * window, so neither is limited in size.
+ * <p>
+ * The whole state lives in memory, in four maps: paths by id and back, item states and upload sessions. Memory use therefore grows with the
+ * number of files ever uploaded, and the bound {@link GooglePhotosUploaderImpl} puts on the item states it caches does not limit it; use
+ * another backend for libraries that do not comfortably fit in the heap.
+ */
+final class JournalUploadStateManager extends BaseLifecycleComponent implements UploadStateManager {
+    private static final Logger logger = LoggerFactory.getLogger(JournalUploadStateManager.class);
+
+    private static final byte PATH = 1;
+    private static final byte ITEM_STATE = 2;
+    private static final byte UPLOAD_SESSION = 3;
+    private static final byte UPLOAD_SESSION_REMOVED = 4;
+    private static final int HAS_UPLOAD_STATE = 1;
+    private static final int HAS_MEDIA_ID = 2;
+    private static final int FRAME_HEADER_BYTES = 8;
+    /**
+     * The type and the path id.
+     */
+    private static final int MIN_PAYLOAD_BYTES = 5;
+    private static final int SNAPSHOT_HEADER_BYTES = 20;
+    private static final long SNAPSHOT_MAGIC = 0x4A50555354415445L;
+    private static final int SNAPSHOT_FORMAT_VERSION = 1;
+    private static final int WRITE_BUFFER_BYTES = 256 * 1024;
+    /**
+     * A path, token or media ID is way shorter, and so is any record.
+     */
+    private static final int MAX_RECORD_BYTES = 64 * 1024;
+    private static final int READ_WINDOW_BYTES = 1024 * 1024;
+    private static final long MIN_JOURNAL_BYTES_TO_SNAPSHOT = 64 * 1024 * 1024;
+    private static final long SNAPSHOT_CHECK_PERIOD_MINUTES = 1;
+
+    private final Path basePath;
+    private final Path snapshotPath;
+    private final StateStoreMigration stateStoreMigration;
+    /**
+     * Guards the state and the journal writes.
+     */
+    private final Lock lock = new ReentrantLock();
+    /**
+     * Separate from {@link #lock}, so that records keep being appended while others are forced.
+     */
+    private final Lock forceLock = new ReentrantLock();
+    private final Lock snapshotLock = new ReentrantLock();
+    private final Map<String, Integer> pathIdByPath = new ConcurrentHashMap<>();
+    private final Map<Integer, String> pathById = new ConcurrentHashMap<>();
+    private final Map<Integer, ItemState> itemStateByPathId = new ConcurrentHashMap<>();
+    private final Map<Integer, UploadSession> uploadSessionByPathId = new ConcurrentHashMap<>();
+    private final ByteBuffer recordBuffer = ByteBuffer.allocate(MAX_RECORD_BYTES);
+    private final ByteBuffer writeBuffer = ByteBuffer.allocate(WRITE_BUFFER_BYTES);
+    private final CRC32 appendCrc = new CRC32();
+    private int nextPathId;
+    private volatile Duration writeBehindWindow = Duration.ZERO;
+
+    private ScheduledExecutorService executor;
+    private ScheduledFuture<?> forceTask;
+    private volatile FileChannel journal;
+    private long journalGeneration;
+    /**
+     * Across all journal generations since start, so that positions stay comparable when a new generation begins.
+     */
+    private volatile long writtenBytes;
+    private long forcedBytes;
+    /**
+     * Of the journal generations not in the snapshot yet.
+     */
+    private long journalBytes;
+    private volatile long lastSnapshotBytes;
+    private long recordCount;
+    private long forceCount;
+    private long snapshotCount;
+
+    @Inject
+    JournalUploadStateManager(@JournalBasePath Path basePath,
+                              StateStoreMigration stateStoreMigration) {
+        this.basePath = checkNotNull(basePath);
+        snapshotPath = snapshotPath(basePath);
+        this.stateStoreMigration = checkNotNull(stateStoreMigration);
+    }
+
+    /**
+     * @return the snapshot and journal files currently there
+     */
+    static List<Path> dataFiles(Path basePath) {
+        return ImmutableList.<Path>builder()
+                .add(snapshotPath(basePath))
+                .addAll(getAsUnchecked(() -> journalGenerations(basePath)).stream()
+                        .map(generation -> journalPath(basePath, generation))
+                        .collect(toImmutableList()))
+                .build();
+    }
+
+    @Override
+    protected void doStart() {
+        inLock(lock, () -> asUnchecked(() -> {
+            pathIdByPath.clear();
+            pathById.clear();
+            itemStateByPathId.clear();
+            uploadSessionByPathId.clear();
+            nextPathId = 0;
+            writtenBytes = 0;
+            forcedBytes = 0;
+            recordCount = 0;
+            forceCount = 0;
+            snapshotCount = 0;
+            writeBuffer.clear();
+            writeBehindWindow = Duration.ZERO;
+
+            var startNanos = System.nanoTime();
+            journalGeneration = Files.exists(snapshotPath) ? readSnapshot() : 0;
+            lastSnapshotBytes = Files.exists(snapshotPath) ? Files.size(snapshotPath) : 0;
+            journalBytes = 0;
+            for (var generation : journalGenerations(basePath)) {
+                var journalPath = journalPath(basePath, generation);
+                if (generation < journalGeneration) {
+                    // already in the snapshot, the app must have stopped before deleting it
+                    Files.delete(journalPath);
+                } else {
+                    journalBytes += replayJournal(journalPath);
+                    journalGeneration = generation;
+                }
+            }
+            journal = FileChannel.open(journalPath(basePath, journalGeneration), CREATE, WRITE);
+            journal.position(journal.size());
+            logger.info("Loaded {} item(s) and {} upload session(s) in {}ms",
+                    itemStateByPathId.size(), uploadSessionByPathId.size(), (System.nanoTime() - startNanos) / 1_000_000);
+
+            executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                    .setNameFormat("state-journal-%s")
+                    .setDaemon(true)
+                    .build());
+            executor.scheduleWithFixedDelay(() -> {
+                try {
+                    snapshotIfJournalOutgrewIt();
+                } catch (RuntimeException e) {
+                    logger.error("Failed to write state snapshot, will retry", e);
+                }
+            }, 0, SNAPSHOT_CHECK_PERIOD_MINUTES, MINUTES);
+        }));
+        stateStoreMigration.migrateInto(this);
+    }
+
+    @Override
+    protected void doStop() {
+        setWriteBehindWindow(Duration.ZERO);
+        // not shutdownNow(): interrupting a thread in the middle of FileChannel I/O closes the channel; lets a snapshot in progress complete
+        executor.shutdown();
+        asUnchecked(() -> executor.awaitTermination(1, MINUTES));
+        inLock(lock, () -> asUnchecked(() -> {
+            flushWriteBuffer();
+            inLock(forceLock, () -> asUnchecked(() -> {
+                forceJournal();
+                journal.close();
+                journal = null;
+            }));
+        }));
+        logger.info("State journal: {} record(s) written, {} force(s), {} snapshot(s)", recordCount, forceCount, snapshotCount);
+    }
+
+    @Override
+    public Map<String, ItemState> loadUploadedMediaItemIdByAbsolutePath() {
+        var resultBuilder = ImmutableMap.<String, ItemState>builder();
+        itemStateByPathId.forEach((pathId, itemState) -> resultBuilder.put(pathById.get(pathId), itemState));
+        return resultBuilder.build();
+    }
+
+    @Override
+    public Map<Path, ItemState> loadItemStates(Collection<Path> files) {
+        var resultBuilder = ImmutableMap.<Path, ItemState>builder();
+        files.stream().distinct().forEach(file -> {
+            var pathId = pathIdByPath.get(file.toAbsolutePath().toString());
+            var itemState = pathId == null ? null : itemStateByPathId.get(pathId);
+            if (itemState != null) {
+                resultBuilder.put(file, itemState);
+            }
+        });
+        return resultBuilder.build();
+    }
+
+    @Override
+    public Map<Path, ItemState> loadItemStatesPendingMediaCreation() {
+        var resultBuilder = ImmutableMap.<Path, ItemState>builder();
+        itemStateByPathId.forEach((pathId, itemState) -> {
+            if (itemState.uploadState().isPresent() && itemState.mediaId().isEmpty()) {
+                resultBuilder.put(Paths.get(pathById.get(pathId)), itemState);
+            }
+        });
+        return resultBuilder.build();
+    }
+
+    @Override
+    public void forgetState() {
+        snapshot(true);
+        logger.trace("Forgot state");
+    }
+
+    @Override
+    public void saveItemState(Path path, ItemState itemState) {
+        var absolutePath = path.toAbsolutePath().toString();
+        var position = inLock(lock, () -> getAsUnchecked(() -> {
+            var pathId = pathId(absolutePath);
+            append(ITEM_STATE, pathId, itemStateWriter(itemState));
+            itemStateByPathId.put(pathId, itemState);
+            return writeBehindWindow.isZero() ? flushWriteBuffer() : -1L;
+        }));
+        if (position >= 0) {
+            forceUpTo(position);
+        }
+        logger.trace("Saved state: {}->{}", path, itemState);
+    }
+
+    @Override
+    public void setWriteBehindWindow(Duration window) {
+        inLock(lock, () -> {
+            if (window.equals(writeBehindWindow)) {
+                return;
+            }
+            if (forceTask != null) {
+                forceTask.cancel(false);
+                forceTask = null;
+            }
+            writeBehindWindow = window;
+            if (!window.isZero()) {
+                logger.info("Writing state behind, at least every {}", window);
+                forceTask = executor.scheduleWithFixedDelay(() -> {
+                    try {
+                        forceUpTo(inLock(lock, () -> getAsUnchecked(this::flushWriteBuffer)));
+                    } catch (RuntimeException e) {
+                        logger.error("Failed to write upload state, will retry", e);
+                    }
+                }, window.toMillis(), window.toMillis(), MILLISECONDS);
+            }
+        });
+        // whatever was written under the previous window
+        forceUpTo(inLock(lock, () -> getAsUnchecked(this::flushWriteBuffer)));
+    }
+
+    @Override
+    public Optional<UploadSession> loadUploadSession(Path path) {
+        return Optional.ofNullable(pathIdByPath.get(path.toAbsolutePath().toString())).map(uploadSessionByPathId::get);
+    }
+
+    @Override
+    public void saveUploadSession(Path path, UploadSession uploadSession) {
+        var absolutePath = path.toAbsolutePath().toString();
+        forceUpTo(inLock(lock, () -> getAsUnchecked(() -> {
+            var pathId = pathId(absolutePath);
+            append(UPLOAD_SESSION, pathId, uploadSessionWriter(uploadSession));
+            uploadSessionByPathId.put(pathId, uploadSession);
+            return flushWriteBuffer();
+        })));
+        logger.trace("Saved upload session: {}->{}", path, uploadSession);
+    }
+
+    @Override
+    public void forgetUploadSession(Path path) {
+        var pathId = pathIdByPath.get(path.toAbsolutePath().toString());
+        if (pathId != null) {
+            var position = inLock(lock, () -> getAsUnchecked(() -> {
+                if (uploadSessionByPathId.remove(pathId) == null) {
+                    return -1L;
+                }
+                append(UPLOAD_SESSION_REMOVED, pathId, buffer -> {});
+                return flushWriteBuffer();
+            }));
+            if (position >= 0) {
+                forceUpTo(position);
+            }
+        }
+        logger.trace("Forgot upload session of {}", path);
+    }
+
+    @Override
+    public int itemCount() {
+        return itemStateByPathId.size();
+    }
+
+    @Override
+    public void startWebServer() {
+        logger.warn("DB Console is only available with the {} state store", StateStoreBackend.H2_SQL);
+    }
+
+    /**
+     * Must be called under {@link #lock}; journals the path the first time it is seen.
+     */
+    private int pathId(String absolutePath) throws IOException {
+        var pathId = pathIdByPath.get(absolutePath);
+        if (pathId == null) {
+            pathId = nextPathId++;
+            append(PATH, pathId, buffer -> putString(buffer, absolutePath));
+            pathIdByPath.put(absolutePath, pathId);
+            pathById.put(pathId, absolutePath);
+        }
+        return pathId;
+    }
+
+    /**
+     * Must be called under {@link #lock}. The record goes to the write buffer, which is written out when full or by
+     * {@link #flushWriteBuffer()}.
+     */
+    private void append(byte type, int pathId, RecordWriter payloadWriter) throws IOException {
+        recordBuffer.clear();
+        encodeFrame(recordBuffer, appendCrc, type, pathId, payloadWriter);
+        recordBuffer.flip();
+        if (writeBuffer.remaining() < recordBuffer.remaining()) {
+            flushWriteBuffer();
+        }
+        writeBuffer.put(recordBuffer);
+        recordCount++;
+    }
+
+    /**
+     * Must be called under {@link #lock}.
+     *
+     * @return the journal position, across generations, up to which everything is written
+     */
+    private long flushWriteBuffer() throws IOException {
+        checkState(journal != null, "state journal is closed");
+        writeBuffer.flip();
+        var byteCount = writeBuffer.remaining();
+        while (writeBuffer.hasRemaining()) {
+            journal.write(writeBuffer);
+        }
+        writeBuffer.clear();
+        writtenBytes += byteCount;
+        journalBytes += byteCount;
+        return writtenBytes;
+    }
+
+    /**
+     * Group commit: whoever forces the journal forces everything written by then, so the writers that were waiting meanwhile are done
+     * without forcing it again.
+     */
+    private void forceUpTo(long position) {
+        inLock(forceLock, () -> asUnchecked(() -> {
+            if (forcedBytes < position) {
+                forceJournal();
+            }
+        }));
+    }
+
+    /**
+     * Must be called under {@link #forceLock}.
+     */
+    private void forceJournal() throws IOException {
+        var position = writtenBytes;
+        journal.force(false);
+        forcedBytes = position;
+        forceCount++;
+    }
+
+    private void snapshotIfJournalOutgrewIt() {
+        if (inLock(lock, () -> journalBytes) > Math.max(MIN_JOURNAL_BYTES_TO_SNAPSHOT, lastSnapshotBytes)) {
+            snapshot(false);
+        }
+    }
+
+    /**
+     * Writers continue on a new journal generation while the snapshot is being written; the previous generations are deleted once it is in
+     * place. Should the app stop before that, the snapshot is just written again, or the previous generations are deleted, at next start.
+     * <p>
+     * The snapshot is written from the live state rather than from a copy of it, so that writers are only held up while the journal is
+     * switched. It may thus pick up changes made after the switch, but those are journaled in the new generation as well, which is replayed
+     * over the snapshot, so the state read back is the same.
+     *
+     * @param clear whether to forget the current state first
+     */
+    private void snapshot(boolean clear) {
+        inLock(snapshotLock, () -> asUnchecked(() -> {
+            var startNanos = System.nanoTime();
+            var snapshotJournalGeneration = inLock(lock, () -> getAsUnchecked(() -> {
+                flushWriteBuffer();
+                inLock(forceLock, () -> asUnchecked(() -> {
+                    forceJournal();
+                    journal.close();
+                    journal = FileChannel.open(journalPath(basePath, ++journalGeneration), CREATE, WRITE, TRUNCATE_EXISTING);
+                }));
+                journalBytes = 0;
+                if (clear) {
+                    pathIdByPath.clear();
+                    pathById.clear();
+                    itemStateByPathId.clear();
+                    uploadSessionByPathId.clear();
+                }
+                return journalGeneration;
+            }));
+            writeSnapshot(snapshotJournalGeneration);
+            for (var generation : journalGenerations(basePath)) {
+                if (generation < snapshotJournalGeneration) {
+                    Files.delete(journalPath(basePath, generation));
+                }
+            }
+            lastSnapshotBytes = Files.size(snapshotPath);
+            snapshotCount++;
+            logger.info("Wrote state snapshot of about {} item(s), {}KB, in {}ms",
+                    itemStateByPathId.size(), lastSnapshotBytes / 1024, (System.nanoTime() - startNanos) / 1_000_000);
+        }));
+    }
+
+    private void writeSnapshot(long firstJournalGeneration) throws IOException {
+        var tempPath = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".tmp");
+        try (var channel = FileChannel.open(tempPath, CREATE, WRITE, TRUNCATE_EXISTING)) {
+            var buffer = ByteBuffer.allocate(WRITE_BUFFER_BYTES);
+            var crc = new CRC32();
+            buffer.putLong(SNAPSHOT_MAGIC);
+            buffer.putInt(SNAPSHOT_FORMAT_VERSION);
+            buffer.putLong(firstJournalGeneration);
+            var snapshotWriter = new Object() {
+                void write(byte type, int pathId, RecordWriter payloadWriter) throws IOException {
+                    if (buffer.remaining() < MAX_RECORD_BYTES) {
+                        buffer.flip();
+                        while (buffer.hasRemaining()) {
+                            channel.write(buffer);
+                        }
+                        buffer.clear();
+                    }
+                    encodeFrame(buffer, crc, type, pathId, payloadWriter);
+                }
+            };
+            for (var entry : pathById.entrySet()) {
+                snapshotWriter.write(PATH, entry.getKey(), payload -> putString(payload, entry.getValue()));
+            }
+            for (var entry : itemStateByPathId.entrySet()) {
+                snapshotWriter.write(ITEM_STATE, entry.getKey(), itemStateWriter(entry.getValue()));
+            }
+            for (var entry : uploadSessionByPathId.entrySet()) {
+                snapshotWriter.write(UPLOAD_SESSION, entry.getKey(), uploadSessionWriter(entry.getValue()));
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(tempPath, snapshotPath, ATOMIC_MOVE, REPLACE_EXISTING);
+    }
+
+    /**
+     * Read through a plain channel rather than memory-mapped, since a file that is still mapped cannot be replaced on some platforms.
+     *
+     * @return the first journal generation not included in the snapshot
+     */
+    private long readSnapshot() throws IOException {
+        try (var channel = FileChannel.open(snapshotPath, READ)) {
+            var header = ByteBuffer.allocate(SNAPSHOT_HEADER_BYTES);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+            }
+            header.flip();
+            checkState(header.remaining() == SNAPSHOT_HEADER_BYTES && header.getLong() == SNAPSHOT_MAGIC, "%s is not a state snapshot", snapshotPath);
+            var formatVersion = header.getInt();
+            checkState(formatVersion == SNAPSHOT_FORMAT_VERSION, "unsupported format version of %s: %s", snapshotPath, formatVersion);
+            var firstJournalGeneration = header.getLong();
+            // a snapshot is only ever put in place complete
+            checkState(replay(channel, SNAPSHOT_HEADER_BYTES) == channel.size(), "%s is corrupt", snapshotPath);
+            return firstJournalGeneration;
+        }
+    }
+
+    /**
+     * A record cut short or garbled by a crash is truncated away, along with anything after it.
+     *
+     * @return the length of the journal
+     */
+    private long replayJournal(Path journalPath) throws IOException {
+        try (var channel = FileChannel.open(journalPath, READ, WRITE)) {
+            var size = channel.size();
+            var validLength = replay(channel, 0);
+            if (validLength < size) {
+                logger.warn("State journal {} ends with an incomplete record, dropping the last {} byte(s)", journalPath, size - validLength);
+                channel.truncate(validLength);
+                channel.force(true);
+            }
+            return validLength;
+        }
+    }
+
+    /**
+     * Reads the records from the given position on, a window at a time; the window is refilled before it holds less than the largest
+     * possible record, so a record that does not fit in what is left of it is cut short.
+     *
+     * @return the position after the last intact record
+     */
+    private long replay(FileChannel channel, long position) throws IOException {
+        channel.position(position);
+        var buffer = ByteBuffer.allocate(READ_WINDOW_BYTES).flip();
+        var crc = new CRC32();
+        var validLength = position;
+        var endOfFile = false;
+        while (true) {
+            if (!endOfFile && buffer.remaining() < FRAME_HEADER_BYTES + MAX_RECORD_BYTES) {
+                buffer.compact();
+                while (buffer.hasRemaining() && !endOfFile) {
+                    endOfFile = channel.read(buffer) < 0;
+                }
+                buffer.flip();
+            }
+            if (buffer.remaining() < FRAME_HEADER_BYTES) {
+                break;
+            }
+            var frameStart = buffer.position();
+            var length = buffer.getInt(frameStart);
+            var checksum = buffer.getInt(frameStart + 4);
+            // a zero-filled tail would otherwise pass the CRC check as an empty record
+            if (length < MIN_PAYLOAD_BYTES || length > MAX_RECORD_BYTES || length > buffer.remaining() - FRAME_HEADER_BYTES) {
+                break;
+            }
+            var payload = buffer.slice(frameStart + FRAME_HEADER_BYTES, length);
+            crc.reset();
+            crc.update(payload.duplicate());
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            apply(payload);
+            buffer.position(frameStart + FRAME_HEADER_BYTES + length);
+            validLength += FRAME_HEADER_BYTES + length;
+        }
+        return validLength;
+    }
+
+    private void apply(ByteBuffer payload) {
+        var type = payload.get();
+        var pathId = payload.getInt();
+        switch (type) {
+            case PATH -> {
+                var path = getString(payload);
+                pathIdByPath.put(path, pathId);
+                pathById.put(pathId, path);
+                nextPathId = Math.max(nextPathId, pathId + 1);
+            }
+            case ITEM_STATE -> {
+                var flags = payload.get();
+                var uploadInstant = Instant.ofEpochSecond(payload.getLong(), payload.getInt());
+                var token = getString(payload);
+                var mediaId = getString(payload);
+                var itemStateBuilder = ItemState.builder();
+                if ((flags & HAS_UPLOAD_STATE) != 0) {
+                    itemStateBuilder.setUploadState(UploadMediaItemState.of(token, uploadInstant));
+                }
+                if ((flags & HAS_MEDIA_ID) != 0) {
+                    itemStateBuilder.setMediaId(mediaId);
+                }
+                itemStateByPathId.put(pathId, itemStateBuilder.build());
+            }
+            case UPLOAD_SESSION -> {
+                var bytes = new byte[payload.getChar()];
+                payload.get(bytes);
+                uploadSessionByPathId.put(pathId, StateRecords.decodeUploadSession(bytes));
+            }
+            case UPLOAD_SESSION_REMOVED -> uploadSessionByPathId.remove(pathId);
+            default -> throw new IllegalStateException("unknown state record type " + type);
+        }
+    }
+
+    private static void encodeFrame(ByteBuffer buffer, CRC32 crc, byte type, int pathId, RecordWriter payloadWriter) {
+        var frameStart = buffer.position();
+        buffer.position(frameStart + FRAME_HEADER_BYTES);
+        buffer.put(type);
+        buffer.putInt(pathId);
+        payloadWriter.write(buffer);
+        var payloadLength = buffer.position() - frameStart - FRAME_HEADER_BYTES;
+        crc.reset();
+        crc.update(buffer.array(), frameStart + FRAME_HEADER_BYTES, payloadLength);
+        buffer.putInt(frameStart, payloadLength);
+        buffer.putInt(frameStart + 4, (int) crc.getValue());
+    }
+
+    /**
+     * Every field is always there, so that the layout is fixed; flags tell which are actually set.
+     */
+    private static RecordWriter itemStateWriter(ItemState itemState) {
+        return buffer -> {
+            var uploadState = itemState.uploadState();
+            buffer.put((byte) ((uploadState.isPresent() ? HAS_UPLOAD_STATE : 0) | (itemState.mediaId().isPresent() ? HAS_MEDIA_ID : 0)));
+            var uploadInstant = uploadState.map(UploadMediaItemState::uploadInstant).orElse(Instant.EPOCH);
+            buffer.putLong(uploadInstant.getEpochSecond());
+            buffer.putInt(uploadInstant.getNano());
+            putString(buffer, uploadState.map(UploadMediaItemState::token).orElse(""));
+            putString(buffer, itemState.mediaId().orElse(""));
+        };
+    }
+
+    private static RecordWriter uploadSessionWriter(UploadSession uploadSession) {
+        var bytes = StateRecords.encode(uploadSession);
+        return buffer -> {
+            buffer.putChar((char) bytes.length);
+            buffer.put(bytes);
+        };
+    }
+
+    private static void putString(ByteBuffer buffer, String value) {
+        var bytes = value.getBytes(UTF_8);
+        checkArgument(bytes.length <= Character.MAX_VALUE, "string too long: %s", value);
+        buffer.putChar((char) bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        var bytes = new byte[buffer.getChar()];
+        buffer.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    private static List<Long> journalGenerations(Path basePath) throws IOException {
+        var prefix = basePath.getFileName() + ".journal.";
+        var dir = basePath.toAbsolutePath().getParent();
+        if (!Files.isDirectory(dir)) {
+            return ImmutableList.of();
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.map(file -> file.getFileName().toString())
+                    .filter(fileName -> fileName.startsWith(prefix) && fileName.substring(prefix.length()).matches("\\d+"))
+                    .map(fileName -> Long.parseLong(fileName.substring(prefix.length())))
+                    .sorted()
+                    .collect(toImmutableList());
+        }
+    }
+
+    private static Path journalPath(Path basePath, long generation) {
+        return basePath.resolveSibling(basePath.getFileName() + ".journal." + generation);
+    }
+
+    private static Path snapshotPath(Path basePath) {
+        return basePath.resolveSibling(basePath.getFileName() + ".snapshot");
+    }
+
+    @FunctionalInterface
+    private interface RecordWriter {
+        void write(ByteBuffer buffer);
+    }
+
+    @BindingAnnotation
+    @Target({FIELD, PARAMETER, METHOD})
+    @Retention(RUNTIME)
+    @interface JournalBasePath {
+    }
+}
@@ -0,0 +1,53 @@
+package net.yudichev.googlephotosupload.core;
+
+import com.google.common.collect.ImmutableMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reads the item states kept by the state log of the former {@code LOG} state store, superseded by {@link StateStoreBackend#JOURNAL}, so that
+ * they can be migrated. Each record is a type byte and a UTF path followed by the item state or, for upload session records, a length
+ * prefixed upload session; upload sessions are not migrated.
+ */
+final class LegacyStateLog {
+    static final String FILE_NAME = "state.log";
+
+    private static final Logger logger = LoggerFactory.getLogger(LegacyStateLog.class);
+    private static final byte ITEM_STATE = 1;
+    private static final byte UPLOAD_SESSION = 2;
+    private static final byte UPLOAD_SESSION_REMOVED = 3;
+
+    private LegacyStateLog() {
+    }
+
+    /**
+     * A record cut short by a crash is ignored, along with anything after it.
+     */
+    static Map<String, ItemState> readItemStates(Path logPath) throws IOException {
+        Map<String, ItemState> itemStates = new HashMap<>();
+        try (var input = new DataInputStream(new BufferedInputStream(Files.newInputStream(logPath)))) {
+            int type;
+            while ((type = input.read()) != -1) {
+                var path = input.readUTF();
+                switch (type) {
+                    case ITEM_STATE -> itemStates.put(path, StateRecords.readItemState(input));
+                    case UPLOAD_SESSION -> input.skipNBytes(input.readInt());
+                    case UPLOAD_SESSION_REMOVED -> {}
+                    default -> throw new IOException("unknown record type " + type + " in " + logPath);
+                }
+            }
+        } catch (EOFException e) {
+            logger.warn("State log {} ends with an incomplete record, ignoring it", logPath);
+        }
+        return ImmutableMap.copyOf(itemStates);
+    }
+}
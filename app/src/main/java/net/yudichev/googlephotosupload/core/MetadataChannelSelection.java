@@ -0,0 +1,12 @@
+package net.yudichev.googlephotosupload.core;
+
+public enum MetadataChannelSelection {
+    /**
+     * Channels take calls in turn.
+     */
+    ROUND_ROBIN,
+    /**
+     * A call goes to the channel with the fewest calls in flight, so that a few slow calls do not hold up others queued behind them.
+     */
+    LEAST_LOADED
+}
@@ -0,0 +1,198 @@
+package net.yudichev.googlephotosupload.core;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.inject.BindingAnnotation;
+import net.yudichev.jiotty.common.inject.BaseLifecycleComponent;
+import org.h2.mvstore.MVMap;
+import org.h2.mvstore.MVStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Predicate;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.lang.annotation.ElementType.*;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+/**
+ * Keeps the state in H2's MVStore, bypassing SQL: item states and upload sessions are maps from the absolute path to the
+ * {@link StateRecords binary form} of the state. Changes are committed one by one or, in write-behind mode, by MVStore's own background
+ * writer at the write-behind window.
+ * <p>
+ * The paths of the items uploaded but not created yet are also kept in a map of their own, updated along with the item states, so that they
+ * are found at start without decoding the whole history.
+ */
+final class MvStoreUploadStateManager extends BaseLifecycleComponent implements UploadStateManager {
+    private static final Logger logger = LoggerFactory.getLogger(MvStoreUploadStateManager.class);
+
+    private final Path storePath;
+    private final StateStoreMigration stateStoreMigration;
+    private volatile Duration writeBehindWindow = Duration.ZERO;
+
+    private MVStore store;
+    private MVMap<String, byte[]> itemStates;
+    private MVMap<String, byte[]> uploadSessions;
+    private MVMap<String, Boolean> pendingMediaCreation;
+
+    @Inject
+    MvStoreUploadStateManager(@MvStorePath Path storePath,
+                              StateStoreMigration stateStoreMigration) {
+        this.storePath = checkNotNull(storePath);
+        this.stateStoreMigration = checkNotNull(stateStoreMigration);
+    }
+
+    @Override
+    protected void doStart() {
+        logger.debug("Opening {}", storePath);
+        store = new MVStore.Builder()
+                .fileName(storePath.toAbsolutePath().toString())
+                .autoCommitDisabled()
+                .open();
+        var pendingMediaCreationExists = store.hasMap("pendingMediaCreation");
+        itemStates = store.openMap("items");
+        uploadSessions = store.openMap("uploadSessions");
+        pendingMediaCreation = store.openMap("pendingMediaCreation");
+        if (!pendingMediaCreationExists && !itemStates.isEmpty()) {
+            // a store written before the map was introduced
+            scanItemStates(MvStoreUploadStateManager::pendingMediaCreation).keySet().forEach(path -> pendingMediaCreation.put(path, Boolean.TRUE));
+            store.commit();
+        }
+        writeBehindWindow = Duration.ZERO;
+        stateStoreMigration.migrateInto(this);
+    }
+
+    @Override
+    protected void doStop() {
+        setWriteBehindWindow(Duration.ZERO);
+        store.close();
+    }
+
+    @Override
+    public Map<String, ItemState> loadUploadedMediaItemIdByAbsolutePath() {
+        return scanItemStates(itemState -> true);
+    }
+
+    @Override
+    public Map<Path, ItemState> loadItemStates(Collection<Path> files) {
+        var resultBuilder = ImmutableMap.<Path, ItemState>builder();
+        files.stream().distinct().forEach(file -> {
+            var bytes = itemStates.get(file.toAbsolutePath().toString());
+            if (bytes != null) {
+                resultBuilder.put(file, StateRecords.decodeItemState(bytes));
+            }
+        });
+        return resultBuilder.build();
+    }
+
+    @Override
+    public Map<Path, ItemState> loadItemStatesPendingMediaCreation() {
+        var resultBuilder = ImmutableMap.<Path, ItemState>builder();
+        pendingMediaCreation.keySet().forEach(path -> {
+            var bytes = itemStates.get(path);
+            if (bytes != null) {
+                resultBuilder.put(Paths.get(path), StateRecords.decodeItemState(bytes));
+            }
+        });
+        return resultBuilder.build();
+    }
+
+    @Override
+    public void forgetState() {
+        itemStates.clear();
+        uploadSessions.clear();
+        pendingMediaCreation.clear();
+        store.commit();
+        logger.trace("Forgot state");
+    }
+
+    @Override
+    public void saveItemState(Path path, ItemState itemState) {
+        var absolutePath = path.toAbsolutePath().toString();
+        itemStates.put(absolutePath, StateRecords.encode(itemState));
+        if (pendingMediaCreation(itemState)) {
+            pendingMediaCreation.put(absolutePath, Boolean.TRUE);
+        } else {
+            pendingMediaCreation.remove(absolutePath);
+        }
+        commitUnlessWritingBehind();
+        logger.trace("Saved state: {}->{}", path, itemState);
+    }
+
+    @Override
+    public void setWriteBehindWindow(Duration window) {
+        if (!window.equals(writeBehindWindow)) {
+            writeBehindWindow = window;
+            if (!window.isZero()) {
+                logger.info("Writing state behind, at least every {}", window);
+            }
+            store.setAutoCommitDelay(Math.toIntExact(window.toMillis()));
+        }
+        // whatever was written under the previous window
+        store.commit();
+    }
+
+    @Override
+    public Optional<UploadSession> loadUploadSession(Path path) {
+        return Optional.ofNullable(uploadSessions.get(path.toAbsolutePath().toString())).map(StateRecords::decodeUploadSession);
+    }
+
+    @Override
+    public void saveUploadSession(Path path, UploadSession uploadSession) {
+        uploadSessions.put(path.toAbsolutePath().toString(), StateRecords.encode(uploadSession));
+        store.commit();
+        logger.trace("Saved upload session: {}->{}", path, uploadSession);
+    }
+
+    @Override
+    public void forgetUploadSession(Path path) {
+        uploadSessions.remove(path.toAbsolutePath().toString());
+        store.commit();
+        logger.trace("Forgot upload session of {}", path);
+    }
+
+    @Override
+    public int itemCount() {
+        return itemStates.size();
+    }
+
+    @Override
+    public void startWebServer() {
+        logger.warn("DB Console is only available with the {} state store", StateStoreBackend.H2_SQL);
+    }
+
+    private Map<String, ItemState> scanItemStates(Predicate<ItemState> filter) {
+        var resultBuilder = ImmutableMap.<String, ItemState>builder();
+        itemStates.forEach((path, bytes) -> {
+            var itemState = StateRecords.decodeItemState(bytes);
+            if (filter.test(itemState)) {
+                resultBuilder.put(path, itemState);
+            }
+        });
+        return resultBuilder.build();
+    }
+
+    private static boolean pendingMediaCreation(ItemState itemState) {
+        return itemState.uploadState().isPresent() && itemState.mediaId().isEmpty();
+    }
+
+    private void commitUnlessWritingBehind() {
+        if (writeBehindWindow.isZero()) {
+            store.commit();
+        }
+    }
+
+    @BindingAnnotation
+    @Target({FIELD, PARAMETER, METHOD})
+    @Retention(RUNTIME)
+    @interface MvStorePath {
+    }
+}
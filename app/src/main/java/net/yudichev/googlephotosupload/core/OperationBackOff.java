@@ -0,0 +1,15 @@
+package net.yudichev.googlephotosupload.core;
+
+import java.util.Optional;
+
+/**
+ * Not thread safe: retries of one operation are expected to happen one after another.
+ */
+interface OperationBackOff {
+    /**
+     * Does not block: it is up to the caller to schedule the retry after the returned delay.
+     *
+     * @return backoff delay to wait before retrying, in milliseconds, or empty if the operation should not be retried
+     */
+    Optional<Long> handle(Throwable exception);
+}
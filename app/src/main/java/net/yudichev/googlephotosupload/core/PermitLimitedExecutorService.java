@@ -0,0 +1,79 @@
+package net.yudichev.googlephotosupload.core;
+
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Runs at most {@code permitCount} tasks on the delegate at a time. The delegate starts a virtual thread per task, and a task that finds no
+ * permit available waits for one on its own virtual thread, first come first served, rather than running on the submitting thread: parked virtual
+ * threads cost little, and the number of tasks waiting is bounded by the upload limits upstream (files and bytes in flight).
+ */
+final class PermitLimitedExecutorService extends AbstractExecutorService {
+    private final ExecutorService delegate;
+    private final Semaphore permits;
+
+    PermitLimitedExecutorService(ExecutorService delegate, int permitCount) {
+        checkArgument(permitCount > 0, "permitCount must be positive: %s", permitCount);
+        this.delegate = checkNotNull(delegate);
+        permits = new Semaphore(permitCount, true);
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        checkNotNull(command);
+        if (delegate.isShutdown()) {
+            throw new RejectedExecutionException("Executor shut down: " + delegate);
+        }
+        delegate.execute(() -> {
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                // shut down while waiting
+                Thread.currentThread().interrupt();
+                return;
+            }
+            try {
+                command.run();
+            } finally {
+                permits.release();
+            }
+        });
+    }
+
+    @Override
+    public void shutdown() {
+        delegate.shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        return delegate.shutdownNow();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return delegate.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return delegate.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return delegate.awaitTermination(timeout, unit);
+    }
+
+    @Override
+    public String toString() {
+        return "PermitLimitedExecutorService{availablePermits=" + permits.availablePermits() + ", delegate=" + delegate + '}';
+    }
+}
@@ -0,0 +1,31 @@
+package net.yudichev.googlephotosupload.core;
+
+import com.google.inject.Key;
+import com.google.inject.name.Names;
+import net.yudichev.jiotty.common.inject.BaseLifecycleComponentModule;
+import net.yudichev.jiotty.connector.google.photos.GooglePhotosClient;
+import net.yudichev.jiotty.connector.google.photos.GooglePhotosModule;
+
+/**
+ * One Google Photos client, with its own gRPC channel, exposed under a key unique to its index in the pool. The client's lifecycle is not
+ * registered with the application: {@link PooledGooglePhotosClient} only creates and starts the channels in use.
+ */
+final class PhotosChannelModule extends BaseLifecycleComponentModule {
+    private final int index;
+
+    PhotosChannelModule(int index) {
+        this.index = index;
+    }
+
+    static Key<GooglePhotosClient> channelKey(int index) {
+        return Key.get(GooglePhotosClient.class, Names.named("photosChannel" + index));
+    }
+
+    @Override
+    protected void configure() {
+        var photosModule = GooglePhotosModule.builder().build();
+        install(photosModule);
+        bind(channelKey(index)).to(photosModule.getExposedKey());
+        expose(channelKey(index));
+    }
+}
@@ -0,0 +1,33 @@
+package net.yudichev.googlephotosupload.core;
+
+import com.google.inject.TypeLiteral;
+import net.yudichev.jiotty.common.inject.BaseLifecycleComponentModule;
+import net.yudichev.jiotty.common.inject.ExposedKeyModule;
+import net.yudichev.jiotty.connector.google.photos.GooglePhotosClient;
+
+import javax.inject.Provider;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+
+/**
+ * Exposes a {@link GooglePhotosClient} that spreads calls over a pool of clients, each with its own channel. The number of channels in use is
+ * a preference, so bindings exist for the maximum number of channels, but clients are only created and started for the channels in use.
+ */
+final class PhotosChannelPoolModule extends BaseLifecycleComponentModule implements ExposedKeyModule<GooglePhotosClient> {
+    static final int MAX_CHANNEL_COUNT = 8;
+
+    @Override
+    protected void configure() {
+        IntStream.range(0, MAX_CHANNEL_COUNT).forEach(index -> install(new PhotosChannelModule(index)));
+        List<Provider<GooglePhotosClient>> channelProviders = IntStream.range(0, MAX_CHANNEL_COUNT)
+                .<Provider<GooglePhotosClient>>mapToObj(index -> getProvider(PhotosChannelModule.channelKey(index)))
+                .collect(toImmutableList());
+        bind(new TypeLiteral<List<Provider<GooglePhotosClient>>>() {}).annotatedWith(PooledGooglePhotosClient.Channels.class)
+                .toInstance(channelProviders);
+
+        bind(getExposedKey()).to(boundLifecycleComponent(PooledGooglePhotosClient.class));
+        expose(getExposedKey());
+    }
+}
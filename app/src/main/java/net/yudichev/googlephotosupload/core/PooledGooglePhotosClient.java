@@ -0,0 +1,192 @@
+package net.yudichev.googlephotosupload.core;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.inject.BindingAnnotation;
+import net.yudichev.jiotty.common.inject.BaseLifecycleComponent;
+import net.yudichev.jiotty.common.inject.LifecycleComponent;
+import net.yudichev.jiotty.connector.google.common.GoogleAuthorization;
+import net.yudichev.jiotty.connector.google.photos.GooglePhotosAlbum;
+import net.yudichev.jiotty.connector.google.photos.GooglePhotosClient;
+import net.yudichev.jiotty.connector.google.photos.MediaItemOrError;
+import net.yudichev.jiotty.connector.google.photos.NewMediaItem;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static java.lang.annotation.ElementType.*;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+/**
+ * Spreads Photos Library calls over several clients, each with its own channel, so that concurrent calls are not all multiplexed over a single
+ * HTTP/2 connection and its stream limit. Only the configured number of clients is created; their lifecycle follows this component's.
+ */
+final class PooledGooglePhotosClient extends BaseLifecycleComponent implements GooglePhotosClient {
+    private static final Logger logger = LoggerFactory.getLogger(PooledGooglePhotosClient.class);
+    private static final Comparator<Channel> LEAST_LOADED_FIRST = Comparator.comparingInt(channel -> channel.inFlightCount.get());
+
+    private final List<Provider<GooglePhotosClient>> channelProviders;
+    private final PreferencesManager preferencesManager;
+    private final AtomicLong nextRoundRobinIndex = new AtomicLong();
+
+    private List<Channel> channels;
+    private MetadataChannelSelection selection;
+
+    /**
+     * @param googleAuthorization not used directly, but the channels started by this component depend on it, so it must be started first
+     */
+    @Inject
+    PooledGooglePhotosClient(@Channels List<Provider<GooglePhotosClient>> channelProviders,
+                             PreferencesManager preferencesManager,
+                             @SuppressWarnings("unused") GoogleAuthorization googleAuthorization) {
+        this.channelProviders = ImmutableList.copyOf(channelProviders);
+        this.preferencesManager = checkNotNull(preferencesManager);
+    }
+
+    @Override
+    protected void doStart() {
+        var preferences = preferencesManager.get();
+        var channelCount = Math.min(preferences.metadataChannelCount(), channelProviders.size());
+        selection = preferences.metadataChannelSelection();
+        logger.info("Using {} Photos Library channel(s), selected {}", channelCount, selection);
+        List<Channel> startedChannels = new ArrayList<>(channelCount);
+        try {
+            for (var index = 0; index < channelCount; index++) {
+                var client = channelProviders.get(index).get();
+                if (client instanceof LifecycleComponent lifecycleComponent) {
+                    lifecycleComponent.start();
+                }
+                startedChannels.add(new Channel(index, client));
+            }
+        } catch (RuntimeException e) {
+            stopChannels(startedChannels);
+            throw e;
+        }
+        channels = ImmutableList.copyOf(startedChannels);
+    }
+
+    @Override
+    protected void doStop() {
+        channels.forEach(channel -> logger.info("Photos Library channel {} stats: {}", channel.index, channel.stats()));
+        stopChannels(channels);
+    }
+
+    List<String> channelStats() {
+        return whenStartedAndNotLifecycling(() -> channels.stream()
+                .map(Channel::stats)
+                .collect(toImmutableList()));
+    }
+
+    @Override
+    public CompletableFuture<String> uploadMediaData(Path file, Executor executor) {
+        return selectChannel().call(client -> client.uploadMediaData(file, executor));
+    }
+
+    @Override
+    public CompletableFuture<List<MediaItemOrError>> createMediaItems(Optional<String> albumId, List<NewMediaItem> newMediaItems, Executor executor) {
+        return selectChannel().call(client -> client.createMediaItems(albumId, newMediaItems, executor));
+    }
+
+    @Override
+    public CompletableFuture<GooglePhotosAlbum> createAlbum(String name, Executor executor) {
+        return selectChannel().call(client -> client.createAlbum(name, executor));
+    }
+
+    @Override
+    public CompletableFuture<List<GooglePhotosAlbum>> listAlbums(IntConsumer loadedAlbumCountProgressCallback, Executor executor) {
+        return selectChannel().call(client -> client.listAlbums(loadedAlbumCountProgressCallback, executor));
+    }
+
+    @Override
+    public CompletableFuture<GooglePhotosAlbum> getAlbum(String albumId, Executor executor) {
+        return selectChannel().call(client -> client.getAlbum(albumId, executor));
+    }
+
+    private static void stopChannels(List<Channel> channelsToStop) {
+        for (var channel : Lists.reverse(channelsToStop)) {
+            if (channel.client instanceof LifecycleComponent lifecycleComponent) {
+                try {
+                    lifecycleComponent.stop();
+                } catch (RuntimeException e) {
+                    logger.warn("Failed to stop Photos Library channel {}", channel.index, e);
+                }
+            }
+        }
+    }
+
+    private Channel selectChannel() {
+        var currentChannels = whenStartedAndNotLifecycling(() -> channels);
+        return switch (selection) {
+            case ROUND_ROBIN -> currentChannels.get((int) (nextRoundRobinIndex.getAndIncrement() % currentChannels.size()));
+            case LEAST_LOADED -> currentChannels.stream().min(LEAST_LOADED_FIRST).orElseThrow();
+        };
+    }
+
+    private static final class Channel {
+        final int index;
+        final GooglePhotosClient client;
+        final AtomicInteger inFlightCount = new AtomicInteger();
+        final AtomicInteger maxInFlightCount = new AtomicInteger();
+        final LongAdder callCount = new LongAdder();
+        final LongAdder failureCount = new LongAdder();
+        final LongAdder totalLatencyNanos = new LongAdder();
+
+        Channel(int index, GooglePhotosClient client) {
+            this.index = index;
+            this.client = checkNotNull(client);
+        }
+
+        <T> CompletableFuture<T> call(Function<GooglePhotosClient, CompletableFuture<T>> call) {
+            var inFlight = inFlightCount.incrementAndGet();
+            maxInFlightCount.accumulateAndGet(inFlight, Math::max);
+            var startNanos = System.nanoTime();
+            CompletableFuture<T> result;
+            try {
+                result = call.apply(client);
+            } catch (RuntimeException e) {
+                onCompleted(startNanos, e);
+                throw e;
+            }
+            return result.whenComplete((value, exception) -> onCompleted(startNanos, exception));
+        }
+
+        String stats() {
+            var calls = callCount.sum();
+            return String.format("%s calls, %s failed, max %s in flight, avg latency %sms",
+                    calls, failureCount.sum(), maxInFlightCount.get(), calls == 0 ? 0 : totalLatencyNanos.sum() / calls / 1_000_000);
+        }
+
+        private void onCompleted(long startNanos, Throwable exception) {
+            inFlightCount.decrementAndGet();
+            callCount.increment();
+            totalLatencyNanos.add(System.nanoTime() - startNanos);
+            if (exception != null) {
+                failureCount.increment();
+            }
+        }
+    }
+
+    @BindingAnnotation
+    @Target({FIELD, PARAMETER, METHOD})
+    @Retention(RUNTIME)
+    @interface Channels {
+    }
+}
@@ -1,5 +1,8 @@
 package net.yudichev.googlephotosupload.core;
 
+import java.util.List;
+import java.util.OptionalLong;
+
 public interface ProgressStatus {
     void updateSuccess(int newValue);
 
@@ -11,6 +14,28 @@ public interface ProgressStatus {
 
     void onBackoffDelay(long backoffDelayMs);
 
+    /**
+     * @param limitHistory most recent limit values, oldest first, ending with {@code currentLimit}
+     */
+    void onConcurrencyLimitChange(int currentLimit, List<Integer> limitHistory);
+
+    /**
+     * A transfer made no progress for too long, or did not complete in time, and is going to be retried.
+     */
+    void onTransferStalled();
+
+    /**
+     * @param bytesPerSecond the upload bandwidth limit now in effect, empty if none
+     */
+    void onBandwidthLimitChange(OptionalLong bytesPerSecond);
+
+    /**
+     * An upload token expired before its media item was created, so the file is going to be uploaded again.
+     *
+     * @param totalBytes the size of all files that had to be uploaded again so far
+     */
+    void onBytesLostToExpiry(long totalBytes);
+
     default void incrementSuccess() {
         incrementSuccessBy(1);
     }
@@ -0,0 +1,140 @@
+package net.yudichev.googlephotosupload.core;
+
+import okhttp3.Call;
+import okhttp3.Connection;
+import okhttp3.EventListener;
+import okhttp3.Protocol;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Times every request made by an HTTP client: how long it took to get a connection, to send the body and to get the response. Each request is
+ * logged at debug level; totals are available via {@link #summary()}.
+ */
+final class RequestTimings {
+    private static final Logger logger = LoggerFactory.getLogger(RequestTimings.class);
+
+    private final LongAdder requestCount = new LongAdder();
+    private final LongAdder failedRequestCount = new LongAdder();
+    private final LongAdder newConnectionCount = new LongAdder();
+    private final LongAdder bytesSent = new LongAdder();
+    private final LongAdder totalConnectNanos = new LongAdder();
+    private final LongAdder totalSendNanos = new LongAdder();
+    private final LongAdder totalCallNanos = new LongAdder();
+    private final LongAccumulator maxCallNanos = new LongAccumulator(Math::max, 0);
+
+    EventListener.Factory listenerFactory() {
+        return call -> new TimingListener();
+    }
+
+    long requestCount() {
+        return requestCount.sum();
+    }
+
+    long bytesSent() {
+        return bytesSent.sum();
+    }
+
+    String summary() {
+        var count = requestCount.sum();
+        var totalCallNanos = this.totalCallNanos.sum();
+        var totalSendNanos = this.totalSendNanos.sum();
+        return String.format("%s requests (%s failed, %s new connections), %s bytes sent at %.1f MB/s while sending, " +
+                        "avg connect %sms, avg request %sms, max request %sms",
+                count,
+                failedRequestCount.sum(),
+                newConnectionCount.sum(),
+                bytesSent.sum(),
+                totalSendNanos == 0 ? 0.0 : bytesSent.sum() * 1000.0 / totalSendNanos,
+                newConnectionCount.sum() == 0 ? 0 : totalConnectNanos.sum() / newConnectionCount.sum() / 1_000_000,
+                count == 0 ? 0 : totalCallNanos / count / 1_000_000,
+                maxCallNanos.get() / 1_000_000);
+    }
+
+    private final class TimingListener extends EventListener {
+        private long callStartNanos;
+        private long connectStartNanos;
+        private long connectNanos;
+        private long requestBodyStartNanos;
+        private long sendNanos;
+        private long bodyBytes;
+        private long responseHeadersStartNanos;
+        private Protocol protocol;
+
+        @Override
+        public void callStart(Call call) {
+            callStartNanos = System.nanoTime();
+        }
+
+        @Override
+        public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy) {
+            connectStartNanos = System.nanoTime();
+        }
+
+        @Override
+        public void connectEnd(Call call, InetSocketAddress inetSocketAddress, Proxy proxy, Protocol protocol) {
+            connectNanos = System.nanoTime() - connectStartNanos;
+            newConnectionCount.increment();
+            totalConnectNanos.add(connectNanos);
+        }
+
+        @Override
+        public void connectionAcquired(Call call, Connection connection) {
+            protocol = connection.protocol();
+        }
+
+        @Override
+        public void requestBodyStart(Call call) {
+            requestBodyStartNanos = System.nanoTime();
+        }
+
+        @Override
+        public void requestBodyEnd(Call call, long byteCount) {
+            sendNanos = System.nanoTime() - requestBodyStartNanos;
+            bodyBytes = byteCount;
+            bytesSent.add(byteCount);
+            totalSendNanos.add(sendNanos);
+        }
+
+        @Override
+        public void responseHeadersStart(Call call) {
+            responseHeadersStartNanos = System.nanoTime();
+        }
+
+        @Override
+        public void callEnd(Call call) {
+            record(call, "completed");
+        }
+
+        @Override
+        public void callFailed(Call call, IOException ioe) {
+            failedRequestCount.increment();
+            record(call, "failed (" + ioe + ')');
+        }
+
+        private void record(Call call, String outcome) {
+            var callNanos = System.nanoTime() - callStartNanos;
+            requestCount.increment();
+            totalCallNanos.add(callNanos);
+            maxCallNanos.accumulate(callNanos);
+            if (logger.isDebugEnabled()) {
+                logger.debug("{} {} {} over {}: connect {}ms, {} bytes sent in {}ms, waited {}ms for response, total {}ms",
+                        call.request().method(),
+                        call.request().url().encodedPath(),
+                        outcome,
+                        protocol,
+                        connectNanos / 1_000_000,
+                        bodyBytes,
+                        sendNanos / 1_000_000,
+                        responseHeadersStartNanos == 0 || requestBodyStartNanos == 0 ? 0 : (responseHeadersStartNanos - requestBodyStartNanos - sendNanos) / 1_000_000,
+                        callNanos / 1_000_000);
+            }
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package net.yudichev.googlephotosupload.core;
+
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+interface ResumableMediaUploader {
+    /**
+     * Uploads the file in chunks, continuing the previously interrupted upload of the same file, if any, from the last acknowledged chunk.
+     *
+     * @param listener notified about the progress of the transfer
+     * @return the upload token; cancelling the future aborts the upload, leaving it resumable
+     */
+    CompletableFuture<String> uploadMediaData(Path file, Executor executor, TransferListener listener);
+}
@@ -0,0 +1,266 @@
+package net.yudichev.googlephotosupload.core;
+
+import net.yudichev.jiotty.common.inject.BaseLifecycleComponent;
+import okhttp3.Call;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+import static java.nio.file.StandardOpenOption.READ;
+import static net.yudichev.googlephotosupload.core.Bindings.UploadHttp;
+import static net.yudichev.googlephotosupload.core.Bindings.UploadsUrl;
+import static net.yudichev.googlephotosupload.core.UploadProtocol.COMMAND_HEADER;
+import static net.yudichev.googlephotosupload.core.UploadProtocol.CONTENT_TYPE_HEADER;
+import static net.yudichev.googlephotosupload.core.UploadProtocol.PROTOCOL_HEADER;
+import static net.yudichev.googlephotosupload.core.UploadProtocol.contentType;
+import static net.yudichev.googlephotosupload.core.UploadProtocol.describeFailure;
+import static net.yudichev.googlephotosupload.core.UploadProtocol.isTransient;
+import static net.yudichev.jiotty.common.lang.MoreThrowables.getAsUnchecked;
+
+/**
+ * Implements the resumable upload protocol of the Google Photos Library API, see
+ * <a href="https://developers.google.com/photos/library/guides/resumable-uploads">resumable uploads</a>. The session URL and the number of bytes
+ * acknowledged by the server are saved after every chunk, so that an interrupted upload, even one interrupted by an app restart, continues from
+ * where it stopped.
+ */
+final class ResumableMediaUploaderImpl extends BaseLifecycleComponent implements ResumableMediaUploader {
+    private static final Logger logger = LoggerFactory.getLogger(ResumableMediaUploaderImpl.class);
+    private static final RequestBody EMPTY_BODY = RequestBody.create(new byte[0], null);
+    private static final long DEFAULT_CHUNK_GRANULARITY = 256 * 1024;
+    private static final long MAX_CHUNK_SIZE = 1024 * 1024 * 1024;
+
+    private final Provider<OkHttpClient> clientProvider;
+    private final UploadAuthorization uploadAuthorization;
+    private final DirectBufferPool bufferPool;
+    private final BandwidthLimiter bandwidthLimiter;
+    private final String uploadsUrl;
+    private final UploadStateManager uploadStateManager;
+    private final PreferencesManager preferencesManager;
+
+    private OkHttpClient client;
+
+    @Inject
+    ResumableMediaUploaderImpl(@UploadHttp Provider<OkHttpClient> clientProvider,
+                               UploadAuthorization uploadAuthorization,
+                               DirectBufferPool bufferPool,
+                               BandwidthLimiter bandwidthLimiter,
+                               @UploadsUrl String uploadsUrl,
+                               UploadStateManager uploadStateManager,
+                               PreferencesManager preferencesManager) {
+        this.clientProvider = checkNotNull(clientProvider);
+        this.uploadAuthorization = checkNotNull(uploadAuthorization);
+        this.bufferPool = checkNotNull(bufferPool);
+        this.bandwidthLimiter = checkNotNull(bandwidthLimiter);
+        this.uploadsUrl = checkNotNull(uploadsUrl);
+        this.uploadStateManager = checkNotNull(uploadStateManager);
+        this.preferencesManager = checkNotNull(preferencesManager);
+    }
+
+    @Override
+    protected void doStart() {
+        client = clientProvider.get();
+    }
+
+    @Override
+    public CompletableFuture<String> uploadMediaData(Path file, Executor executor, TransferListener listener) {
+        checkStarted();
+        var upload = new Upload(file, listener);
+        var result = new CompletableFuture<String>();
+        result.whenComplete((token, exception) -> {
+            if (result.isCancelled()) {
+                upload.abort();
+            }
+        });
+        executor.execute(() -> {
+            if (!result.isDone()) {
+                try {
+                    result.complete(upload.run());
+                } catch (RuntimeException e) {
+                    result.completeExceptionally(e);
+                }
+            }
+        });
+        return result;
+    }
+
+    private long chunkSize(long chunkGranularity) {
+        var preferredChunkSize = Math.min(preferencesManager.get().resumableUploadChunkMegabytes() * 1024L * 1024L, MAX_CHUNK_SIZE);
+        return Math.max(chunkGranularity, preferredChunkSize / chunkGranularity * chunkGranularity);
+    }
+
+    private final class Upload {
+        private final Path file;
+        private final TransferListener listener;
+        private volatile boolean aborted;
+        private volatile Call currentCall;
+
+        Upload(Path file, TransferListener listener) {
+            this.file = checkNotNull(file);
+            this.listener = checkNotNull(listener);
+        }
+
+        String run() {
+            var attributes = getAsUnchecked(() -> Files.readAttributes(file, BasicFileAttributes.class));
+            var fileLastModified = attributes.lastModifiedTime().toInstant();
+            var session = resume(attributes.size(), fileLastModified)
+                    .orElseGet(() -> start(attributes.size(), fileLastModified));
+            return getAsUnchecked(() -> sendChunks(session));
+        }
+
+        void abort() {
+            aborted = true;
+            var call = currentCall;
+            if (call != null) {
+                call.cancel();
+            }
+        }
+
+        private Optional<UploadSession> resume(long fileSize, Instant fileLastModified) {
+            return uploadStateManager.loadUploadSession(file)
+                    .filter(session -> {
+                        if (session.fileSize() == fileSize && session.fileLastModified().equals(fileLastModified)) {
+                            return true;
+                        }
+                        logger.info("{} changed since its upload started, starting over", file);
+                        uploadStateManager.forgetUploadSession(file);
+                        return false;
+                    })
+                    .flatMap(this::query);
+        }
+
+        private Optional<UploadSession> query(UploadSession session) {
+            try (var response = execute(newRequest(session.sessionUrl())
+                    .header(COMMAND_HEADER, "query")
+                    .post(EMPTY_BODY)
+                    .build())) {
+                var status = response.header("X-Goog-Upload-Status");
+                if (response.isSuccessful() && "active".equals(status)) {
+                    var sizeReceived = Long.parseLong(checkNotNull(response.header("X-Goog-Upload-Size-Received"), "no size received in response"));
+                    logger.info("Resuming upload of {} from byte {} of {}", file, sizeReceived, session.fileSize());
+                    return Optional.of(session.withCommittedOffset(sizeReceived));
+                }
+                if (isTransient(response.code())) {
+                    throw new InterruptedUploadException(describeFailure("querying upload session of " + file, response));
+                }
+                logger.info("Upload session of {} can no longer be resumed ({} {}), starting over", file, response.code(), status);
+                uploadStateManager.forgetUploadSession(file);
+                return Optional.empty();
+            }
+        }
+
+        private UploadSession start(long fileSize, Instant fileLastModified) {
+            try (var response = execute(newRequest(uploadsUrl)
+                    .header(COMMAND_HEADER, "start")
+                    .header(CONTENT_TYPE_HEADER, contentType(file))
+                    .header(PROTOCOL_HEADER, "resumable")
+                    .header("X-Goog-Upload-Raw-Size", Long.toString(fileSize))
+                    .post(EMPTY_BODY)
+                    .build())) {
+                checkSuccessful(response, "starting upload of " + file);
+                var sessionUrl = response.header("X-Goog-Upload-URL");
+                checkState(sessionUrl != null, "no upload URL in response to starting upload of %s", file);
+                var chunkGranularity = Optional.ofNullable(response.header("X-Goog-Upload-Chunk-Granularity"))
+                        .map(Long::parseLong)
+                        .orElse(DEFAULT_CHUNK_GRANULARITY);
+                var session = UploadSession.of(sessionUrl, chunkGranularity, fileSize, fileLastModified, 0);
+                uploadStateManager.saveUploadSession(file, session);
+                logger.debug("Started resumable upload of {}: {}", file, session);
+                return session;
+            }
+        }
+
+        private String sendChunks(UploadSession initialSession) throws IOException {
+            var session = initialSession;
+            var chunkSize = chunkSize(session.chunkGranularity());
+            try (var channel = FileChannel.open(file, READ)) {
+                while (true) {
+                    var offset = session.committedOffset();
+                    var length = Math.min(chunkSize, session.fileSize() - offset);
+                    var lastChunk = offset + length == session.fileSize();
+                    var request = newRequest(session.sessionUrl())
+                            .header(COMMAND_HEADER, lastChunk ? "upload, finalize" : "upload")
+                            .header("X-Goog-Upload-Offset", Long.toString(offset))
+                            .post(new FileChannelRequestBody(channel, offset, length, bufferPool, bandwidthLimiter, listener))
+                            .build();
+                    try (var response = execute(request)) {
+                        checkSuccessful(response, "uploading " + file + " from byte " + offset);
+                        if (lastChunk) {
+                            var uploadToken = readBody(response);
+                            uploadStateManager.forgetUploadSession(file);
+                            return uploadToken;
+                        }
+                    }
+                    session = session.withCommittedOffset(offset + length);
+                    uploadStateManager.saveUploadSession(file, session);
+                }
+            }
+        }
+
+        private Request.Builder newRequest(String url) {
+            var builder = new Request.Builder().url(url);
+            try {
+                uploadAuthorization.requestHeaders(URI.create(url))
+                        .forEach((name, values) -> values.forEach(value -> builder.addHeader(name, value)));
+            } catch (IOException e) {
+                throw new InterruptedUploadException("failed to obtain credentials for uploading " + file, e);
+            }
+            return builder;
+        }
+
+        private Response execute(Request request) {
+            var call = client.newCall(request);
+            currentCall = call;
+            if (aborted) {
+                throw new CancellationException("upload of " + file + " aborted");
+            }
+            try {
+                return call.execute();
+            } catch (IOException e) {
+                throw new InterruptedUploadException("upload of " + file + " interrupted", e);
+            }
+        }
+
+        private String readBody(Response response) {
+            try {
+                return checkNotNull(response.body(), "no upload token in response").string();
+            } catch (IOException e) {
+                throw new InterruptedUploadException("upload of " + file + " interrupted while reading upload token", e);
+            }
+        }
+
+        private void checkSuccessful(Response response, String operation) {
+            if (response.isSuccessful()) {
+                return;
+            }
+            var message = describeFailure(operation, response);
+            if (isTransient(response.code())) {
+                throw new InterruptedUploadException(message);
+            }
+            uploadStateManager.forgetUploadSession(file);
+            if (response.code() == 404 || response.code() == 410) {
+                // upload session expired
+                throw new InterruptedUploadException(message);
+            }
+            throw new IllegalStateException(message);
+        }
+    }
+}
@@ -34,13 +34,13 @@ final class SelectingAddToAlbumStrategy implements AddToAlbumStrategy {
     }
 
     @Override
-    public CompletableFuture<Void> addToAlbum(CompletableFuture<List<PathState>> createMediaDataResultsFuture,
+    public CompletableFuture<Void> addToAlbum(List<CompletableFuture<PathState>> createMediaDataResultFutures,
                                               Optional<GooglePhotosAlbum> googlePhotosAlbum,
                                               ProgressStatus fileProgressStatus,
                                               ProgressStatus directoryProgressStatus,
                                               BiFunction<Optional<String>, List<PathState>, CompletableFuture<List<PathMediaItemOrError>>> createMediaItems,
                                               Function<Path, ItemState> itemStateRetriever) {
-        return selectDelegate().addToAlbum(createMediaDataResultsFuture,
+        return selectDelegate().addToAlbum(createMediaDataResultFutures,
                 googlePhotosAlbum,
                 fileProgressStatus,
                 directoryProgressStatus,
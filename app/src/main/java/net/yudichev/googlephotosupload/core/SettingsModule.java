@@ -12,13 +12,19 @@ import static net.yudichev.jiotty.common.inject.BindingSpec.literally;
 
 public final class SettingsModule extends BaseLifecycleComponentModule {
     private final Path settingsRootPath;
+    private final StateStoreBackend stateStoreBackend;
 
     public SettingsModule() {
         this(Paths.get(System.getProperty("user.home"), ".jiottyphotosuploader"));
     }
 
     public SettingsModule(Path settingsRootPath) {
+        this(settingsRootPath, StateStoreBackend.fromSystemProperties());
+    }
+
+    public SettingsModule(Path settingsRootPath, StateStoreBackend stateStoreBackend) {
         this.settingsRootPath = checkNotNull(settingsRootPath);
+        this.stateStoreBackend = checkNotNull(stateStoreBackend);
     }
 
     public Path getSettingsRootPath() {
@@ -42,7 +48,15 @@ public final class SettingsModule extends BaseLifecycleComponentModule {
         expose(varStoreModule.getExposedKey());
 
         bind(Path.class).annotatedWith(UploadStateManagerImpl.H2DbPath.class).toInstance(settingsRootPath.resolve("data"));
-        bind(UploadStateManager.class).to(boundLifecycleComponent(UploadStateManagerImpl.class));
+        bind(Path.class).annotatedWith(MvStoreUploadStateManager.MvStorePath.class).toInstance(settingsRootPath.resolve("state.mvstore"));
+        bind(Path.class).annotatedWith(JournalUploadStateManager.JournalBasePath.class).toInstance(settingsRootPath.resolve("state"));
+        bind(StateStoreBackend.class).toInstance(stateStoreBackend);
+        bind(StateStoreMigration.class).to(StateStoreMigrationImpl.class);
+        switch (stateStoreBackend) {
+            case H2_SQL -> bind(UploadStateManager.class).to(boundLifecycleComponent(UploadStateManagerImpl.class));
+            case H2_MV_STORE -> bind(UploadStateManager.class).to(boundLifecycleComponent(MvStoreUploadStateManager.class));
+            case JOURNAL -> bind(UploadStateManager.class).to(boundLifecycleComponent(JournalUploadStateManager.class));
+        }
         expose(UploadStateManager.class);
     }
 }
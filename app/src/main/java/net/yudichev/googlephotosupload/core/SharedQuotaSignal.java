@@ -0,0 +1,17 @@
+package net.yudichev.googlephotosupload.core;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The only back-off state shared between operations: once Google reports the quota exhausted for one operation, new attempts of all other
+ * operations are held back for the same period instead of each discovering the exhausted quota on its own.
+ */
+interface SharedQuotaSignal {
+    void onQuotaExhausted(Duration backOff);
+
+    /**
+     * @return future that completes once the quota is no longer known to be exhausted; already completed in most cases
+     */
+    CompletableFuture<Void> whenQuotaAvailable();
+}
@@ -0,0 +1,38 @@
+package net.yudichev.googlephotosupload.core;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static java.util.concurrent.CompletableFuture.delayedExecutor;
+import static java.util.concurrent.CompletableFuture.runAsync;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static net.yudichev.jiotty.common.lang.Locks.inLock;
+
+final class SharedQuotaSignalImpl implements SharedQuotaSignal {
+    private static final Logger logger = LoggerFactory.getLogger(SharedQuotaSignalImpl.class);
+    private final Lock lock = new ReentrantLock();
+    private long exhaustedUntilNanos = System.nanoTime();
+
+    @Override
+    public void onQuotaExhausted(Duration backOff) {
+        var untilNanos = System.nanoTime() + backOff.toNanos();
+        inLock(lock, () -> {
+            if (untilNanos - exhaustedUntilNanos > 0) {
+                logger.debug("Quota exhausted, holding back new requests for {}", backOff);
+                exhaustedUntilNanos = untilNanos;
+            }
+        });
+    }
+
+    @Override
+    public CompletableFuture<Void> whenQuotaAvailable() {
+        long remainingNanos = inLock(lock, () -> exhaustedUntilNanos - System.nanoTime());
+        return remainingNanos <= 0 ? completedFuture(null) : runAsync(() -> {}, delayedExecutor(remainingNanos, NANOSECONDS));
+    }
+}
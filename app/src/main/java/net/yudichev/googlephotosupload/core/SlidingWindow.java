@@ -0,0 +1,92 @@
+package net.yudichev.googlephotosupload.core;
+
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static net.yudichev.jiotty.common.lang.Locks.inLock;
+
+/**
+ * Runs asynchronous tasks over a sequence of items, keeping at most {@code windowSize} of them in flight and admitting the next item as soon
+ * as an earlier one completes. Items are only pulled from the iterator when admitted. After the first failure no more items are admitted;
+ * the result fails with that failure once the tasks already in flight complete.
+ */
+final class SlidingWindow<T> {
+    private final Iterator<T> items;
+    private final int windowSize;
+    private final Function<T, CompletableFuture<?>> task;
+    private final CompletableFuture<Void> result = new CompletableFuture<>();
+    private final Lock lock = new ReentrantLock();
+    /**
+     * Makes {@link #admit()} a trampoline: tasks completing synchronously do not recurse into it, which matters for many thousands of items.
+     */
+    private final AtomicInteger admissionRequests = new AtomicInteger();
+    private int activeCount;
+    private Throwable failure;
+
+    private SlidingWindow(Iterator<T> items, int windowSize, Function<T, CompletableFuture<?>> task) {
+        checkArgument(windowSize > 0, "windowSize must be positive: %s", windowSize);
+        this.items = items;
+        this.windowSize = windowSize;
+        this.task = task;
+    }
+
+    static <T> CompletableFuture<Void> run(Iterator<T> items, int windowSize, Function<T, CompletableFuture<?>> task) {
+        var window = new SlidingWindow<>(items, windowSize, task);
+        window.admit();
+        return window.result;
+    }
+
+    private void admit() {
+        if (admissionRequests.getAndIncrement() != 0) {
+            return;
+        }
+        do {
+            T item;
+            while ((item = nextAdmittedItem()) != null) {
+                CompletableFuture<?> taskFuture;
+                try {
+                    taskFuture = task.apply(item);
+                } catch (RuntimeException e) {
+                    taskFuture = CompletableFuture.failedFuture(e);
+                }
+                taskFuture.whenComplete((ignored, exception) -> onTaskComplete(exception));
+            }
+            completeIfDone();
+        } while (admissionRequests.decrementAndGet() != 0);
+    }
+
+    private T nextAdmittedItem() {
+        return inLock(lock, () -> failure == null && activeCount < windowSize && items.hasNext() ? admitNextItem() : null);
+    }
+
+    private T admitNextItem() {
+        activeCount++;
+        return items.next();
+    }
+
+    private void completeIfDone() {
+        var done = inLock(lock, () -> activeCount == 0 && (failure != null || !items.hasNext()));
+        if (done) {
+            if (failure == null) {
+                result.complete(null);
+            } else {
+                result.completeExceptionally(failure);
+            }
+        }
+    }
+
+    private void onTaskComplete(Throwable exception) {
+        inLock(lock, () -> {
+            activeCount--;
+            if (exception != null && failure == null) {
+                failure = exception;
+            }
+        });
+        admit();
+    }
+}
@@ -0,0 +1,10 @@
+package net.yudichev.googlephotosupload.core;
+
+/**
+ * A transfer that made no progress for too long or did not complete in time, and was abandoned to be retried.
+ */
+final class StalledTransferException extends RuntimeException {
+    StalledTransferException(String message) {
+        super(message);
+    }
+}
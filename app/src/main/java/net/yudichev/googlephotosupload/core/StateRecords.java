@@ -0,0 +1,93 @@
+package net.yudichev.googlephotosupload.core;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.time.Instant;
+
+import static net.yudichev.jiotty.common.lang.MoreThrowables.asUnchecked;
+import static net.yudichev.jiotty.common.lang.MoreThrowables.getAsUnchecked;
+
+/**
+ * Compact binary form of the upload state, for the state stores that keep it as bytes rather than as SQL columns.
+ */
+final class StateRecords {
+    private static final int HAS_UPLOAD_STATE = 1;
+    private static final int HAS_MEDIA_ID = 2;
+
+    private StateRecords() {
+    }
+
+    static byte[] encode(ItemState itemState) {
+        return toBytes(output -> writeItemState(output, itemState));
+    }
+
+    static ItemState decodeItemState(byte[] bytes) {
+        return getAsUnchecked(() -> readItemState(new DataInputStream(new ByteArrayInputStream(bytes))));
+    }
+
+    static byte[] encode(UploadSession uploadSession) {
+        return toBytes(output -> {
+            output.writeUTF(uploadSession.sessionUrl());
+            output.writeLong(uploadSession.chunkGranularity());
+            output.writeLong(uploadSession.fileSize());
+            writeInstant(output, uploadSession.fileLastModified());
+            output.writeLong(uploadSession.committedOffset());
+        });
+    }
+
+    static UploadSession decodeUploadSession(byte[] bytes) {
+        return getAsUnchecked(() -> {
+            var input = new DataInputStream(new ByteArrayInputStream(bytes));
+            return UploadSession.of(input.readUTF(), input.readLong(), input.readLong(), readInstant(input), input.readLong());
+        });
+    }
+
+    static void writeItemState(DataOutput output, ItemState itemState) throws IOException {
+        output.writeByte((itemState.uploadState().isPresent() ? HAS_UPLOAD_STATE : 0) | (itemState.mediaId().isPresent() ? HAS_MEDIA_ID : 0));
+        if (itemState.uploadState().isPresent()) {
+            var uploadState = itemState.uploadState().get();
+            output.writeUTF(uploadState.token());
+            writeInstant(output, uploadState.uploadInstant());
+        }
+        if (itemState.mediaId().isPresent()) {
+            output.writeUTF(itemState.mediaId().get());
+        }
+    }
+
+    static ItemState readItemState(DataInput input) throws IOException {
+        var flags = input.readByte();
+        var itemStateBuilder = ItemState.builder();
+        if ((flags & HAS_UPLOAD_STATE) != 0) {
+            itemStateBuilder.setUploadState(UploadMediaItemState.of(input.readUTF(), readInstant(input)));
+        }
+        if ((flags & HAS_MEDIA_ID) != 0) {
+            itemStateBuilder.setMediaId(input.readUTF());
+        }
+        return itemStateBuilder.build();
+    }
+
+    private static void writeInstant(DataOutput output, Instant instant) throws IOException {
+        output.writeLong(instant.getEpochSecond());
+        output.writeInt(instant.getNano());
+    }
+
+    private static Instant readInstant(DataInput input) throws IOException {
+        return Instant.ofEpochSecond(input.readLong(), input.readInt());
+    }
+
+    private static byte[] toBytes(Writer writer) {
+        var bytes = new ByteArrayOutputStream(64);
+        asUnchecked(() -> writer.write(new DataOutputStream(bytes)));
+        return bytes.toByteArray();
+    }
+
+    @FunctionalInterface
+    private interface Writer {
+        void write(DataOutput output) throws IOException;
+    }
+}
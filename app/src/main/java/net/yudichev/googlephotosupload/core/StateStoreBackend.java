@@ -0,0 +1,56 @@
+package net.yudichev.googlephotosupload.core;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Where the upload state is kept. Switching to another backend moves the state saved by the previous one over on the next start.
+ */
+public enum StateStoreBackend {
+    /**
+     * H2 database accessed via SQL; the default, and the only one the DB console works with.
+     */
+    H2_SQL,
+    /**
+     * H2's underlying key-value store, accessed directly: point gets and puts by path, no SQL.
+     */
+    H2_MV_STORE,
+    /**
+     * Append-only journal of state changes with periodic compacted snapshots; read into memory at start and kept there whole, so its memory use
+     * grows with the number of files uploaded.
+     */
+    JOURNAL;
+
+    public static final String SYSTEM_PROPERTY = "jiottyphotosuploader.stateStore";
+
+    private static final Logger logger = LoggerFactory.getLogger(StateStoreBackend.class);
+    /**
+     * The former append-only log store, superseded by {@link #JOURNAL}, which also migrates its state.
+     */
+    private static final String REMOVED_LOG_BACKEND_NAME = "LOG";
+
+    /**
+     * @return the backend named by the {@value #SYSTEM_PROPERTY} system property, case-insensitive, or {@link #H2_SQL} if it is not set
+     * @throws IllegalArgumentException if the property does not name a backend
+     */
+    public static StateStoreBackend fromSystemProperties() {
+        var name = System.getProperty(SYSTEM_PROPERTY);
+        if (name == null) {
+            return H2_SQL;
+        }
+        var backendName = name.trim().toUpperCase(Locale.ENGLISH);
+        if (backendName.equals(REMOVED_LOG_BACKEND_NAME)) {
+            logger.warn("The {} state store has been replaced by {}, using {}", REMOVED_LOG_BACKEND_NAME, JOURNAL, JOURNAL);
+            return JOURNAL;
+        }
+        try {
+            return valueOf(backendName);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown state store '" + name + "' in system property " + SYSTEM_PROPERTY + ", must be one of " +
+                    Arrays.toString(values()), e);
+        }
+    }
+}
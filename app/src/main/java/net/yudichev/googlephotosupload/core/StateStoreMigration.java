@@ -0,0 +1,11 @@
+package net.yudichev.googlephotosupload.core;
+
+interface StateStoreMigration {
+    StateStoreMigration NONE = target -> {};
+
+    /**
+     * Called by a state store as it starts. If the store is empty and there is state saved by another backend, copies it over and moves the
+     * other backend's files aside.
+     */
+    void migrateInto(UploadStateManager target);
+}
@@ -0,0 +1,109 @@
+package net.yudichev.googlephotosupload.core;
+
+import com.google.common.collect.ImmutableList;
+import net.yudichev.jiotty.common.varstore.VarStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static net.yudichev.googlephotosupload.core.JournalUploadStateManager.JournalBasePath;
+import static net.yudichev.googlephotosupload.core.MvStoreUploadStateManager.MvStorePath;
+import static net.yudichev.googlephotosupload.core.UploadStateManagerImpl.H2DbPath;
+import static net.yudichev.jiotty.common.lang.MoreThrowables.asUnchecked;
+import static net.yudichev.jiotty.common.lang.MoreThrowables.getAsUnchecked;
+
+final class StateStoreMigrationImpl implements StateStoreMigration {
+    private static final Logger logger = LoggerFactory.getLogger(StateStoreMigrationImpl.class);
+    /**
+     * Migrated items are written behind, in batches, rather than one by one.
+     */
+    private static final Duration MIGRATION_WRITE_BEHIND_WINDOW = Duration.ofMinutes(1);
+
+    private final StateStoreBackend currentBackend;
+    private final VarStore varStore;
+    private final Path h2DbPath;
+    private final Path mvStorePath;
+    private final Path journalBasePath;
+
+    @Inject
+    StateStoreMigrationImpl(StateStoreBackend currentBackend,
+                            VarStore varStore,
+                            @H2DbPath Path h2DbPath,
+                            @MvStorePath Path mvStorePath,
+                            @JournalBasePath Path journalBasePath) {
+        this.currentBackend = checkNotNull(currentBackend);
+        this.varStore = checkNotNull(varStore);
+        this.h2DbPath = checkNotNull(h2DbPath);
+        this.mvStorePath = checkNotNull(mvStorePath);
+        this.journalBasePath = checkNotNull(journalBasePath);
+    }
+
+    @Override
+    public void migrateInto(UploadStateManager target) {
+        if (target.itemCount() > 0) {
+            return;
+        }
+        for (var backend : StateStoreBackend.values()) {
+            var dataFiles = dataFiles(backend);
+            if (backend != currentBackend && dataFiles.stream().anyMatch(Files::exists)) {
+                migrate(backend, target);
+                // so that the stale state is not picked up again should the backend be switched back
+                dataFiles.forEach(dataFile -> asUnchecked(() -> {
+                    if (Files.exists(dataFile)) {
+                        Files.move(dataFile, dataFile.resolveSibling(dataFile.getFileName() + ".migrated"), REPLACE_EXISTING);
+                    }
+                }));
+                return;
+            }
+        }
+        var legacyLogPath = journalBasePath.resolveSibling(LegacyStateLog.FILE_NAME);
+        if (Files.exists(legacyLogPath)) {
+            var itemStates = getAsUnchecked(() -> LegacyStateLog.readItemStates(legacyLogPath));
+            migrate(itemStates, "the former LOG", target);
+            asUnchecked(() -> Files.move(legacyLogPath, legacyLogPath.resolveSibling(legacyLogPath.getFileName() + ".migrated"), REPLACE_EXISTING));
+        }
+    }
+
+    private void migrate(StateStoreBackend sourceBackend, UploadStateManager target) {
+        // the source store does not migrate anything into itself
+        var source = switch (sourceBackend) {
+            case H2_SQL -> new UploadStateManagerImpl(varStore, h2DbPath, NONE);
+            case H2_MV_STORE -> new MvStoreUploadStateManager(mvStorePath, NONE);
+            case JOURNAL -> new JournalUploadStateManager(journalBasePath, NONE);
+        };
+        source.start();
+        try {
+            migrate(source.loadUploadedMediaItemIdByAbsolutePath(), sourceBackend.toString(), target);
+        } finally {
+            source.stop();
+        }
+    }
+
+    private void migrate(Map<String, ItemState> itemStates, String sourceName, UploadStateManager target) {
+        if (!itemStates.isEmpty()) {
+            logger.info("Migrating {} item(s) from {} to {} state store...", itemStates.size(), sourceName, currentBackend);
+            target.setWriteBehindWindow(MIGRATION_WRITE_BEHIND_WINDOW);
+            itemStates.forEach((path, itemState) -> target.saveItemState(Paths.get(path), itemState));
+            target.setWriteBehindWindow(Duration.ZERO);
+            logger.info("Migrated successfully");
+        }
+    }
+
+    private List<Path> dataFiles(StateStoreBackend backend) {
+        return switch (backend) {
+            case H2_SQL -> ImmutableList.of(h2DbPath.resolveSibling(h2DbPath.getFileName() + ".mv.db"),
+                    h2DbPath.resolveSibling(h2DbPath.getFileName() + ".trace.db"));
+            case H2_MV_STORE -> ImmutableList.of(mvStorePath);
+            case JOURNAL -> JournalUploadStateManager.dataFiles(journalBasePath);
+        };
+    }
+}
@@ -0,0 +1,15 @@
+package net.yudichev.googlephotosupload.core;
+
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+interface StreamingMediaUploader {
+    /**
+     * Uploads the file in a single request, streaming it straight from disk.
+     *
+     * @param listener notified about the progress of the transfer
+     * @return the upload token; cancelling the future aborts the upload
+     */
+    CompletableFuture<String> uploadMediaData(Path file, Executor executor, TransferListener listener);
+}
@@ -0,0 +1,113 @@
+package net.yudichev.googlephotosupload.core;
+
+import net.yudichev.jiotty.common.inject.BaseLifecycleComponent;
+import okhttp3.Call;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.nio.file.StandardOpenOption.READ;
+import static net.yudichev.googlephotosupload.core.Bindings.UploadHttp;
+import static net.yudichev.googlephotosupload.core.Bindings.UploadsUrl;
+import static net.yudichev.googlephotosupload.core.UploadProtocol.CONTENT_TYPE_HEADER;
+import static net.yudichev.googlephotosupload.core.UploadProtocol.PROTOCOL_HEADER;
+import static net.yudichev.googlephotosupload.core.UploadProtocol.contentType;
+import static net.yudichev.googlephotosupload.core.UploadProtocol.describeFailure;
+import static net.yudichev.googlephotosupload.core.UploadProtocol.isTransient;
+
+final class StreamingMediaUploaderImpl extends BaseLifecycleComponent implements StreamingMediaUploader {
+    private final Provider<OkHttpClient> clientProvider;
+    private final UploadAuthorization uploadAuthorization;
+    private final DirectBufferPool bufferPool;
+    private final BandwidthLimiter bandwidthLimiter;
+    private final String uploadsUrl;
+
+    private OkHttpClient client;
+
+    @Inject
+    StreamingMediaUploaderImpl(@UploadHttp Provider<OkHttpClient> clientProvider,
+                               UploadAuthorization uploadAuthorization,
+                               DirectBufferPool bufferPool,
+                               BandwidthLimiter bandwidthLimiter,
+                               @UploadsUrl String uploadsUrl) {
+        this.clientProvider = checkNotNull(clientProvider);
+        this.uploadAuthorization = checkNotNull(uploadAuthorization);
+        this.bufferPool = checkNotNull(bufferPool);
+        this.bandwidthLimiter = checkNotNull(bandwidthLimiter);
+        this.uploadsUrl = checkNotNull(uploadsUrl);
+    }
+
+    @Override
+    protected void doStart() {
+        client = clientProvider.get();
+    }
+
+    @Override
+    public CompletableFuture<String> uploadMediaData(Path file, Executor executor, TransferListener listener) {
+        checkStarted();
+        var result = new CompletableFuture<String>();
+        executor.execute(() -> {
+            if (!result.isDone()) {
+                try {
+                    result.complete(upload(file, listener, result));
+                } catch (RuntimeException e) {
+                    result.completeExceptionally(e);
+                }
+            }
+        });
+        return result;
+    }
+
+    private String upload(Path file, TransferListener listener, CompletableFuture<String> result) {
+        try (var channel = FileChannel.open(file, READ)) {
+            var requestBuilder = new Request.Builder()
+                    .url(uploadsUrl)
+                    .header(CONTENT_TYPE_HEADER, contentType(file))
+                    .header(PROTOCOL_HEADER, "raw")
+                    .post(new FileChannelRequestBody(channel, 0, channel.size(), bufferPool, bandwidthLimiter, listener));
+            try {
+                uploadAuthorization.requestHeaders(URI.create(uploadsUrl))
+                        .forEach((name, values) -> values.forEach(value -> requestBuilder.addHeader(name, value)));
+            } catch (IOException e) {
+                throw new InterruptedUploadException("failed to obtain credentials for uploading " + file, e);
+            }
+            return execute(file, client.newCall(requestBuilder.build()), result);
+        } catch (IOException e) {
+            // opening or sizing the file failed - not worth retrying
+            throw new IllegalStateException("failed to read " + file, e);
+        }
+    }
+
+    private static String execute(Path file, Call call, CompletableFuture<String> result) {
+        result.whenComplete((token, exception) -> {
+            if (result.isCancelled()) {
+                call.cancel();
+            }
+        });
+        if (result.isCancelled()) {
+            throw new CancellationException("upload of " + file + " aborted");
+        }
+        try (var response = call.execute()) {
+            if (!response.isSuccessful()) {
+                var message = describeFailure("uploading " + file, response);
+                if (isTransient(response.code())) {
+                    throw new InterruptedUploadException(message);
+                }
+                throw new IllegalStateException(message);
+            }
+            return checkNotNull(response.body(), "no upload token in response").string();
+        } catch (IOException e) {
+            throw new InterruptedUploadException("upload of " + file + " interrupted", e);
+        }
+    }
+}
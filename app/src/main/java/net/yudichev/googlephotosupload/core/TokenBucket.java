@@ -0,0 +1,36 @@
+package net.yudichev.googlephotosupload.core;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Not thread safe. Permits are reserved immediately even if not yet available, putting the bucket into debt, so that subsequent callers queue
+ * up behind the current one; this also allows reservations bigger than the capacity (e.g. a large file upload).
+ */
+final class TokenBucket {
+    private static final double NANOS_PER_SECOND = 1_000_000_000;
+    private final double permitsPerSecond;
+    private final double capacity;
+    private double availablePermits;
+    private long lastRefillNanos;
+
+    TokenBucket(double permitsPerSecond, double capacity, long nowNanos) {
+        checkArgument(permitsPerSecond > 0, "permitsPerSecond must be positive: %s", permitsPerSecond);
+        checkArgument(capacity > 0, "capacity must be positive: %s", capacity);
+        this.permitsPerSecond = permitsPerSecond;
+        this.capacity = capacity;
+        availablePermits = capacity;
+        lastRefillNanos = nowNanos;
+    }
+
+    /**
+     * @return how long, in nanoseconds, the caller has to wait before using the reserved permits
+     */
+    long reserve(long permits, long nowNanos) {
+        checkArgument(permits >= 0, "permits must not be negative: %s", permits);
+        availablePermits = Math.min(capacity, availablePermits + (nowNanos - lastRefillNanos) * permitsPerSecond / NANOS_PER_SECOND);
+        lastRefillNanos = nowNanos;
+        availablePermits -= permits;
+        //noinspection NumericCastThatLosesPrecision ceil of a reasonable value
+        return availablePermits >= 0 ? 0 : (long) Math.ceil(-availablePermits * NANOS_PER_SECOND / permitsPerSecond);
+    }
+}
@@ -0,0 +1,19 @@
+package net.yudichev.googlephotosupload.core;
+
+/**
+ * Notified by the transports that send the file themselves about the progress of a transfer.
+ */
+interface TransferListener {
+    /**
+     * Called every time some bytes are sent.
+     */
+    void onProgress();
+
+    /**
+     * Called before the transfer is held back by the {@link BandwidthLimiter}, so that the wait is not taken for a stall.
+     *
+     * @param delayNanos how long the transfer is about to wait
+     */
+    default void onThrottled(long delayNanos) {
+    }
+}
@@ -0,0 +1,119 @@
+package net.yudichev.googlephotosupload.core;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.util.concurrent.CompletableFuture.delayedExecutor;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Fails a transfer with {@link StalledTransferException} if it does not complete within the timeout counted from {@link #onStarted()}, or, once
+ * the transport reports progress via {@link #onProgress()}, if no progress is reported for longer than the stall timeout. The transfer's future
+ * is then cancelled, so only transports that abort the request when cancelled are to be watched. The failure is reported once the transfer
+ * has stopped running, see {@link #onFinished()}, so that the permits held for it are not released while it still uses the bandwidth.
+ * <p>
+ * Time the transfer spends held back by the bandwidth limit, see {@link #onThrottled(long)}, extends the deadline and does not count as a stall,
+ * since a low limit shared by many transfers may slow each of them down well below the expected speed.
+ */
+final class TransferWatchdog implements TransferListener {
+    private static final long NOT_YET = Long.MIN_VALUE;
+
+    private final String transferName;
+    private final Duration timeout;
+    private final Duration stallTimeout;
+    private final long checkPeriodNanos;
+    private final AtomicBoolean abandoned = new AtomicBoolean();
+    private final CompletableFuture<Void> finished = new CompletableFuture<>();
+    private final AtomicLong throttledNanos = new AtomicLong();
+    private volatile long startNanos = NOT_YET;
+    private volatile long lastProgressNanos = NOT_YET;
+
+    TransferWatchdog(String transferName, Duration timeout, Duration stallTimeout) {
+        this.transferName = checkNotNull(transferName);
+        this.timeout = checkNotNull(timeout);
+        this.stallTimeout = checkNotNull(stallTimeout);
+        checkPeriodNanos = Math.min(timeout.toNanos(), stallTimeout.toNanos());
+    }
+
+    /**
+     * Called when the transfer actually starts, as opposed to when it is queued.
+     */
+    void onStarted() {
+        startNanos = System.nanoTime();
+    }
+
+    @Override
+    public void onProgress() {
+        lastProgressNanos = System.nanoTime();
+    }
+
+    @Override
+    public void onThrottled(long delayNanos) {
+        throttledNanos.addAndGet(delayNanos);
+        lastProgressNanos = System.nanoTime() + delayNanos;
+    }
+
+    /**
+     * Called when the transfer stops running, whether it completed or was aborted.
+     */
+    void onFinished() {
+        finished.complete(null);
+    }
+
+    <T> CompletableFuture<T> watch(CompletableFuture<T> transfer) {
+        var result = new CompletableFuture<T>();
+        transfer.whenComplete((value, exception) -> {
+            if (abandoned.get()) {
+                return;
+            }
+            if (exception == null) {
+                result.complete(value);
+            } else {
+                result.completeExceptionally(exception);
+            }
+        });
+        scheduleCheck(transfer, result, checkPeriodNanos);
+        return result;
+    }
+
+    private <T> void scheduleCheck(CompletableFuture<T> transfer, CompletableFuture<T> result, long delayNanos) {
+        delayedExecutor(delayNanos, NANOSECONDS).execute(() -> {
+            if (result.isDone()) {
+                return;
+            }
+            var nowNanos = System.nanoTime();
+            var started = startNanos;
+            if (started == NOT_YET) {
+                // still queued
+                scheduleCheck(transfer, result, checkPeriodNanos);
+                return;
+            }
+            var nanosToDeadline = started + timeout.toNanos() + throttledNanos.get() - nowNanos;
+            if (nanosToDeadline <= 0) {
+                abandon(transfer, result, "did not complete in " + timeout.plusNanos(throttledNanos.get()));
+                return;
+            }
+            var lastProgress = lastProgressNanos;
+            var nextCheckNanos = nanosToDeadline;
+            if (lastProgress != NOT_YET) {
+                var nanosToStall = lastProgress + stallTimeout.toNanos() - nowNanos;
+                if (nanosToStall <= 0) {
+                    abandon(transfer, result, "made no progress in " + stallTimeout);
+                    return;
+                }
+                nextCheckNanos = Math.min(nextCheckNanos, nanosToStall);
+            }
+            scheduleCheck(transfer, result, Math.min(nextCheckNanos, stallTimeout.toNanos()));
+        });
+    }
+
+    private <T> void abandon(CompletableFuture<T> transfer, CompletableFuture<T> result, String reason) {
+        if (!transfer.isDone() && abandoned.compareAndSet(false, true)) {
+            transfer.cancel(true);
+            finished.thenRun(() -> result.completeExceptionally(new StalledTransferException(transferName + " " + reason)));
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package net.yudichev.googlephotosupload.core;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+
+interface UploadAuthorization {
+    /**
+     * @return headers authorising a request to the given URI
+     */
+    Map<String, List<String>> requestHeaders(URI uri) throws IOException;
+}
@@ -0,0 +1,215 @@
+package net.yudichev.googlephotosupload.core;
+
+import com.google.auth.Credentials;
+import com.google.auth.oauth2.AccessToken;
+import com.google.auth.oauth2.OAuth2Credentials;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import net.yudichev.jiotty.common.inject.BaseLifecycleComponent;
+import net.yudichev.jiotty.connector.google.common.GoogleAuthorization;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.util.concurrent.MoreExecutors.shutdownAndAwaitTermination;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static net.yudichev.jiotty.common.lang.Locks.inLock;
+
+/**
+ * Keeps the access token fresh on a dedicated background thread, well ahead of its expiry, so that requests never refresh it themselves. The credentials
+ * object is shared with the Google client libraries, so their calls benefit too. Should a request still find the token (nearly) expired, it
+ * joins the refresh already in progress rather than starting another one.
+ */
+final class UploadAuthorizationImpl extends BaseLifecycleComponent implements UploadAuthorization {
+    private static final Logger logger = LoggerFactory.getLogger(UploadAuthorizationImpl.class);
+    /**
+     * Must exceed the margin the client libraries refresh at (a few minutes), otherwise they would get there first.
+     */
+    private static final Duration REFRESH_AHEAD_OF_EXPIRY = Duration.ofMinutes(10);
+    /**
+     * A token closer to expiry than this is not handed out.
+     */
+    private static final Duration MIN_REMAINING_VALIDITY = Duration.ofMinutes(1);
+    private static final Duration REFRESH_PERIOD_IF_EXPIRY_UNKNOWN = Duration.ofMinutes(30);
+    private static final Duration RETRY_DELAY_AFTER_FAILURE = Duration.ofSeconds(30);
+
+    private final GoogleAuthorization googleAuthorization;
+    private final Lock lock = new ReentrantLock();
+    private final LongAdder refreshCount = new LongAdder();
+    private final LongAdder refreshFailureCount = new LongAdder();
+    private final LongAdder waitCount = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final LongAccumulator maxWaitNanos = new LongAccumulator(Math::max, 0);
+
+    private Credentials credentials;
+    private ScheduledExecutorService refreshExecutor;
+    private CompletableFuture<Void> refreshInProgress;
+
+    @Inject
+    UploadAuthorizationImpl(GoogleAuthorization googleAuthorization) {
+        this.googleAuthorization = checkNotNull(googleAuthorization);
+    }
+
+    @Override
+    public Map<String, List<String>> requestHeaders(URI uri) throws IOException {
+        var theCredentials = whenStartedAndNotLifecycling(() -> credentials);
+        if (theCredentials instanceof OAuth2Credentials oAuth2Credentials) {
+            var accessToken = oAuth2Credentials.getAccessToken();
+            if (!expiresWithin(accessToken, MIN_REMAINING_VALIDITY)) {
+                return authorizationHeader(accessToken);
+            }
+            return timed(() -> {
+                joinRefresh();
+                return authorizationHeader(oAuth2Credentials.getAccessToken());
+            });
+        }
+        return timed(() -> theCredentials.getRequestMetadata(uri));
+    }
+
+    @Override
+    protected void doStart() {
+        credentials = googleAuthorization.getCredentials();
+        if (credentials instanceof OAuth2Credentials oAuth2Credentials) {
+            refreshExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                    .setNameFormat("auth-refresh-%s")
+                    .setDaemon(true)
+                    .build());
+            scheduleNextRefresh(oAuth2Credentials);
+        } else {
+            logger.info("Credentials of type {} cannot be refreshed ahead of time", credentials.getClass().getSimpleName());
+        }
+    }
+
+    @Override
+    protected void doStop() {
+        logger.info("Auth stats: {} token refreshes ({} failed); requests waited for a token {} time(s), {}ms in total, {}ms max",
+                refreshCount.sum(), refreshFailureCount.sum(), waitCount.sum(), totalWaitNanos.sum() / 1_000_000, maxWaitNanos.get() / 1_000_000);
+        if (refreshExecutor != null) {
+            refreshExecutor.shutdownNow();
+            if (!shutdownAndAwaitTermination(refreshExecutor, 5, SECONDS)) {
+                logger.warn("Failed to shutdown auth refresh thread in 5 seconds!");
+            }
+        }
+        inLock(lock, () -> {
+            // its task may have been dropped by the executor shutdown, so no request must be left waiting for it
+            if (refreshInProgress != null) {
+                refreshInProgress.completeExceptionally(new IllegalStateException("stopped"));
+                refreshInProgress = null;
+            }
+        });
+    }
+
+    private void scheduleNextRefresh(OAuth2Credentials oAuth2Credentials) {
+        var accessToken = oAuth2Credentials.getAccessToken();
+        long delayMillis;
+        if (accessToken == null) {
+            delayMillis = 0;
+        } else if (accessToken.getExpirationTime() == null) {
+            delayMillis = REFRESH_PERIOD_IF_EXPIRY_UNKNOWN.toMillis();
+        } else {
+            delayMillis = Math.max(0, accessToken.getExpirationTime().getTime() - REFRESH_AHEAD_OF_EXPIRY.toMillis() - System.currentTimeMillis());
+        }
+        logger.debug("Next access token refresh in {}ms", delayMillis);
+        schedule(() -> startRefresh(oAuth2Credentials).whenComplete((ignored, e) -> {
+            if (e == null) {
+                scheduleNextRefresh(oAuth2Credentials);
+            } else {
+                logger.warn("Background access token refresh failed, will retry in {}", RETRY_DELAY_AFTER_FAILURE, e);
+                schedule(() -> scheduleNextRefresh(oAuth2Credentials), RETRY_DELAY_AFTER_FAILURE.toMillis());
+            }
+        }), delayMillis);
+    }
+
+    private void schedule(Runnable task, long delayMillis) {
+        try {
+            refreshExecutor.schedule(task, delayMillis, MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            logger.debug("Not scheduling access token refresh: stopping");
+        }
+    }
+
+    /**
+     * Single flight: while a refresh is in progress, everyone gets that refresh's future.
+     */
+    private CompletableFuture<Void> startRefresh(OAuth2Credentials oAuth2Credentials) {
+        return inLock(lock, () -> {
+            if (refreshInProgress == null || refreshInProgress.isDone()) {
+                var refresh = new CompletableFuture<Void>();
+                refreshInProgress = refresh;
+                // run outside the lock and the caller's thread: a request joining the refresh is not the one doing it
+                try {
+                    refreshExecutor.execute(() -> {
+                        try {
+                            oAuth2Credentials.refresh();
+                            refreshCount.increment();
+                            refresh.complete(null);
+                        } catch (IOException | RuntimeException e) {
+                            refreshFailureCount.increment();
+                            refresh.completeExceptionally(e);
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    refresh.completeExceptionally(e);
+                }
+            }
+            return refreshInProgress;
+        });
+    }
+
+    private void joinRefresh() throws IOException {
+        try {
+            startRefresh((OAuth2Credentials) credentials).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while waiting for access token", e);
+        } catch (ExecutionException e) {
+            throw new IOException("failed to refresh access token", e.getCause());
+        }
+    }
+
+    private <T> T timed(IoSupplier<T> supplier) throws IOException {
+        var startNanos = System.nanoTime();
+        try {
+            return supplier.get();
+        } finally {
+            var waitNanos = System.nanoTime() - startNanos;
+            waitCount.increment();
+            totalWaitNanos.add(waitNanos);
+            maxWaitNanos.accumulate(waitNanos);
+            logger.debug("Request waited {}ms for access token", waitNanos / 1_000_000);
+        }
+    }
+
+    private static boolean expiresWithin(AccessToken accessToken, Duration duration) {
+        return accessToken == null ||
+                accessToken.getExpirationTime() != null && accessToken.getExpirationTime().getTime() - System.currentTimeMillis() < duration.toMillis();
+    }
+
+    private static Map<String, List<String>> authorizationHeader(AccessToken accessToken) throws IOException {
+        if (accessToken == null) {
+            throw new IOException("no access token available");
+        }
+        return Map.of("Authorization", List.of("Bearer " + accessToken.getTokenValue()));
+    }
+
+    @FunctionalInterface
+    private interface IoSupplier<T> {
+        T get() throws IOException;
+    }
+}
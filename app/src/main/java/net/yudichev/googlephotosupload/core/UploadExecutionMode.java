@@ -0,0 +1,12 @@
+package net.yudichev.googlephotosupload.core;
+
+public enum UploadExecutionMode {
+    /**
+     * A fixed pool of {@link BasePreferences#uploadThreadCount()} platform threads.
+     */
+    PLATFORM_THREADS,
+    /**
+     * A virtual thread per task, with at most {@link BasePreferences#virtualThreadPermitCount()} tasks running at a time.
+     */
+    VIRTUAL_THREADS
+}
@@ -0,0 +1,64 @@
+package net.yudichev.googlephotosupload.core;
+
+import net.yudichev.jiotty.common.inject.BaseLifecycleComponent;
+import okhttp3.ConnectionPool;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+import java.time.Duration;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static net.yudichev.jiotty.common.lang.Closeable.closeIfNotNull;
+
+/**
+ * The HTTP client shared by all uploads made by the app itself, so that connections (and, over HTTP/2, streams) are reused across upload
+ * workers instead of every worker doing its own TLS handshakes.
+ */
+final class UploadHttpClientProvider extends BaseLifecycleComponent implements Provider<OkHttpClient> {
+    private static final Logger logger = LoggerFactory.getLogger(UploadHttpClientProvider.class);
+    private final PreferencesManager preferencesManager;
+    private final RequestTimings requestTimings = new RequestTimings();
+    private OkHttpClient client;
+
+    @Inject
+    UploadHttpClientProvider(PreferencesManager preferencesManager) {
+        this.preferencesManager = checkNotNull(preferencesManager);
+    }
+
+    @Override
+    public OkHttpClient get() {
+        return whenStartedAndNotLifecycling(() -> client);
+    }
+
+    @Override
+    protected void doStart() {
+        var preferences = preferencesManager.get();
+        // every upload worker may hold a connection; keep them all warm between files
+        var maxIdleConnections = Math.max(preferences.uploadThreadCount(), preferences.virtualThreadPermitCount());
+        client = new OkHttpClient.Builder()
+                .connectionPool(new ConnectionPool(maxIdleConnections, 5, MINUTES))
+                .protocols(List.of(Protocol.HTTP_2, Protocol.HTTP_1_1))
+                .connectTimeout(Duration.ofSeconds(30))
+                // stalls are detected by TransferWatchdog; these only guard against connections that are dead for good
+                .writeTimeout(Duration.ofSeconds(preferences.uploadStallTimeoutSeconds()))
+                .readTimeout(Duration.ofSeconds(preferences.uploadStallTimeoutSeconds()))
+                .eventListenerFactory(requestTimings.listenerFactory())
+                .build();
+    }
+
+    @Override
+    protected void doStop() {
+        logger.info("Upload HTTP client stats: {}", requestTimings.summary());
+        client.dispatcher().executorService().shutdown();
+        client.connectionPool().evictAll();
+        closeIfNotNull(client.cache());
+        //noinspection AssignmentToNull
+        client = null;
+    }
+}
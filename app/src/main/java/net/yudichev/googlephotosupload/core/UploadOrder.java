@@ -0,0 +1,24 @@
+package net.yudichev.googlephotosupload.core;
+
+/**
+ * Which files are uploaded first. Applies both to the order in which directories are started and to the order in which files of the
+ * directories in progress are scheduled; the order of items in albums is not affected.
+ */
+public enum UploadOrder {
+    /**
+     * Directories by path, files by name.
+     */
+    PATH,
+    /**
+     * Shortest job first: the most items uploaded per unit of time and quota.
+     */
+    SMALLEST_FIRST,
+    /**
+     * Most recently modified first.
+     */
+    NEWEST_FIRST,
+    /**
+     * Least recently modified first.
+     */
+    OLDEST_FIRST
+}
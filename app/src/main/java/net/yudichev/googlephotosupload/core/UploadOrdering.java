@@ -0,0 +1,34 @@
+package net.yudichev.googlephotosupload.core;
+
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Comparator;
+
+import static java.util.Comparator.comparing;
+import static java.util.Comparator.comparingLong;
+
+final class UploadOrdering {
+    private UploadOrdering() {
+    }
+
+    static Comparator<AlbumDirectory> directoryOrder(UploadOrder uploadOrder) {
+        return switch (uploadOrder) {
+            case PATH -> comparing(AlbumDirectory::path);
+            case SMALLEST_FIRST -> comparingLong(AlbumDirectory::totalSize);
+            case NEWEST_FIRST -> comparingLong(AlbumDirectory::newestModifiedMillis).reversed();
+            case OLDEST_FIRST -> comparingLong(AlbumDirectory::oldestModifiedMillis);
+        };
+    }
+
+    /**
+     * @return scheduling priority of the file, lower is scheduled first; in {@link UploadOrder#PATH} order, files are scheduled in the order
+     * of submission, which is by name
+     */
+    static long filePriority(UploadOrder uploadOrder, BasicFileAttributes attributes) {
+        return switch (uploadOrder) {
+            case PATH -> 0;
+            case SMALLEST_FIRST -> attributes.size();
+            case NEWEST_FIRST -> -attributes.lastModifiedTime().toMillis();
+            case OLDEST_FIRST -> attributes.lastModifiedTime().toMillis();
+        };
+    }
+}
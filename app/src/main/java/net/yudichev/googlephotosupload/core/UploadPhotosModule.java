@@ -9,8 +9,6 @@ import java.time.Duration;
 import java.util.Optional;
 import java.util.concurrent.ExecutorService;
 
-import static net.yudichev.googlephotosupload.core.Bindings.Backpressured;
-
 @SuppressWarnings({"OverlyCoupledClass", "OverlyCoupledMethod"}) // OK for module
 public final class UploadPhotosModule extends BaseLifecycleComponentModule implements ExposedKeyModule<Uploader> {
     private final Optional<Duration> globalInitialDelayOverride;
@@ -29,21 +27,36 @@ public final class UploadPhotosModule extends BaseLifecycleComponentModule imple
         boundLifecycleComponent(LegacyLogCleaner.class);
         boundLifecycleComponent(LegacyAuthCleaner.class);
 
-        bind(ExecutorService.class).annotatedWith(Backpressured.class)
-                .toProvider(boundLifecycleComponent(BackpressuredExecutorServiceProvider.class));
+        bind(ExecutorService.class).annotatedWith(Bindings.ByteTransfer.class)
+                .toProvider(boundLifecycleComponent(BackpressuredExecutorServiceProvider.ByteTransfer.class));
+        bind(ExecutorService.class).annotatedWith(Bindings.MetadataCalls.class)
+                .toProvider(boundLifecycleComponent(BackpressuredExecutorServiceProvider.MetadataCalls.class));
+        bind(ExecutorService.class).annotatedWith(Bindings.Listing.class)
+                .toProvider(boundLifecycleComponent(BackpressuredExecutorServiceProvider.Listing.class));
 
         bind(DirectoryStructureSupplier.class).to(DirectoryStructureSupplierImpl.class);
 
         bind(new TypeLiteral<Optional<Duration>>() {}).annotatedWith(BackingOffRemoteApiExceptionHandlerImpl.GlobalInitialDelayOverride.class)
                 .toInstance(globalInitialDelayOverride);
+        bind(SharedQuotaSignal.class).to(SharedQuotaSignalImpl.class).in(Singleton.class);
         bind(BackingOffRemoteApiExceptionHandler.class).to(BackingOffRemoteApiExceptionHandlerImpl.class);
         bind(FatalUserCorrectableRemoteApiExceptionHandler.class).to(FatalUserCorrectableRemoteApiExceptionHandlerImpl.class);
 
+        bind(ApiRateLimiter.class).to(boundLifecycleComponent(ApiRateLimiterImpl.class));
+        bind(BandwidthLimiter.class).to(boundLifecycleComponent(BandwidthLimiterImpl.class));
+        // also paces the app's own upload transports
+        expose(BandwidthLimiter.class);
+        bind(AdaptiveConcurrencyLimiter.class).annotatedWith(Bindings.ByteTransfer.class)
+                .to(boundLifecycleComponent(AdaptiveConcurrencyLimiterImpl.ByteTransfer.class));
+        bind(AdaptiveConcurrencyLimiter.class).annotatedWith(Bindings.MetadataCalls.class)
+                .to(boundLifecycleComponent(AdaptiveConcurrencyLimiterImpl.MetadataCalls.class));
         bind(CloudOperationHelper.class).to(CloudOperationHelperImpl.class);
         bind(CloudAlbumsProvider.class).to(boundLifecycleComponent(CloudAlbumsProviderImpl.class));
 
         bind(AlbumManager.class).to(boundLifecycleComponent(AlbumManagerImpl.class));
 
+        bind(UploadTokenTracker.class).to(UploadTokenTrackerImpl.class).in(Singleton.class);
+        bind(CreateMediaItemsBatcher.class).to(boundLifecycleComponent(CreateMediaItemsBatcherImpl.class));
         bind(AddToAlbumStrategy.class)
                 .annotatedWith(SelectingAddToAlbumStrategy.WhileCreatingItems.class)
                 .to(AddToAlbumWhileCreatingStrategy.class)
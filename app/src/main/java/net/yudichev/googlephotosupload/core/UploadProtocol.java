@@ -0,0 +1,41 @@
+package net.yudichev.googlephotosupload.core;
+
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+/**
+ * Bits of the Photos Library upload protocol shared by the app's own upload transports, see
+ * <a href="https://developers.google.com/photos/library/guides/upload-media">uploading media</a>.
+ */
+final class UploadProtocol {
+    static final String UPLOADS_URL = "https://photoslibrary.googleapis.com/v1/uploads";
+    static final String COMMAND_HEADER = "X-Goog-Upload-Command";
+    static final String CONTENT_TYPE_HEADER = "X-Goog-Upload-Content-Type";
+    static final String PROTOCOL_HEADER = "X-Goog-Upload-Protocol";
+
+    private UploadProtocol() {
+    }
+
+    static String contentType(Path file) {
+        try {
+            return Optional.ofNullable(Files.probeContentType(file)).orElse("application/octet-stream");
+        } catch (IOException e) {
+            return "application/octet-stream";
+        }
+    }
+
+    /**
+     * Whether the request is worth retrying as is; {@code 401} is included as the token may expire between being obtained and being checked.
+     */
+    static boolean isTransient(int httpCode) {
+        return httpCode == 401 || httpCode == 408 || httpCode == 429 || httpCode >= 500;
+    }
+
+    static String describeFailure(String operation, Response response) {
+        return operation + " failed: " + response.code() + ' ' + response.message();
+    }
+}
@@ -1,15 +1,41 @@
 package net.yudichev.googlephotosupload.core;
 
 import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Collection;
 import java.util.Map;
+import java.util.Optional;
 
 public interface UploadStateManager {
     Map<String, ItemState> loadUploadedMediaItemIdByAbsolutePath();
 
+    /**
+     * Looks the files up by their directories, so the cost depends on the size of these directories rather than of the whole history.
+     *
+     * @return states of those of the files that have any
+     */
+    Map<Path, ItemState> loadItemStates(Collection<Path> files);
+
+    /**
+     * @return states of the files that were uploaded, but whose media items are not created yet
+     */
+    Map<Path, ItemState> loadItemStatesPendingMediaCreation();
+
     void forgetState();
 
     void saveItemState(Path path, ItemState itemState);
 
+    /**
+     * @param window if not zero, item states are queued and committed in batches at least this often, rather than committed one by one
+     */
+    void setWriteBehindWindow(Duration window);
+
+    Optional<UploadSession> loadUploadSession(Path path);
+
+    void saveUploadSession(Path path, UploadSession uploadSession);
+
+    void forgetUploadSession(Path path);
+
     int itemCount();
 
     void startWebServer();
@@ -1,6 +1,10 @@
 package net.yudichev.googlephotosupload.core;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.inject.BindingAnnotation;
 import net.yudichev.jiotty.common.inject.BaseLifecycleComponent;
 import net.yudichev.jiotty.common.varstore.VarStore;
@@ -12,39 +16,90 @@ import javax.inject.Inject;
 import java.lang.annotation.Retention;
 import java.lang.annotation.Target;
 import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.sql.*;
+import java.time.Duration;
 import java.time.Instant;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
 import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.collect.ImmutableSet.toImmutableSet;
 import static java.lang.annotation.ElementType.*;
 import static java.lang.annotation.RetentionPolicy.RUNTIME;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static net.yudichev.jiotty.common.lang.Closeable.closeIfNotNull;
 import static net.yudichev.jiotty.common.lang.Locks.inLock;
 import static net.yudichev.jiotty.common.lang.MoreThrowables.asUnchecked;
 import static net.yudichev.jiotty.common.lang.MoreThrowables.getAsUnchecked;
 
+/**
+ * Item states are stored in a normalized form: each directory once in {@code DIRECTORIES}, under an integer id, and each file in
+ * {@code ITEMS}, keyed by that id and its file name, so the long common path prefixes are not repeated in every row and in the primary key.
+ * {@code ITEMS} is also indexed by media ID, so that the few items still waiting for their media items to be created are found at start without
+ * scanning the whole history.
+ * <p>
+ * Item state changes are either committed one by one or, in write-behind mode (see {@link #setWriteBehindWindow(Duration)}), queued and
+ * committed in batches: when the queue reaches {@link #FLUSH_BATCH_SIZE} or the durability window elapses, whichever comes first. Only the
+ * latest state of each path is kept in the queue, so an item that is uploaded and then created within the window is written once.
+ */
 final class UploadStateManagerImpl extends BaseLifecycleComponent implements UploadStateManager {
     private static final Logger logger = LoggerFactory.getLogger(UploadStateManagerImpl.class);
 
     private static final String VAR_STORE_KEY = "photosUploader";
+    private static final int FLUSH_BATCH_SIZE = 1000;
+    private static final int MAX_DIRECTORIES_PER_QUERY = 100;
+    private static final int MIGRATION_BATCH_SIZE = 10_000;
+    private static final int MAX_CACHED_DIRECTORY_IDS = 10_000;
+    private static final String ITEM_STATE_COLUMNS = "D.PATH, I.FILE_NAME, I.TOKEN, I.UPL_TIMESTAMP, I.MEDIA_ID";
+    private static final String FROM_ITEMS = " FROM ITEMS I JOIN DIRECTORIES D ON D.ID = I.DIR_ID";
     private final VarStore varStore;
     private final Path h2DbPath;
+    private final StateStoreMigration stateStoreMigration;
     private final Lock lock = new ReentrantLock();
+    /**
+     * Separate from {@link #lock}, so that queueing a state change never waits for a commit in progress.
+     */
+    private final Lock pendingLock = new ReentrantLock();
+    private Map<String, ItemState> pendingItemStates = new LinkedHashMap<>();
+    private volatile Duration writeBehindWindow = Duration.ZERO;
+    private ScheduledExecutorService flushExecutor;
+    private long commitCount;
+    private long committedItemStateCount;
+    private long totalCommitNanos;
+    private long maxCommitNanos;
+    private final Cache<String, Integer> directoryIdByPath = CacheBuilder.newBuilder().maximumSize(MAX_CACHED_DIRECTORY_IDS).build();
 
     private Connection connection;
     private PreparedStatement queryAllStmt;
     private PreparedStatement removeAllStmt;
     private PreparedStatement updateOneStateStmt;
     private PreparedStatement queryCountStmt;
+    private PreparedStatement queryPendingMediaCreationStmt;
+    private PreparedStatement queryDirectoryIdStmt;
+    private PreparedStatement insertDirectoryStmt;
+    private PreparedStatement queryOneSessionStmt;
+    private PreparedStatement updateOneSessionStmt;
+    private PreparedStatement removeOneSessionStmt;
+    private PreparedStatement removeAllSessionsStmt;
 
     @Inject
     UploadStateManagerImpl(VarStore varStore,
-                           @H2DbPath Path h2DbPath) {
+                           @H2DbPath Path h2DbPath,
+                           StateStoreMigration stateStoreMigration) {
         this.varStore = checkNotNull(varStore);
         this.h2DbPath = checkNotNull(h2DbPath);
+        this.stateStoreMigration = checkNotNull(stateStoreMigration);
     }
 
     @Override
@@ -56,21 +111,93 @@ final class UploadStateManagerImpl extends BaseLifecycleComponent implements Upl
             connection = DriverManager.getConnection(url, "sa", "");
             connection.setAutoCommit(false);
             try (var statement = connection.createStatement()) {
-                statement.execute("CREATE TABLE IF NOT EXISTS MEDIA_ITEMS(" +
-                        "PATH VARCHAR(4096) PRIMARY KEY, " +
+                statement.execute("CREATE TABLE IF NOT EXISTS DIRECTORIES(" +
+                        "ID INT AUTO_INCREMENT PRIMARY KEY, " +
+                        "PATH VARCHAR(4096) NOT NULL UNIQUE" +
+                        ");");
+                statement.execute("CREATE TABLE IF NOT EXISTS ITEMS(" +
+                        "DIR_ID INT NOT NULL, " +
+                        "FILE_NAME VARCHAR(1024) NOT NULL, " +
                         "TOKEN VARCHAR(1024), " +
                         "UPL_TIMESTAMP TIMESTAMP WITH TIME ZONE, " +
-                        "MEDIA_ID VARCHAR(256)" +
+                        "MEDIA_ID VARCHAR(256), " +
+                        "PRIMARY KEY (DIR_ID, FILE_NAME)" +
+                        ");");
+                statement.execute("CREATE INDEX IF NOT EXISTS ITEMS_MEDIA_ID ON ITEMS(MEDIA_ID);");
+                statement.execute("CREATE TABLE IF NOT EXISTS UPLOAD_SESSIONS(" +
+                        "PATH VARCHAR(4096) PRIMARY KEY, " +
+                        "SESSION_URL VARCHAR(4096) NOT NULL, " +
+                        "CHUNK_GRANULARITY BIGINT NOT NULL, " +
+                        "FILE_SIZE BIGINT NOT NULL, " +
+                        "FILE_LAST_MODIFIED TIMESTAMP WITH TIME ZONE NOT NULL, " +
+                        "COMMITTED_OFFSET BIGINT NOT NULL" +
                         ");");
             }
 
-            queryAllStmt = connection.prepareStatement("SELECT PATH, TOKEN, UPL_TIMESTAMP, MEDIA_ID FROM MEDIA_ITEMS");
-            queryCountStmt = connection.prepareStatement("SELECT COUNT(*) FROM MEDIA_ITEMS");
-            removeAllStmt = connection.prepareStatement("TRUNCATE TABLE MEDIA_ITEMS");
-            updateOneStateStmt = connection.prepareStatement("MERGE INTO MEDIA_ITEMS (PATH, TOKEN, UPL_TIMESTAMP, MEDIA_ID) VALUES (?,?,?,?)");
+            queryAllStmt = connection.prepareStatement("SELECT " + ITEM_STATE_COLUMNS + FROM_ITEMS);
+            queryCountStmt = connection.prepareStatement("SELECT COUNT(*) FROM ITEMS");
+            queryPendingMediaCreationStmt = connection.prepareStatement(
+                    "SELECT " + ITEM_STATE_COLUMNS + FROM_ITEMS + " WHERE I.TOKEN IS NOT NULL AND I.MEDIA_ID IS NULL");
+            queryDirectoryIdStmt = connection.prepareStatement("SELECT ID FROM DIRECTORIES WHERE PATH = ?");
+            insertDirectoryStmt = connection.prepareStatement("INSERT INTO DIRECTORIES (PATH) VALUES (?)", Statement.RETURN_GENERATED_KEYS);
+            removeAllStmt = connection.prepareStatement("TRUNCATE TABLE ITEMS");
+            updateOneStateStmt = connection.prepareStatement("MERGE INTO ITEMS (DIR_ID, FILE_NAME, TOKEN, UPL_TIMESTAMP, MEDIA_ID) VALUES (?,?,?,?,?)");
+            queryOneSessionStmt = connection.prepareStatement(
+                    "SELECT SESSION_URL, CHUNK_GRANULARITY, FILE_SIZE, FILE_LAST_MODIFIED, COMMITTED_OFFSET FROM UPLOAD_SESSIONS WHERE PATH = ?");
+            updateOneSessionStmt = connection.prepareStatement(
+                    "MERGE INTO UPLOAD_SESSIONS (PATH, SESSION_URL, CHUNK_GRANULARITY, FILE_SIZE, FILE_LAST_MODIFIED, COMMITTED_OFFSET) VALUES (?,?,?,?,?,?)");
+            removeOneSessionStmt = connection.prepareStatement("DELETE FROM UPLOAD_SESSIONS WHERE PATH = ?");
+            removeAllSessionsStmt = connection.prepareStatement("TRUNCATE TABLE UPLOAD_SESSIONS");
 
+            commitCount = 0;
+            committedItemStateCount = 0;
+            totalCommitNanos = 0;
+            maxCommitNanos = 0;
+            directoryIdByPath.invalidateAll();
             migrateFromOldStorage();
+            migrateFromFlatTable();
         }));
+        stateStoreMigration.migrateInto(this);
+    }
+
+    /**
+     * Moves the items from {@code MEDIA_ITEMS}, the table keyed by the full path that preceded the normalized schema. The table is only dropped
+     * once everything is copied; should the migration be interrupted, it is simply repeated.
+     */
+    private void migrateFromFlatTable() throws SQLException {
+        try (var tables = connection.getMetaData().getTables(null, null, "MEDIA_ITEMS", null)) {
+            if (!tables.next()) {
+                return;
+            }
+        }
+        logger.info("Migrating items to the normalized state schema...");
+        var itemCount = 0;
+        try (var statement = connection.createStatement();
+             var resultSet = statement.executeQuery("SELECT PATH, TOKEN, UPL_TIMESTAMP, MEDIA_ID FROM MEDIA_ITEMS")) {
+            var batchSize = 0;
+            while (resultSet.next()) {
+                var itemStateBuilder = ItemState.builder();
+                var token = resultSet.getString(2);
+                if (token != null) {
+                    itemStateBuilder.setUploadState(UploadMediaItemState.of(token, resultSet.getObject(3, Instant.class)));
+                }
+                Optional.ofNullable(resultSet.getString(4)).ifPresent(itemStateBuilder::setMediaId);
+                addRowUpdateBatch(resultSet.getString(1), itemStateBuilder.build());
+                if (++batchSize == MIGRATION_BATCH_SIZE) {
+                    updateOneStateStmt.executeBatch();
+                    itemCount += batchSize;
+                    batchSize = 0;
+                }
+            }
+            updateOneStateStmt.executeBatch();
+            itemCount += batchSize;
+        }
+        connection.commit();
+        try (var statement = connection.createStatement()) {
+            statement.execute("DROP TABLE MEDIA_ITEMS");
+        }
+        connection.commit();
+        logger.info("Migrated {} item(s)", itemCount);
     }
 
     private void migrateFromOldStorage() throws SQLException {
@@ -89,27 +216,72 @@ final class UploadStateManagerImpl extends BaseLifecycleComponent implements Upl
 
     @Override
     protected void doStop() {
-        closeIfNotNull(connection);
+        // commits whatever is still queued
+        setWriteBehindWindow(Duration.ZERO);
+        inLock(lock, () -> {
+            if (commitCount > 0) {
+                logger.info("State commits: {}, {} item state(s), latency {}ms average, {}ms max",
+                        commitCount, committedItemStateCount, totalCommitNanos / commitCount / 1_000_000, maxCommitNanos / 1_000_000);
+            }
+            closeIfNotNull(connection);
+        });
     }
 
     @Override
     public Map<String, ItemState> loadUploadedMediaItemIdByAbsolutePath() {
+        flushPendingItemStates();
         return inLock(lock, () -> getAsUnchecked(() -> {
             try (var resultSet = queryAllStmt.executeQuery()) {
                 var resultBuilder = ImmutableMap.<String, ItemState>builder();
                 while (resultSet.next()) {
-                    var path = resultSet.getString(1);
-                    var itemStateBuilder = ItemState.builder();
-                    var token = resultSet.getString(2);
-                    if (token != null) {
-                        itemStateBuilder
-                                .setUploadState(UploadMediaItemState.of(token, resultSet.getObject(3, Instant.class)));
+                    resultBuilder.put(readPath(resultSet), readItemState(resultSet));
+                }
+                return resultBuilder.build();
+            }
+        }));
+    }
+
+    @Override
+    public Map<Path, ItemState> loadItemStates(Collection<Path> files) {
+        flushPendingItemStates();
+        Set<String> requestedPaths = files.stream()
+                .map(file -> file.toAbsolutePath().toString())
+                .collect(toImmutableSet());
+        List<String> directories = requestedPaths.stream()
+                .map(UploadStateManagerImpl::parentDirectory)
+                .distinct()
+                .collect(toImmutableList());
+        return inLock(lock, () -> getAsUnchecked(() -> {
+            var resultBuilder = ImmutableMap.<Path, ItemState>builder();
+            for (var directoryBatch : Lists.partition(directories, MAX_DIRECTORIES_PER_QUERY)) {
+                var sql = "SELECT " + ITEM_STATE_COLUMNS + FROM_ITEMS + " WHERE D.PATH IN (" +
+                        String.join(",", Collections.nCopies(directoryBatch.size(), "?")) + ')';
+                try (var statement = connection.prepareStatement(sql)) {
+                    for (var i = 0; i < directoryBatch.size(); i++) {
+                        statement.setString(i + 1, directoryBatch.get(i));
                     }
-                    var mediaId = resultSet.getString(4);
-                    if (mediaId != null) {
-                        itemStateBuilder.setMediaId(mediaId);
+                    try (var resultSet = statement.executeQuery()) {
+                        while (resultSet.next()) {
+                            var path = readPath(resultSet);
+                            if (requestedPaths.contains(path)) {
+                                resultBuilder.put(Paths.get(path), readItemState(resultSet));
+                            }
+                        }
                     }
-                    resultBuilder.put(path, itemStateBuilder.build());
+                }
+            }
+            return resultBuilder.build();
+        }));
+    }
+
+    @Override
+    public Map<Path, ItemState> loadItemStatesPendingMediaCreation() {
+        flushPendingItemStates();
+        return inLock(lock, () -> getAsUnchecked(() -> {
+            try (var resultSet = queryPendingMediaCreationStmt.executeQuery()) {
+                var resultBuilder = ImmutableMap.<Path, ItemState>builder();
+                while (resultSet.next()) {
+                    resultBuilder.put(Paths.get(readPath(resultSet)), readItemState(resultSet));
                 }
                 return resultBuilder.build();
             }
@@ -118,22 +290,116 @@ final class UploadStateManagerImpl extends BaseLifecycleComponent implements Upl
 
     @Override
     public void forgetState() {
-        inLock(lock, () -> asUnchecked(() -> removeAllStmt.execute()));
+        inLock(lock, () -> asUnchecked(() -> {
+            inLock(pendingLock, pendingItemStates::clear);
+            removeAllStmt.execute();
+            removeAllSessionsStmt.execute();
+            try (var statement = connection.createStatement()) {
+                statement.execute("TRUNCATE TABLE DIRECTORIES");
+            }
+            connection.commit();
+            directoryIdByPath.invalidateAll();
+        }));
         logger.trace("Forgot state");
     }
 
     @Override
     public void saveItemState(Path path, ItemState itemState) {
+        if (!writeBehindWindow.isZero()) {
+            boolean batchFull = inLock(pendingLock, () -> {
+                pendingItemStates.put(path.toAbsolutePath().toString(), itemState);
+                return pendingItemStates.size() >= FLUSH_BATCH_SIZE;
+            });
+            logger.trace("Queued state: {}->{}", path, itemState);
+            if (batchFull) {
+                flushPendingItemStates();
+            }
+            return;
+        }
         inLock(lock, () -> asUnchecked(() -> {
             addRowUpdateBatch(path.toAbsolutePath().toString(), itemState);
-            updateOneStateStmt.execute();
-            connection.commit();
+            updateOneStateStmt.executeBatch();
+            commit(1);
         }));
         logger.trace("Saved state: {}->{}", path, itemState);
     }
 
+    @Override
+    public void setWriteBehindWindow(Duration window) {
+        inLock(lock, () -> {
+            if (window.equals(writeBehindWindow)) {
+                return;
+            }
+            if (flushExecutor != null) {
+                flushExecutor.shutdownNow();
+                flushExecutor = null;
+            }
+            writeBehindWindow = window;
+            if (!window.isZero()) {
+                logger.info("Writing state behind, at least every {}", window);
+                flushExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                        .setNameFormat("state-flush-%s")
+                        .setDaemon(true)
+                        .build());
+                flushExecutor.scheduleWithFixedDelay(() -> {
+                    try {
+                        flushPendingItemStates();
+                    } catch (RuntimeException e) {
+                        logger.error("Failed to write upload state, will retry", e);
+                    }
+                }, window.toMillis(), window.toMillis(), MILLISECONDS);
+            }
+        });
+        // whatever was queued under the previous window
+        flushPendingItemStates();
+    }
+
+    @Override
+    public Optional<UploadSession> loadUploadSession(Path path) {
+        return inLock(lock, () -> getAsUnchecked(() -> {
+            queryOneSessionStmt.setString(1, path.toAbsolutePath().toString());
+            try (var resultSet = queryOneSessionStmt.executeQuery()) {
+                if (!resultSet.next()) {
+                    return Optional.empty();
+                }
+                return Optional.of(UploadSession.of(
+                        resultSet.getString(1),
+                        resultSet.getLong(2),
+                        resultSet.getLong(3),
+                        resultSet.getObject(4, Instant.class),
+                        resultSet.getLong(5)));
+            }
+        }));
+    }
+
+    @Override
+    public void saveUploadSession(Path path, UploadSession uploadSession) {
+        inLock(lock, () -> asUnchecked(() -> {
+            updateOneSessionStmt.setString(1, path.toAbsolutePath().toString());
+            updateOneSessionStmt.setString(2, uploadSession.sessionUrl());
+            updateOneSessionStmt.setLong(3, uploadSession.chunkGranularity());
+            updateOneSessionStmt.setLong(4, uploadSession.fileSize());
+            updateOneSessionStmt.setObject(5, uploadSession.fileLastModified());
+            updateOneSessionStmt.setLong(6, uploadSession.committedOffset());
+            updateOneSessionStmt.execute();
+            commit(0);
+        }));
+        logger.trace("Saved upload session: {}->{}", path, uploadSession);
+    }
+
+    @Override
+    public void forgetUploadSession(Path path) {
+        inLock(lock, () -> asUnchecked(() -> {
+            removeOneSessionStmt.setString(1, path.toAbsolutePath().toString());
+            removeOneSessionStmt.execute();
+            commit(0);
+        }));
+        logger.trace("Forgot upload session of {}", path);
+    }
+
     @Override
     public int itemCount() {
+        flushPendingItemStates();
         return inLock(lock, () -> getAsUnchecked(() -> {
             try (var resultSet = queryCountStmt.executeQuery()) {
                 resultSet.next();
@@ -149,25 +415,125 @@ final class UploadStateManagerImpl extends BaseLifecycleComponent implements Upl
         logger.info("DB Console Disconnected");
     }
 
+    /**
+     * The queue is taken over while holding {@link #lock}, so that batches are committed in the order they were queued.
+     */
+    private void flushPendingItemStates() {
+        inLock(lock, () -> asUnchecked(() -> {
+            var batch = inLock(pendingLock, () -> {
+                var pending = pendingItemStates;
+                pendingItemStates = new LinkedHashMap<>();
+                return pending;
+            });
+            if (batch.isEmpty()) {
+                return;
+            }
+            try {
+                for (var entry : batch.entrySet()) {
+                    addRowUpdateBatch(entry.getKey(), entry.getValue());
+                }
+                updateOneStateStmt.executeBatch();
+                commit(batch.size());
+            } catch (SQLException e) {
+                updateOneStateStmt.clearBatch();
+                connection.rollback();
+                // directories created by this batch are gone too
+                directoryIdByPath.invalidateAll();
+                // put back whatever has not been superseded since
+                inLock(pendingLock, () -> batch.forEach(pendingItemStates::putIfAbsent));
+                throw e;
+            }
+            logger.trace("Flushed {} item state(s)", batch.size());
+        }));
+    }
+
+    private void commit(int itemStateCount) throws SQLException {
+        var startNanos = System.nanoTime();
+        connection.commit();
+        var commitNanos = System.nanoTime() - startNanos;
+        commitCount++;
+        committedItemStateCount += itemStateCount;
+        totalCommitNanos += commitNanos;
+        maxCommitNanos = Math.max(maxCommitNanos, commitNanos);
+    }
+
     private void addRowUpdateBatch(String absolutePath, ItemState itemState) throws SQLException {
+        var path = Paths.get(absolutePath);
         updateOneStateStmt.clearParameters();
-        updateOneStateStmt.setString(1, absolutePath);
+        updateOneStateStmt.setInt(1, directoryId(parentDirectory(absolutePath)));
+        updateOneStateStmt.setString(2, path.getFileName() == null ? absolutePath : path.getFileName().toString());
         if (itemState.uploadState().isPresent()) {
             var uploadMediaItemState = itemState.uploadState().get();
-            updateOneStateStmt.setString(2, uploadMediaItemState.token());
-            updateOneStateStmt.setObject(3, uploadMediaItemState.uploadInstant());
+            updateOneStateStmt.setString(3, uploadMediaItemState.token());
+            updateOneStateStmt.setObject(4, uploadMediaItemState.uploadInstant());
         } else {
-            updateOneStateStmt.setNull(2, Types.NULL);
             updateOneStateStmt.setNull(3, Types.NULL);
+            updateOneStateStmt.setNull(4, Types.NULL);
         }
         if (itemState.mediaId().isPresent()) {
-            updateOneStateStmt.setString(4, itemState.mediaId().get());
+            updateOneStateStmt.setString(5, itemState.mediaId().get());
         } else {
-            updateOneStateStmt.setNull(4, Types.NULL);
+            updateOneStateStmt.setNull(5, Types.NULL);
         }
         updateOneStateStmt.addBatch();
     }
 
+    /**
+     * Creates the directory row on first use; the caller commits it along with the items.
+     */
+    private int directoryId(String directory) throws SQLException {
+        var directoryId = directoryIdByPath.getIfPresent(directory);
+        if (directoryId == null) {
+            queryDirectoryIdStmt.setString(1, directory);
+            try (var resultSet = queryDirectoryIdStmt.executeQuery()) {
+                if (resultSet.next()) {
+                    directoryId = resultSet.getInt(1);
+                }
+            }
+            if (directoryId == null) {
+                insertDirectoryStmt.setString(1, directory);
+                insertDirectoryStmt.executeUpdate();
+                try (var generatedKeys = insertDirectoryStmt.getGeneratedKeys()) {
+                    generatedKeys.next();
+                    directoryId = generatedKeys.getInt(1);
+                }
+            }
+            directoryIdByPath.put(directory, directoryId);
+        }
+        return directoryId;
+    }
+
+    /**
+     * @param resultSet positioned on a row of {@link #ITEM_STATE_COLUMNS}
+     */
+    private static String readPath(ResultSet resultSet) throws SQLException {
+        var directory = resultSet.getString(1);
+        var fileName = resultSet.getString(2);
+        return directory.isEmpty() ? fileName : Paths.get(directory).resolve(fileName).toString();
+    }
+
+    /**
+     * @param resultSet positioned on a row of {@link #ITEM_STATE_COLUMNS}
+     */
+    private static ItemState readItemState(ResultSet resultSet) throws SQLException {
+        var itemStateBuilder = ItemState.builder();
+        var token = resultSet.getString(3);
+        if (token != null) {
+            itemStateBuilder
+                    .setUploadState(UploadMediaItemState.of(token, resultSet.getObject(4, Instant.class)));
+        }
+        var mediaId = resultSet.getString(5);
+        if (mediaId != null) {
+            itemStateBuilder.setMediaId(mediaId);
+        }
+        return itemStateBuilder.build();
+    }
+
+    private static String parentDirectory(String absolutePath) {
+        var parent = Paths.get(absolutePath).getParent();
+        return parent == null ? "" : parent.toString();
+    }
+
     @BindingAnnotation
     @Target({FIELD, PARAMETER, METHOD})
     @Retention(RUNTIME)
@@ -0,0 +1,31 @@
+package net.yudichev.googlephotosupload.core;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * Keeps track of the age of upload tokens that have not been turned into media items yet. Upload tokens expire, and when one does, the file
+ * has to be uploaded again.
+ */
+interface UploadTokenTracker {
+    void reset();
+
+    void onItemStateChanged(Path file, ItemState itemState);
+
+    boolean expired(UploadMediaItemState uploadState);
+
+    /**
+     * @return whether the media item for this token should be created as soon as possible
+     */
+    boolean nearingExpiry(UploadMediaItemState uploadState);
+
+    void onExpired(Path file);
+
+    /**
+     * @return upload instants of the files that were uploaded, but whose media items are not created yet, excluding expired ones
+     */
+    Map<Path, Instant> pendingUploadInstants();
+
+    long bytesLostToExpiry();
+}
@@ -0,0 +1,88 @@
+package net.yudichev.googlephotosupload.core;
+
+import com.google.common.collect.ImmutableMap;
+import net.yudichev.jiotty.common.time.CurrentDateTimeProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+final class UploadTokenTrackerImpl implements UploadTokenTracker {
+    private static final Logger logger = LoggerFactory.getLogger(UploadTokenTrackerImpl.class);
+    /**
+     * Google says upload tokens are valid for a day; leave some margin.
+     */
+    private static final Duration TOKEN_VALIDITY = Duration.ofHours(23);
+    private static final Duration NEAR_EXPIRY_MARGIN = Duration.ofHours(2);
+
+    private final CurrentDateTimeProvider currentDateTimeProvider;
+    private final Map<Path, Instant> pendingUploadInstantByPath = new ConcurrentHashMap<>();
+    private final AtomicLong bytesLostToExpiry = new AtomicLong();
+
+    @Inject
+    UploadTokenTrackerImpl(CurrentDateTimeProvider currentDateTimeProvider) {
+        this.currentDateTimeProvider = checkNotNull(currentDateTimeProvider);
+    }
+
+    @Override
+    public void reset() {
+        pendingUploadInstantByPath.clear();
+        bytesLostToExpiry.set(0);
+    }
+
+    @Override
+    public void onItemStateChanged(Path file, ItemState itemState) {
+        itemState.uploadState()
+                .filter(uploadState -> itemState.mediaId().isEmpty())
+                .ifPresentOrElse(
+                        uploadState -> pendingUploadInstantByPath.put(file, uploadState.uploadInstant()),
+                        () -> pendingUploadInstantByPath.remove(file));
+    }
+
+    @Override
+    public boolean expired(UploadMediaItemState uploadState) {
+        return !expiry(uploadState.uploadInstant()).isAfter(currentDateTimeProvider.currentInstant());
+    }
+
+    @Override
+    public boolean nearingExpiry(UploadMediaItemState uploadState) {
+        return !expiry(uploadState.uploadInstant()).minus(NEAR_EXPIRY_MARGIN).isAfter(currentDateTimeProvider.currentInstant());
+    }
+
+    @Override
+    public void onExpired(Path file) {
+        pendingUploadInstantByPath.remove(file);
+        try {
+            bytesLostToExpiry.addAndGet(Files.size(file));
+        } catch (IOException e) {
+            logger.debug("Unable to get size of {}", file, e);
+        }
+    }
+
+    @Override
+    public Map<Path, Instant> pendingUploadInstants() {
+        var now = currentDateTimeProvider.currentInstant();
+        return pendingUploadInstantByPath.entrySet().stream()
+                .filter(entry -> expiry(entry.getValue()).isAfter(now))
+                .collect(ImmutableMap.toImmutableMap(Map.Entry::getKey, Map.Entry::getValue));
+    }
+
+    @Override
+    public long bytesLostToExpiry() {
+        return bytesLostToExpiry.get();
+    }
+
+    private static Instant expiry(Instant uploadInstant) {
+        return uploadInstant.plus(TOKEN_VALIDITY);
+    }
+}
@@ -0,0 +1,13 @@
+package net.yudichev.googlephotosupload.core;
+
+public enum UploadTransport {
+    /**
+     * Files below {@link BasePreferences#largeFileThresholdMegabytes()} are uploaded by the Google Photos client library.
+     */
+    LIBRARY,
+    /**
+     * Files below {@link BasePreferences#largeFileThresholdMegabytes()} are streamed by the app's own HTTP client, straight from the file, over a
+     * connection pool shared with the resumable uploads of large files.
+     */
+    STREAMING
+}
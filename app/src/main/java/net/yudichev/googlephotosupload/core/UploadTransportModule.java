@@ -0,0 +1,27 @@
+package net.yudichev.googlephotosupload.core;
+
+import net.yudichev.jiotty.common.inject.BaseLifecycleComponentModule;
+import okhttp3.OkHttpClient;
+
+import javax.inject.Singleton;
+
+import static net.yudichev.googlephotosupload.core.Bindings.UploadHttp;
+import static net.yudichev.googlephotosupload.core.Bindings.UploadsUrl;
+
+/**
+ * The app's own upload transports, as opposed to the one built into the Google Photos client library.
+ */
+final class UploadTransportModule extends BaseLifecycleComponentModule {
+    @Override
+    protected void configure() {
+        bind(String.class).annotatedWith(UploadsUrl.class).toInstance(UploadProtocol.UPLOADS_URL);
+        bind(OkHttpClient.class).annotatedWith(UploadHttp.class).toProvider(boundLifecycleComponent(UploadHttpClientProvider.class));
+        bind(DirectBufferPool.class).in(Singleton.class);
+        bind(UploadAuthorization.class).to(boundLifecycleComponent(UploadAuthorizationImpl.class));
+
+        bind(ResumableMediaUploader.class).to(boundLifecycleComponent(ResumableMediaUploaderImpl.class));
+        expose(ResumableMediaUploader.class);
+        bind(StreamingMediaUploader.class).to(boundLifecycleComponent(StreamingMediaUploaderImpl.class));
+        expose(StreamingMediaUploader.class);
+    }
+}
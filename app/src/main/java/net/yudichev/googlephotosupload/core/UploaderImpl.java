@@ -1,17 +1,26 @@
 package net.yudichev.googlephotosupload.core;
 
+import net.yudichev.jiotty.connector.google.photos.GooglePhotosAlbum;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.inject.Inject;
 import java.nio.file.Path;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.OptionalLong;
 import java.util.ResourceBundle;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
 
 import static com.google.common.base.Preconditions.checkNotNull;
-import static net.yudichev.jiotty.common.lang.CompletableFutures.toFutureOfList;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static java.util.Comparator.comparing;
+import static java.util.Comparator.naturalOrder;
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static net.yudichev.googlephotosupload.core.Bindings.ByteTransfer;
 
 final class UploaderImpl implements Uploader {
     private static final Logger logger = LoggerFactory.getLogger(UploaderImpl.class);
@@ -23,6 +32,10 @@ final class UploaderImpl implements Uploader {
     private final UploadStateManager uploadStateManager;
     private final ResourceBundle resourceBundle;
     private final DriveSpaceTracker driveSpaceTracker;
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+    private final PreferencesManager preferencesManager;
+    private final UploadTokenTracker uploadTokenTracker;
+    private final BandwidthLimiter bandwidthLimiter;
 
     @Inject
     UploaderImpl(GooglePhotosUploader googlePhotosUploader,
@@ -32,7 +45,11 @@ final class UploaderImpl implements Uploader {
                  ProgressStatusFactory progressStatusFactory,
                  UploadStateManager uploadStateManager,
                  ResourceBundle resourceBundle,
-                 DriveSpaceTracker driveSpaceTracker) {
+                 DriveSpaceTracker driveSpaceTracker,
+                 @ByteTransfer AdaptiveConcurrencyLimiter concurrencyLimiter,
+                 PreferencesManager preferencesManager,
+                 UploadTokenTracker uploadTokenTracker,
+                 BandwidthLimiter bandwidthLimiter) {
         this.googlePhotosUploader = checkNotNull(googlePhotosUploader);
         this.directoryStructureSupplier = checkNotNull(directoryStructureSupplier);
         this.albumManager = checkNotNull(albumManager);
@@ -41,6 +58,10 @@ final class UploaderImpl implements Uploader {
         this.uploadStateManager = checkNotNull(uploadStateManager);
         this.resourceBundle = checkNotNull(resourceBundle);
         this.driveSpaceTracker = checkNotNull(driveSpaceTracker);
+        this.concurrencyLimiter = checkNotNull(concurrencyLimiter);
+        this.preferencesManager = checkNotNull(preferencesManager);
+        this.uploadTokenTracker = checkNotNull(uploadTokenTracker);
+        this.bandwidthLimiter = checkNotNull(bandwidthLimiter);
     }
 
     @Override
@@ -63,22 +84,38 @@ final class UploaderImpl implements Uploader {
                                                         progressStatusFactory.create(
                                                                 resourceBundle.getString("uploaderAlbumProgressTitle"),
                                                                 Optional.of(albumDirectories.size()));
+                                                IntConsumer concurrencyLimitListener =
+                                                        limit -> fileProgressStatus.onConcurrencyLimitChange(limit, concurrencyLimiter.limitHistory());
+                                                concurrencyLimiter.addLimitChangeListener(concurrencyLimitListener);
+                                                Consumer<OptionalLong> bandwidthLimitListener = fileProgressStatus::onBandwidthLimitChange;
+                                                bandwidthLimiter.addLimitChangeListener(bandwidthLimitListener);
+                                                fileProgressStatus.onBandwidthLimitChange(bandwidthLimiter.currentLimit());
                                                 try {
-                                                    return albumDirectories.stream()
-                                                            .map(albumDirectory -> googlePhotosUploader
-                                                                    .uploadDirectory(
-                                                                            albumDirectory.albumTitle().map(albumsByTitle::get),
-                                                                            albumDirectory.files(),
-                                                                            directoryProgressStatus,
-                                                                            fileProgressStatus)
-                                                                    .thenRun(directoryProgressStatus::incrementSuccess))
-                                                            .collect(toFutureOfList())
+                                                    // only a bounded window of directories is in progress at any time, so that the amount of
+                                                    // in-flight state does not depend on the size of the library
+                                                    return finalizePendingUploads(albumDirectories, albumsByTitle)
+                                                            .thenCompose(ignored2 -> SlidingWindow.run(
+                                                                    albumDirectories.stream()
+                                                                            .sorted(UploadOrdering.directoryOrder(preferencesManager.get().uploadOrder()))
+                                                                            .iterator(),
+                                                                    preferencesManager.get().maxActiveDirectories(),
+                                                                    albumDirectory -> googlePhotosUploader
+                                                                            .uploadDirectory(
+                                                                                    albumDirectory.albumTitle().map(albumsByTitle::get),
+                                                                                    albumDirectory.files(),
+                                                                                    directoryProgressStatus,
+                                                                                    fileProgressStatus)
+                                                                            .thenRun(directoryProgressStatus::incrementSuccess)))
                                                             .whenComplete((ignored2, e) -> {
+                                                                concurrencyLimiter.removeLimitChangeListener(concurrencyLimitListener);
+                                                                bandwidthLimiter.removeLimitChangeListener(bandwidthLimitListener);
                                                                 directoryProgressStatus.close(e == null);
                                                                 fileProgressStatus.close(e == null);
                                                             })
                                                             .thenRun(() -> logger.info("All done without fatal errors"));
                                                 } catch (RuntimeException e) {
+                                                    concurrencyLimiter.removeLimitChangeListener(concurrencyLimitListener);
+                                                    bandwidthLimiter.removeLimitChangeListener(bandwidthLimitListener);
                                                     directoryProgressStatus.closeUnsuccessfully();
                                                     fileProgressStatus.closeUnsuccessfully();
                                                     throw e;
@@ -96,4 +133,40 @@ final class UploaderImpl implements Uploader {
     public void forgetUploadState() {
         googlePhotosUploader.forgetUploadStateOnShutdown();
     }
+
+    /**
+     * Creates media items for the files uploaded by a previous run whose upload tokens are still valid, before any new file is uploaded, so
+     * that these tokens do not expire while waiting behind new uploads. Directories with the oldest tokens go first.
+     */
+    private CompletableFuture<Void> finalizePendingUploads(List<AlbumDirectory> albumDirectories, Map<String, GooglePhotosAlbum> albumsByTitle) {
+        var pendingUploadInstants = uploadTokenTracker.pendingUploadInstants();
+        if (pendingUploadInstants.isEmpty()) {
+            return completedFuture(null);
+        }
+        List<AlbumDirectory> directoriesWithPendingUploads = albumDirectories.stream()
+                .map(albumDirectory -> albumDirectory.withFiles(albumDirectory.files().stream()
+                        .filter(pendingUploadInstants::containsKey)
+                        .collect(toImmutableList())))
+                .filter(albumDirectory -> !albumDirectory.files().isEmpty())
+                .sorted(comparing(albumDirectory -> albumDirectory.files().stream()
+                        .map(pendingUploadInstants::get)
+                        .min(naturalOrder())
+                        .orElseThrow()))
+                .collect(toImmutableList());
+        if (directoriesWithPendingUploads.isEmpty()) {
+            return completedFuture(null);
+        }
+        var fileCount = directoriesWithPendingUploads.stream().mapToInt(albumDirectory -> albumDirectory.files().size()).sum();
+        logger.info("Finalizing {} previously uploaded item(s) in {} directories", fileCount, directoriesWithPendingUploads.size());
+        var progressStatus = progressStatusFactory.create(resourceBundle.getString("uploaderResumeProgressTitle"), Optional.of(fileCount));
+        return SlidingWindow.run(
+                directoriesWithPendingUploads.iterator(),
+                preferencesManager.get().maxActiveDirectories(),
+                albumDirectory -> googlePhotosUploader.uploadDirectory(
+                        albumDirectory.albumTitle().map(albumsByTitle::get),
+                        albumDirectory.files(),
+                        progressStatus,
+                        progressStatus))
+                .whenComplete((ignored, e) -> progressStatus.close(e == null));
+    }
 }
@@ -20,6 +20,7 @@ import java.util.Optional;
 import java.util.ResourceBundle;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
 import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.regex.Pattern;
@@ -43,6 +44,7 @@ public final class PreferencesDialogController implements PreferencesManager {
     private final CustomCredentials customCredentials;
     private final RelevantDir relevantDir;
     private final DriveSpace driveSpace;
+    private final Performance performance;
 
     public TitledPane uploaderStrategyChoiceContainer;
     public PreferencePatternEditorController excludePanelController;
@@ -67,6 +69,26 @@ public final class PreferencesDialogController implements PreferencesManager {
     public TextField driveSpaceFreeSpaceRadioTextField;
     public RadioButton driveSpaceDisabledRadioButton;
 
+    public TextField uploadThreadCountTextField;
+    public TextField uploadQueueCapacityTextField;
+    public CheckBox virtualThreadsCheckBox;
+    public CheckBox streamingUploadTransportCheckBox;
+    public CheckBox adaptiveConcurrencyCheckBox;
+    public CheckBox streamingMediaItemCreationCheckBox;
+    public CheckBox crossDirectoryMediaItemBatchingCheckBox;
+    public TextField virtualThreadPermitCountTextField;
+    public TextField metadataThreadCountTextField;
+    public TextField metadataChannelCountTextField;
+    public TextField listingThreadCountTextField;
+    public TextField maxActiveDirectoriesTextField;
+    public TextField maxInFlightFilesTextField;
+    public TextField maxMegabytesInFlightTextField;
+    public TextField largeFileThresholdMegabytesTextField;
+    public TextField resumableUploadChunkMegabytesTextField;
+    public TextField bandwidthScheduleTextField;
+    public TextField smallFileLaneConcurrencyTextField;
+    public TextField largeFileLaneConcurrencyTextField;
+
     private Preferences preferences;
 
     @Inject
@@ -82,6 +104,7 @@ public final class PreferencesDialogController implements PreferencesManager {
         albumDelimiter = new AlbumDelimiter();
         relevantDir = new RelevantDir();
         driveSpace = new DriveSpace();
+        performance = new Performance();
         this.restarter = checkNotNull(restarter);
         this.resourceBundle = checkNotNull(resourceBundle);
         try {
@@ -106,6 +129,7 @@ public final class PreferencesDialogController implements PreferencesManager {
             albumDelimiter.initialise();
             relevantDir.initialise();
             driveSpace.initialise();
+            performance.initialise();
             customCredentials.initialise();
         });
     }
@@ -484,4 +508,83 @@ public final class PreferencesDialogController implements PreferencesManager {
             }
         }
     }
+
+    private final class Performance {
+        private final Pattern POSITIVE_INTEGER_PATTERN = Pattern.compile("[1-9]\\d{0,3}");
+
+        public void initialise() {
+            bindPositiveInteger(uploadThreadCountTextField, preferences.uploadThreadCount(), Preferences::withUploadThreadCount);
+            bindPositiveInteger(uploadQueueCapacityTextField, preferences.uploadQueueCapacity(), Preferences::withUploadQueueCapacity);
+            bindPositiveInteger(virtualThreadPermitCountTextField, preferences.virtualThreadPermitCount(), Preferences::withVirtualThreadPermitCount);
+            bindPositiveInteger(metadataThreadCountTextField, preferences.metadataThreadCount(), Preferences::withMetadataThreadCount);
+            bindPositiveInteger(metadataChannelCountTextField, preferences.metadataChannelCount(), Preferences::withMetadataChannelCount);
+            bindPositiveInteger(listingThreadCountTextField, preferences.listingThreadCount(), Preferences::withListingThreadCount);
+            bindPositiveInteger(maxActiveDirectoriesTextField, preferences.maxActiveDirectories(), Preferences::withMaxActiveDirectories);
+            bindPositiveInteger(maxInFlightFilesTextField, preferences.maxInFlightFiles(), Preferences::withMaxInFlightFiles);
+            bindPositiveInteger(maxMegabytesInFlightTextField, preferences.maxMegabytesInFlight(), Preferences::withMaxMegabytesInFlight);
+            bindPositiveInteger(largeFileThresholdMegabytesTextField, preferences.largeFileThresholdMegabytes(), Preferences::withLargeFileThresholdMegabytes);
+            bindPositiveInteger(smallFileLaneConcurrencyTextField, preferences.smallFileLaneConcurrency(), Preferences::withSmallFileLaneConcurrency);
+            bindPositiveInteger(largeFileLaneConcurrencyTextField, preferences.largeFileLaneConcurrency(), Preferences::withLargeFileLaneConcurrency);
+            bindPositiveInteger(resumableUploadChunkMegabytesTextField, preferences.resumableUploadChunkMegabytes(),
+                    Preferences::withResumableUploadChunkMegabytes);
+            bandwidthScheduleTextField.setText(BandwidthSchedules.format(preferences.bandwidthSchedule()));
+            bandwidthScheduleTextField.textProperty().addListener((observable, oldValue, newValue) -> {
+                List<BandwidthLimitWindow> schedule;
+                try {
+                    schedule = BandwidthSchedules.parse(newValue);
+                } catch (IllegalArgumentException e) {
+                    // not finished typing yet
+                    return;
+                }
+                inLock(lock, () -> {
+                    preferences = preferences.withBandwidthSchedule(schedule);
+                    savePreferences();
+                });
+            });
+            virtualThreadsCheckBox.setSelected(preferences.uploadExecutionMode() == UploadExecutionMode.VIRTUAL_THREADS);
+            virtualThreadsCheckBox.selectedProperty().addListener((observable, oldValue, newValue) -> inLock(lock, () -> {
+                preferences = preferences.withUploadExecutionMode(newValue ? UploadExecutionMode.VIRTUAL_THREADS : UploadExecutionMode.PLATFORM_THREADS);
+                savePreferences();
+            }));
+            streamingUploadTransportCheckBox.setSelected(preferences.uploadTransport() == UploadTransport.STREAMING);
+            streamingUploadTransportCheckBox.selectedProperty().addListener((observable, oldValue, newValue) -> inLock(lock, () -> {
+                preferences = preferences.withUploadTransport(newValue ? UploadTransport.STREAMING : UploadTransport.LIBRARY);
+                savePreferences();
+            }));
+            adaptiveConcurrencyCheckBox.setSelected(preferences.adaptiveConcurrency());
+            adaptiveConcurrencyCheckBox.selectedProperty().addListener((observable, oldValue, newValue) -> inLock(lock, () -> {
+                preferences = preferences.withAdaptiveConcurrency(newValue);
+                savePreferences();
+            }));
+            streamingMediaItemCreationCheckBox.setSelected(preferences.streamingMediaItemCreation());
+            streamingMediaItemCreationCheckBox.selectedProperty().addListener((observable, oldValue, newValue) -> inLock(lock, () -> {
+                preferences = preferences.withStreamingMediaItemCreation(newValue);
+                savePreferences();
+            }));
+            crossDirectoryMediaItemBatchingCheckBox.setSelected(preferences.crossDirectoryMediaItemBatching());
+            crossDirectoryMediaItemBatchingCheckBox.selectedProperty().addListener((observable, oldValue, newValue) -> inLock(lock, () -> {
+                preferences = preferences.withCrossDirectoryMediaItemBatching(newValue);
+                savePreferences();
+            }));
+        }
+
+        private void bindPositiveInteger(TextField textField, int initialValue, BiFunction<Preferences, Integer, Preferences> preferencesUpdater) {
+            var textFormatter = new TextFormatter<>(
+                    new IntegerStringConverter(),
+                    initialValue,
+                    change -> change.getControlNewText().isEmpty() || change.getControlNewText().equals(change.getControlText())
+                            || POSITIVE_INTEGER_PATTERN.matcher(change.getControlNewText()).matches() ? change : null);
+            textFormatter.valueProperty().addListener((observable, oldValue, newValue) -> {
+                if (newValue == null) {
+                    textFormatter.setValue(oldValue);
+                } else {
+                    inLock(lock, () -> {
+                        preferences = preferencesUpdater.apply(preferences, newValue);
+                        savePreferences();
+                    });
+                }
+            });
+            textField.setTextFormatter(textFormatter);
+        }
+    }
 }
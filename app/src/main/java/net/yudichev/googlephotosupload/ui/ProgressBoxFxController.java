@@ -13,10 +13,13 @@ import net.yudichev.googlephotosupload.core.KeyedError;
 import javax.inject.Inject;
 import java.time.Duration;
 import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.OptionalLong;
 import java.util.ResourceBundle;
 
 import static com.google.common.base.Preconditions.checkNotNull;
+import static java.util.stream.Collectors.joining;
 import static javafx.animation.Animation.INDEFINITE;
 import static javafx.application.Platform.runLater;
 
@@ -33,9 +36,14 @@ public final class ProgressBoxFxController {
     public ImageView backoffInfoIcon;
     public GridPane topPane;
     public Label descriptionLabel;
+    public Label concurrencyLabel;
+    public Label stallCountLabel;
+    public Label bandwidthLimitLabel;
+    public Label bytesLostToExpiryLabel;
     private Optional<Integer> totalCount;
     private SepiaToneEffectAnimatedNode animatedBackoffInfoIcon;
     private Tooltip backoffTooltip;
+    private Tooltip concurrencyTooltip;
     private Dialog failuresDialog;
     private int successCount;
 
@@ -54,6 +62,10 @@ public final class ProgressBoxFxController {
         backoffTooltip.setShowDuration(javafx.util.Duration.INDEFINITE);
         Tooltip.install(backoffInfoIcon, backoffTooltip);
         animatedBackoffInfoIcon = new SepiaToneEffectAnimatedNode(backoffInfoIcon, INDEFINITE);
+        concurrencyTooltip = new Tooltip();
+        concurrencyTooltip.setWrapText(true);
+        concurrencyTooltip.setPrefWidth(400);
+        Tooltip.install(concurrencyLabel, concurrencyTooltip);
     }
 
     public void init(String name, Optional<Integer> totalCount) {
@@ -128,6 +140,40 @@ public final class ProgressBoxFxController {
         });
     }
 
+    public void onConcurrencyLimitChange(int currentLimit, List<Integer> limitHistory) {
+        runLater(() -> {
+            concurrencyLabel.setText(String.format(resourceBundle.getString("progressConcurrencyLimit"), currentLimit));
+            concurrencyTooltip.setText(String.format(resourceBundle.getString("progressConcurrencyLimitHistory"),
+                    limitHistory.stream().map(String::valueOf).collect(joining(" → "))));
+            concurrencyLabel.setVisible(true);
+        });
+    }
+
+    public void onStallCountChange(int stallCount) {
+        runLater(() -> {
+            stallCountLabel.setText(String.format(resourceBundle.getString("progressStallCount"), stallCount));
+            stallCountLabel.setManaged(true);
+            stallCountLabel.setVisible(true);
+        });
+    }
+
+    public void onBandwidthLimitChange(OptionalLong bytesPerSecond) {
+        runLater(() -> {
+            bytesPerSecond.ifPresent(limit -> bandwidthLimitLabel.setText(
+                    String.format(resourceBundle.getString("progressBandwidthLimit"), limit / 1024)));
+            bandwidthLimitLabel.setManaged(bytesPerSecond.isPresent());
+            bandwidthLimitLabel.setVisible(bytesPerSecond.isPresent());
+        });
+    }
+
+    public void onBytesLostToExpiryChange(long totalBytes) {
+        runLater(() -> {
+            bytesLostToExpiryLabel.setText(String.format(resourceBundle.getString("progressBytesLostToExpiry"), totalBytes / (1024 * 1024)));
+            bytesLostToExpiryLabel.setManaged(true);
+            bytesLostToExpiryLabel.setVisible(true);
+        });
+    }
+
     public void failureCountHyperlinkAction(ActionEvent actionEvent) {
         failuresDialog.show();
         actionEvent.consume();
@@ -7,7 +7,9 @@ import net.yudichev.googlephotosupload.core.KeyedError;
 
 import javax.inject.Inject;
 import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.OptionalLong;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 final class ProgressStatusBarImpl implements ProgressStatusBar {
@@ -56,6 +58,26 @@ final class ProgressStatusBarImpl implements ProgressStatusBar {
         controller.onBackoffDelay(backoffDelayMs);
     }
 
+    @Override
+    public void onConcurrencyLimitChange(int currentLimit, List<Integer> limitHistory) {
+        controller.onConcurrencyLimitChange(currentLimit, limitHistory);
+    }
+
+    @Override
+    public void onStallCountChange(int stallCount) {
+        controller.onStallCountChange(stallCount);
+    }
+
+    @Override
+    public void onBandwidthLimitChange(OptionalLong bytesPerSecond) {
+        controller.onBandwidthLimitChange(bytesPerSecond);
+    }
+
+    @Override
+    public void onBytesLostToExpiryChange(long totalBytes) {
+        controller.onBytesLostToExpiryChange(totalBytes);
+    }
+
     @Override
     public Node node() {
         return root;
@@ -3,6 +3,8 @@ package net.yudichev.googlephotosupload.ui;
 import net.yudichev.googlephotosupload.core.KeyedError;
 
 import java.util.Collection;
+import java.util.List;
+import java.util.OptionalLong;
 
 interface ProgressValueUpdater {
     void updateSuccess(int newValue);
@@ -16,4 +18,12 @@ interface ProgressValueUpdater {
     void completed(boolean success);
 
     void onBackoffDelay(long backoffDelayMs);
+
+    void onConcurrencyLimitChange(int currentLimit, List<Integer> limitHistory);
+
+    void onStallCountChange(int stallCount);
+
+    void onBandwidthLimitChange(OptionalLong bytesPerSecond);
+
+    void onBytesLostToExpiryChange(long totalBytes);
 }
@@ -31,6 +31,7 @@ final class ThrottlingProgressStatus implements ProgressStatus {
     private final Map<Event, ThrottlingConsumer<Runnable>> eventSinksByEvent;
     private final AtomicInteger successCount = new AtomicInteger();
     private final AtomicInteger totalCount = new AtomicInteger();
+    private final AtomicInteger stallCount = new AtomicInteger();
     private final AtomicReference<String> description = new AtomicReference<>();
     private final BlockingQueue<KeyedError> pendingErrors = new ArrayBlockingQueue<>(65536);
     private final SchedulingExecutor executor;
@@ -89,6 +90,31 @@ final class ThrottlingProgressStatus implements ProgressStatus {
         eventSinksByEvent.get(Event.ON_BACKOFF_DELAY).accept(() -> delegate.onBackoffDelay(backoffDelayMs));
     }
 
+    @Override
+    public void onConcurrencyLimitChange(int currentLimit, List<Integer> limitHistory) {
+        ensureNotClosed();
+        eventSinksByEvent.get(Event.ON_CONCURRENCY_LIMIT_CHANGE).accept(() -> delegate.onConcurrencyLimitChange(currentLimit, limitHistory));
+    }
+
+    @Override
+    public void onTransferStalled() {
+        ensureNotClosed();
+        stallCount.incrementAndGet();
+        eventSinksByEvent.get(Event.ON_TRANSFER_STALLED).accept(() -> delegate.onStallCountChange(stallCount.get()));
+    }
+
+    @Override
+    public void onBandwidthLimitChange(OptionalLong bytesPerSecond) {
+        ensureNotClosed();
+        eventSinksByEvent.get(Event.ON_BANDWIDTH_LIMIT_CHANGE).accept(() -> delegate.onBandwidthLimitChange(bytesPerSecond));
+    }
+
+    @Override
+    public void onBytesLostToExpiry(long totalBytes) {
+        ensureNotClosed();
+        eventSinksByEvent.get(Event.ON_BYTES_LOST_TO_EXPIRY).accept(() -> delegate.onBytesLostToExpiryChange(totalBytes));
+    }
+
     @Override
     public void close(boolean success) {
         closed = true;
@@ -117,6 +143,10 @@ final class ThrottlingProgressStatus implements ProgressStatus {
         UPDATE_DESC,
         ADD_FAILURES,
         ON_BACKOFF_DELAY,
+        ON_CONCURRENCY_LIMIT_CHANGE,
+        ON_TRANSFER_STALLED,
+        ON_BANDWIDTH_LIMIT_CHANGE,
+        ON_BYTES_LOST_TO_EXPIRY,
     }
 
     @BindingAnnotation
@@ -0,0 +1,116 @@
+package net.yudichev.googlephotosupload.core;
+
+import com.google.api.gax.grpc.GrpcStatusCode;
+import com.google.api.gax.rpc.ResourceExhaustedException;
+import io.grpc.Status;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class AdaptiveConcurrencyLimiterImplTest {
+    private static final int MAX_LIMIT = 6;
+
+    private final List<CompletableFuture<String>> actions = new ArrayList<>();
+    private final AtomicInteger startedActionCount = new AtomicInteger();
+    private AdaptiveConcurrencyLimiterImpl limiter;
+
+    @BeforeEach
+    void setUp() {
+        var preferencesManager = mock(PreferencesManager.class);
+        when(preferencesManager.get()).thenReturn(Preferences.builder()
+                .setAdaptiveConcurrency(true)
+                .setMaxAdaptiveConcurrency(MAX_LIMIT)
+                .build());
+        limiter = new AdaptiveConcurrencyLimiterImpl.MetadataCalls(preferencesManager);
+        limiter.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        limiter.stop();
+    }
+
+    @Test
+    void limitStartsLowAndGrowsUpToCeiling() {
+        assertThat(limiter.currentLimit(), is(4));
+
+        for (var i = 0; i < 1000; i++) {
+            limiter.withPermit(Runnable::run, 0, () -> completedFuture(null));
+        }
+
+        assertThat(limiter.currentLimit(), is(MAX_LIMIT));
+    }
+
+    @Test
+    void overloadHalvesLimitOncePerEpisode() {
+        startActions(2);
+
+        var overload = new ResourceExhaustedException(new RuntimeException("quota"), GrpcStatusCode.of(Status.Code.RESOURCE_EXHAUSTED), true);
+        actions.get(0).completeExceptionally(overload);
+        actions.get(1).completeExceptionally(overload);
+
+        assertThat(limiter.currentLimit(), is(2));
+        assertThat(limiter.limitHistory(), is(List.of(4, 2)));
+    }
+
+    @Test
+    void otherFailuresDoNotDecreaseLimit() {
+        startActions(1);
+
+        actions.get(0).completeExceptionally(new IllegalStateException("not an overload"));
+
+        assertThat(limiter.currentLimit(), is(4));
+    }
+
+    @Test
+    void waiterIsAdmittedOnItsOwnExecutorWhenPermitIsReleased() {
+        startActions(4);
+        List<Runnable> waiterExecutorTasks = new ArrayList<>();
+
+        var waiterResult = limiter.withPermit(waiterExecutorTasks::add, 0, this::startAction);
+        assertThat(startedActionCount.get(), is(4));
+
+        actions.get(0).complete("done");
+        assertThat(startedActionCount.get(), is(4));
+        assertThat(waiterExecutorTasks.size(), is(1));
+
+        waiterExecutorTasks.get(0).run();
+        assertThat(startedActionCount.get(), is(5));
+        actions.get(4).complete("waiter done");
+        assertThat(waiterResult.getNow(null), is("waiter done"));
+    }
+
+    @Test
+    void failedActionReleasesPermit() {
+        startActions(4);
+        actions.forEach(action -> action.completeExceptionally(new IllegalStateException("failed")));
+
+        startActions(4);
+
+        assertThat(startedActionCount.get(), is(8));
+    }
+
+    private void startActions(int count) {
+        for (var i = 0; i < count; i++) {
+            limiter.withPermit(Runnable::run, 0, this::startAction);
+        }
+    }
+
+    private CompletableFuture<String> startAction() {
+        startedActionCount.incrementAndGet();
+        var action = new CompletableFuture<String>();
+        actions.add(action);
+        return action;
+    }
+}
@@ -0,0 +1,98 @@
+package net.yudichev.googlephotosupload.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+
+class AsyncSemaphoreTest {
+    private final AsyncSemaphore semaphore = new AsyncSemaphore(4);
+
+    @Test
+    void grantsAvailablePermitsImmediately() {
+        assertThat(semaphore.acquire(3).isDone(), is(true));
+        assertThat(semaphore.acquire(1).isDone(), is(true));
+        assertThat(semaphore.acquire(1).isDone(), is(false));
+        assertThat(semaphore.availablePermits(), is(0L));
+        assertThat(semaphore.queueLength(), is(1));
+    }
+
+    @Test
+    void grantsWaitersByPriorityThenInArrivalOrder() {
+        semaphore.acquire(4);
+        List<String> grantOrder = new ArrayList<>();
+        semaphore.acquire(4, 5).thenRun(() -> grantOrder.add("low priority"));
+        semaphore.acquire(4, 1).thenRun(() -> grantOrder.add("first of high priority"));
+        semaphore.acquire(4, 1).thenRun(() -> grantOrder.add("second of high priority"));
+        semaphore.acquire(4, 0).thenRun(() -> grantOrder.add("highest priority"));
+
+        for (var i = 0; i < 4; i++) {
+            semaphore.release(4);
+        }
+
+        assertThat(grantOrder, contains("highest priority", "first of high priority", "second of high priority", "low priority"));
+    }
+
+    @Test
+    void bigRequestIsNotStarvedBySmallOnes() {
+        semaphore.acquire(2);
+        var big = semaphore.acquire(4);
+        var small = semaphore.acquire(1);
+
+        // 2 permits are available, but the small request queues up behind the big one
+        assertThat(small.isDone(), is(false));
+
+        semaphore.release(2);
+        assertThat(big.isDone(), is(true));
+        assertThat(small.isDone(), is(false));
+
+        semaphore.release(4);
+        assertThat(small.isDone(), is(true));
+    }
+
+    @Test
+    void releasesPermitsWhenActionFails() {
+        var failed = semaphore.withPermits(4, () -> CompletableFuture.failedFuture(new IllegalStateException("failed")));
+        var thrown = semaphore.withPermits(4, () -> {
+            throw new IllegalStateException("thrown");
+        });
+
+        assertThat(failed.isCompletedExceptionally(), is(true));
+        assertThat(thrown.isCompletedExceptionally(), is(true));
+        assertThat(semaphore.availablePermits(), is(4L));
+    }
+
+    @Test
+    void releasesPermitsWhenActionCompletes() {
+        var action = new CompletableFuture<String>();
+        var result = semaphore.withPermits(3, () -> action);
+        assertThat(semaphore.availablePermits(), is(1L));
+
+        action.complete("done");
+
+        assertThat(result.getNow(null), is("done"));
+        assertThat(semaphore.availablePermits(), is(4L));
+    }
+
+    @Test
+    void manySynchronouslyCompletingWaitersDoNotGrowTheStack() {
+        var blocker = new CompletableFuture<Void>();
+        semaphore.withPermits(4, () -> blocker);
+        List<CompletableFuture<Void>> results = new ArrayList<>();
+        for (var i = 0; i < 100_000; i++) {
+            results.add(semaphore.withPermits(4, () -> completedFuture(null)));
+        }
+
+        blocker.complete(null);
+
+        assertThat(results.stream().allMatch(result -> result.isDone() && !result.isCompletedExceptionally()), is(true));
+        assertThat(semaphore.availablePermits(), is(4L));
+        assertThat(semaphore.queueLength(), is(0));
+    }
+}
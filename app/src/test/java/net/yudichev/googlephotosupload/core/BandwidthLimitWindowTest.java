@@ -0,0 +1,42 @@
+package net.yudichev.googlephotosupload.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalTime;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+class BandwidthLimitWindowTest {
+    @Test
+    void daytimeWindowIncludesStartButNotEnd() {
+        var window = BandwidthLimitWindow.of("08:00", "19:00", 100);
+
+        assertThat(window.contains(LocalTime.of(7, 59)), is(false));
+        assertThat(window.contains(LocalTime.of(8, 0)), is(true));
+        assertThat(window.contains(LocalTime.of(18, 59)), is(true));
+        assertThat(window.contains(LocalTime.of(19, 0)), is(false));
+    }
+
+    @Test
+    void overnightWindowSpansMidnight() {
+        var window = BandwidthLimitWindow.of("22:00", "06:00", 100);
+
+        assertThat(window.contains(LocalTime.of(21, 59)), is(false));
+        assertThat(window.contains(LocalTime.of(22, 0)), is(true));
+        assertThat(window.contains(LocalTime.MIDNIGHT), is(true));
+        assertThat(window.contains(LocalTime.of(5, 59)), is(true));
+        assertThat(window.contains(LocalTime.of(6, 0)), is(false));
+        assertThat(window.contains(LocalTime.NOON), is(false));
+    }
+
+    @Test
+    void windowEndingWhenItStartsLastsAllDay() {
+        var window = BandwidthLimitWindow.of("03:00", "03:00", 100);
+
+        assertThat(window.contains(LocalTime.MIDNIGHT), is(true));
+        assertThat(window.contains(LocalTime.of(2, 59)), is(true));
+        assertThat(window.contains(LocalTime.of(3, 0)), is(true));
+        assertThat(window.contains(LocalTime.MAX), is(true));
+    }
+}
@@ -0,0 +1,98 @@
+package net.yudichev.googlephotosupload.core;
+
+import net.yudichev.jiotty.common.async.ExecutorFactory;
+import net.yudichev.jiotty.common.async.SchedulingExecutor;
+import net.yudichev.jiotty.common.time.CurrentDateTimeProvider;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class BandwidthLimiterImplTest {
+    private static final long LIMIT_KB = 1;
+    private static final long LIMIT_BYTES = LIMIT_KB * 1024;
+
+    private final CurrentDateTimeProvider currentDateTimeProvider = mock(CurrentDateTimeProvider.class);
+    private final SchedulingExecutor schedulingExecutor = mock(SchedulingExecutor.class);
+    private final List<OptionalLong> limitChanges = new CopyOnWriteArrayList<>();
+    private BandwidthLimiterImpl limiter;
+    private Runnable scheduleCheck;
+
+    @BeforeEach
+    void setUp() {
+        var preferencesManager = mock(PreferencesManager.class);
+        when(preferencesManager.get()).thenReturn(Preferences.builder()
+                .setBandwidthSchedule(List.of(BandwidthLimitWindow.of("08:00", "19:00", LIMIT_KB)))
+                .build());
+        var executorFactory = mock(ExecutorFactory.class);
+        when(executorFactory.createSingleThreadedSchedulingExecutor(anyString())).thenReturn(schedulingExecutor);
+        setTime(LocalTime.of(7, 0));
+
+        limiter = new BandwidthLimiterImpl(preferencesManager, currentDateTimeProvider, executorFactory);
+        limiter.addLimitChangeListener(limitChanges::add);
+        limiter.start();
+
+        var scheduleCheckCaptor = ArgumentCaptor.forClass(Runnable.class);
+        verify(schedulingExecutor).scheduleAtFixedRate(any(), any(), scheduleCheckCaptor.capture());
+        scheduleCheck = scheduleCheckCaptor.getValue();
+    }
+
+    @AfterEach
+    void tearDown() {
+        limiter.stop();
+    }
+
+    @Test
+    void notLimitedOutsideOfSchedule() {
+        assertThat(limiter.currentLimit(), is(OptionalLong.empty()));
+        assertThat(limiter.reserveBytes(100 * LIMIT_BYTES), is(0L));
+    }
+
+    @Test
+    void limitSwitchesOnAndOffWithSchedule() {
+        setTime(LocalTime.of(8, 0));
+        scheduleCheck.run();
+
+        assertThat(limiter.currentLimit(), is(OptionalLong.of(LIMIT_BYTES)));
+        assertThat(limiter.reserveBytes(LIMIT_BYTES), is(0L));
+        assertThat(limiter.reserveBytes(LIMIT_BYTES), greaterThan(0L));
+
+        setTime(LocalTime.of(19, 0));
+        scheduleCheck.run();
+
+        assertThat(limiter.currentLimit(), is(OptionalLong.empty()));
+        assertThat(limiter.reserveBytes(100 * LIMIT_BYTES), is(0L));
+        assertThat(limitChanges, contains(OptionalLong.of(LIMIT_BYTES), OptionalLong.empty()));
+    }
+
+    @Test
+    void listenersAreOnlyNotifiedWhenLimitChanges() {
+        setTime(LocalTime.of(8, 0));
+        scheduleCheck.run();
+        setTime(LocalTime.of(9, 0));
+        scheduleCheck.run();
+
+        assertThat(limitChanges, contains(OptionalLong.of(LIMIT_BYTES)));
+    }
+
+    private void setTime(LocalTime time) {
+        when(currentDateTimeProvider.currentInstant()).thenReturn(LocalDate.of(2020, 6, 1).atTime(time).atZone(ZoneId.systemDefault()).toInstant());
+    }
+}
@@ -0,0 +1,87 @@
+package net.yudichev.googlephotosupload.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+class ByteBudgetTest {
+    /**
+     * Small files are up to 1/16 of it, i.e. 100 bytes; large files share 3/4 of it, i.e. 1200 bytes.
+     */
+    private static final long BUDGET = 1600;
+
+    private final ByteBudget budget = new ByteBudget(BUDGET);
+    private final List<CompletableFuture<Void>> transfers = new ArrayList<>();
+
+    @Test
+    void smallFilesShareTheWholeBudget() {
+        for (var i = 0; i < 16; i++) {
+            start(100);
+        }
+        assertThat(budget.bytesInFlight(), is(BUDGET));
+
+        var waiting = start(100);
+        assertThat(transfers.size(), is(16));
+
+        transfers.get(0).complete(null);
+        assertThat(transfers.size(), is(17));
+        assertThat(waiting.isDone(), is(false));
+    }
+
+    @Test
+    void largeFilesLeaveAQuarterOfTheBudgetToSmallFiles() {
+        start(800);
+        start(800);
+        assertThat(transfers.size(), is(1));
+
+        for (var i = 0; i < 8; i++) {
+            start(100);
+        }
+        assertThat(transfers.size(), is(9));
+        assertThat(budget.bytesInFlight(), is(BUDGET));
+
+        transfers.get(0).complete(null);
+        assertThat(transfers.size(), is(10));
+    }
+
+    @Test
+    void fileBiggerThanLargeFileShareClaimsJustTheShare() {
+        start(1_000_000);
+        assertThat(transfers.size(), is(1));
+        assertThat(budget.bytesInFlight(), is(1200L));
+
+        start(100);
+        start(100);
+        assertThat(transfers.size(), is(3));
+    }
+
+    @Test
+    void emptyFileStillClaimsAByte() {
+        start(0);
+        assertThat(budget.bytesInFlight(), is(1L));
+    }
+
+    @Test
+    void releasesBytesWhenTransferFails() {
+        start(800);
+        start(50);
+
+        transfers.get(0).completeExceptionally(new IllegalStateException("failed"));
+        transfers.get(1).completeExceptionally(new IllegalStateException("failed"));
+
+        assertThat(budget.bytesInFlight(), is(0L));
+    }
+
+    private CompletableFuture<Void> start(long size) {
+        return budget.withBytes(size, () -> {
+            var transfer = new CompletableFuture<Void>();
+            transfers.add(transfer);
+            return transfer;
+        });
+    }
+}
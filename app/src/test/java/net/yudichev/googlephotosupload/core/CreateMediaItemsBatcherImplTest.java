@@ -0,0 +1,153 @@
+package net.yudichev.googlephotosupload.core;
+
+import net.yudichev.jiotty.connector.google.photos.GoogleMediaItem;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BiFunction;
+import java.util.stream.IntStream;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static net.yudichev.googlephotosupload.core.GooglePhotosUploaderImpl.GOOGLE_PHOTOS_API_BATCH_SIZE;
+import static net.yudichev.googlephotosupload.core.OptionalMatchers.emptyOptional;
+import static net.yudichev.googlephotosupload.core.OptionalMatchers.optionalWithValue;
+import static net.yudichev.jiotty.common.lang.ResultOrFailure.success;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class CreateMediaItemsBatcherImplTest {
+    private static final long NO_LINGER_FLUSH = 3_600_000;
+
+    private final PreferencesManager preferencesManager = mock(PreferencesManager.class);
+    private final UploadTokenTracker uploadTokenTracker = mock(UploadTokenTracker.class);
+    private CreateMediaItemsBatcherImpl batcher;
+
+    @AfterEach
+    void tearDown() {
+        batcher.stop();
+    }
+
+    @Test
+    void flushesBatchAsSoonAsItIsFull() {
+        start(NO_LINGER_FLUSH);
+        var createMediaItems = new RecordingCreateMediaItems();
+
+        var results = IntStream.range(0, GOOGLE_PHOTOS_API_BATCH_SIZE - 1)
+                .mapToObj(i -> batcher.create(Optional.of("album"), pathState(i), createMediaItems))
+                .collect(toImmutableList());
+        assertThat(createMediaItems.batches, hasSize(0));
+
+        batcher.create(Optional.of("album"), pathState(GOOGLE_PHOTOS_API_BATCH_SIZE - 1), createMediaItems);
+
+        assertThat(createMediaItems.batches, hasSize(1));
+        assertThat(createMediaItems.batches.get(0), hasSize(GOOGLE_PHOTOS_API_BATCH_SIZE));
+        assertThat(createMediaItems.albumIds, contains(Optional.of("album")));
+        assertThat(results.get(7).getNow(null), optionalWithValue(equalTo(PathMediaItemOrError.of(path(7), createMediaItems.mediaItem))));
+
+        batcher.create(Optional.of("album"), pathState(GOOGLE_PHOTOS_API_BATCH_SIZE), createMediaItems);
+        assertThat(createMediaItems.batches, hasSize(1));
+    }
+
+    @Test
+    void flushesIncompleteBatchAfterLingerTime() throws Exception {
+        start(50);
+        var createMediaItems = new RecordingCreateMediaItems();
+
+        var result = batcher.create(Optional.empty(), pathState(1), createMediaItems);
+
+        assertThat(result.get(5, SECONDS), optionalWithValue(equalTo(PathMediaItemOrError.of(path(1), createMediaItems.mediaItem))));
+        assertThat(createMediaItems.batches, contains(equalTo(List.of(pathState(1)))));
+    }
+
+    @Test
+    void itemNearingTokenExpiryFlushesBatchImmediately() {
+        start(NO_LINGER_FLUSH);
+        var createMediaItems = new RecordingCreateMediaItems();
+        batcher.create(Optional.empty(), pathState(2), createMediaItems);
+        when(uploadTokenTracker.nearingExpiry(any())).thenReturn(true);
+
+        batcher.create(Optional.empty(), pathState(1), createMediaItems);
+
+        assertThat(createMediaItems.batches, contains(equalTo(List.of(pathState(1), pathState(2)))));
+    }
+
+    @Test
+    void itemsOfDifferentAlbumsOrCreateFunctionsDoNotShareBatches() {
+        start(NO_LINGER_FLUSH);
+        var createMediaItems = new RecordingCreateMediaItems();
+        var otherCreateMediaItems = new RecordingCreateMediaItems();
+
+        for (var i = 0; i < GOOGLE_PHOTOS_API_BATCH_SIZE / 2; i++) {
+            batcher.create(Optional.of("album1"), pathState(i), createMediaItems);
+            batcher.create(Optional.of("album2"), pathState(i), createMediaItems);
+            batcher.create(Optional.of("album1"), pathState(i), otherCreateMediaItems);
+        }
+        assertThat(createMediaItems.batches, hasSize(0));
+        assertThat(otherCreateMediaItems.batches, hasSize(0));
+
+        for (var i = GOOGLE_PHOTOS_API_BATCH_SIZE / 2; i < GOOGLE_PHOTOS_API_BATCH_SIZE; i++) {
+            batcher.create(Optional.of("album1"), pathState(i), otherCreateMediaItems);
+        }
+        assertThat(createMediaItems.batches, hasSize(0));
+        assertThat(otherCreateMediaItems.batches, hasSize(1));
+        assertThat(otherCreateMediaItems.albumIds, contains(Optional.of("album1")));
+    }
+
+    @Test
+    void itemWithMediaIdIsNotBatched() {
+        start(NO_LINGER_FLUSH);
+        var createMediaItems = new RecordingCreateMediaItems();
+        var createdItemState = ItemState.builder().setMediaId("mediaId").build();
+
+        var result = batcher.create(Optional.empty(), PathState.of(path(1), success(createdItemState)), createMediaItems);
+
+        assertThat(result.getNow(null), is(emptyOptional()));
+    }
+
+    private void start(long lingerMillis) {
+        when(preferencesManager.get()).thenReturn(Preferences.builder().setMediaItemCreationLingerMillis(lingerMillis).build());
+        batcher = new CreateMediaItemsBatcherImpl(preferencesManager, uploadTokenTracker);
+        batcher.start();
+    }
+
+    private static Path path(int index) {
+        return Paths.get("dir", String.format("%03d.jpg", index));
+    }
+
+    private static PathState pathState(int index) {
+        return PathState.of(path(index), success(ItemState.builder()
+                .setUploadState(UploadMediaItemState.of("token" + index, Instant.ofEpochSecond(1_600_000_000)))
+                .build()));
+    }
+
+    private static final class RecordingCreateMediaItems
+            implements BiFunction<Optional<String>, List<PathState>, CompletableFuture<List<PathMediaItemOrError>>> {
+        final List<Optional<String>> albumIds = new CopyOnWriteArrayList<>();
+        final List<List<PathState>> batches = new CopyOnWriteArrayList<>();
+        final GoogleMediaItem mediaItem = mock(GoogleMediaItem.class);
+
+        @Override
+        public CompletableFuture<List<PathMediaItemOrError>> apply(Optional<String> albumId, List<PathState> pathStates) {
+            albumIds.add(albumId);
+            batches.add(pathStates);
+            return completedFuture(pathStates.stream()
+                    .map(pathState -> PathMediaItemOrError.of(pathState.path(), mediaItem))
+                    .collect(toImmutableList()));
+        }
+    }
+}
@@ -473,6 +473,20 @@ final class IntegrationTest {
         googlePhotosClient.getAllItems().forEach(mediaItem -> assertThat(mediaItem.getUploadCount(), is(2)));
     }
 
+    @Test
+    void stateWrittenBehindIsFlushedOnShutdownAndResumed() throws Exception {
+        createStandardTestFiles();
+        doUploadTest("--state-write-behind-ms", "60000");
+        getLastFailure().ifPresent(Assertions::fail);
+
+        doUploadTest("--state-write-behind-ms", "60000");
+
+        getLastFailure().ifPresent(Assertions::fail);
+        assertNoRecordedProgressErrors();
+
+        googlePhotosClient.getAllItems().forEach(mediaItem -> assertThat(mediaItem.getUploadCount(), is(1)));
+    }
+
     @Test
     void forgettingUploadStateReUploadsExistingFile() throws Exception {
         IntegrationTestUploadStarter.forgetUploadStateOnShutdown();
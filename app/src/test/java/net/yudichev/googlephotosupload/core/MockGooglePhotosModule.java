@@ -17,5 +17,10 @@ final class MockGooglePhotosModule extends BaseLifecycleComponentModule implemen
     protected void configure() {
         bind(getExposedKey()).toInstance(googlePhotosClient);
         expose(getExposedKey());
+
+        bind(ResumableMediaUploader.class).toInstance((file, executor, onProgress) -> googlePhotosClient.uploadMediaData(file, executor));
+        expose(ResumableMediaUploader.class);
+        bind(StreamingMediaUploader.class).toInstance((file, executor, onProgress) -> googlePhotosClient.uploadMediaData(file, executor));
+        expose(StreamingMediaUploader.class);
     }
 }
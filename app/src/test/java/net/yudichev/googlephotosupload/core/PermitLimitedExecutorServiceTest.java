@@ -0,0 +1,91 @@
+package net.yudichev.googlephotosupload.core;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAccumulator;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PermitLimitedExecutorServiceTest {
+    private static final int PERMIT_COUNT = 3;
+
+    private final PermitLimitedExecutorService executor =
+            new PermitLimitedExecutorService(Executors.newThreadPerTaskExecutor(Thread.ofVirtual().factory()), PERMIT_COUNT);
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        executor.shutdownNow();
+        executor.awaitTermination(5, SECONDS);
+    }
+
+    @Test
+    void permitCountBoundsTasksInFlight() throws InterruptedException {
+        var taskCount = 20;
+        var running = new AtomicInteger();
+        var maxRunning = new LongAccumulator(Math::max, 0);
+        var release = new CountDownLatch(1);
+        var done = new CountDownLatch(taskCount);
+        for (var i = 0; i < taskCount; i++) {
+            executor.execute(() -> {
+                maxRunning.accumulate(running.incrementAndGet());
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                running.decrementAndGet();
+                done.countDown();
+            });
+        }
+
+        Thread.sleep(100);
+        assertThat(maxRunning.get(), is((long) PERMIT_COUNT));
+        release.countDown();
+
+        assertThat(done.await(5, SECONDS), is(true));
+        assertThat(maxRunning.get(), is((long) PERMIT_COUNT));
+    }
+
+    @Test
+    void taskWaitingForPermitDoesNotRunOnSubmittingThread() throws InterruptedException {
+        var release = new CountDownLatch(1);
+        for (var i = 0; i < PERMIT_COUNT; i++) {
+            executor.execute(() -> {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+        var runningThread = new AtomicReference<Thread>();
+        var done = new CountDownLatch(1);
+
+        executor.execute(() -> {
+            runningThread.set(Thread.currentThread());
+            done.countDown();
+        });
+        assertThat(done.getCount(), is(1L));
+        release.countDown();
+
+        assertThat(done.await(5, SECONDS), is(true));
+        assertThat(runningThread.get(), is(not(Thread.currentThread())));
+    }
+
+    @Test
+    void rejectsTasksOnceShutDown() {
+        executor.shutdown();
+
+        assertThrows(RejectedExecutionException.class, () -> executor.execute(() -> {}));
+    }
+}
@@ -0,0 +1,124 @@
+package net.yudichev.googlephotosupload.core;
+
+import net.yudichev.jiotty.connector.google.common.GoogleAuthorization;
+import net.yudichev.jiotty.connector.google.photos.GooglePhotosAlbum;
+import net.yudichev.jiotty.connector.google.photos.GooglePhotosClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import javax.inject.Provider;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.startsWith;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class PooledGooglePhotosClientTest {
+    private static final Executor EXECUTOR = Runnable::run;
+
+    private final List<GooglePhotosClient> clients = new ArrayList<>();
+    private final List<AtomicInteger> createdCounts = new ArrayList<>();
+    private final List<List<CompletableFuture<GooglePhotosAlbum>>> callsByChannel = new ArrayList<>();
+    private PooledGooglePhotosClient pool;
+
+    @AfterEach
+    void tearDown() {
+        pool.stop();
+    }
+
+    @Test
+    void onlyConfiguredNumberOfChannelsIsCreated() {
+        start(3, MetadataChannelSelection.ROUND_ROBIN);
+
+        assertThat(createdCounts.get(0).get(), is(1));
+        assertThat(createdCounts.get(2).get(), is(1));
+        assertThat(createdCounts.get(3).get(), is(0));
+    }
+
+    @Test
+    void roundRobinTakesChannelsInTurn() {
+        start(3, MetadataChannelSelection.ROUND_ROBIN);
+
+        for (var i = 0; i < 6; i++) {
+            pool.getAlbum("album", EXECUTOR);
+        }
+
+        for (var i = 0; i < 3; i++) {
+            verify(clients.get(i), times(2)).getAlbum("album", EXECUTOR);
+        }
+        verify(clients.get(3), never()).getAlbum(any(), any());
+    }
+
+    @Test
+    void leastLoadedPicksChannelWithFewestCallsInFlight() {
+        start(2, MetadataChannelSelection.LEAST_LOADED);
+
+        pool.getAlbum("album", EXECUTOR);
+        pool.getAlbum("album", EXECUTOR);
+        pool.getAlbum("album", EXECUTOR);
+        assertThat(callsByChannel.get(0).size(), is(2));
+        assertThat(callsByChannel.get(1).size(), is(1));
+
+        callsByChannel.get(0).forEach(call -> call.complete(null));
+        pool.getAlbum("album", EXECUTOR);
+        pool.getAlbum("album", EXECUTOR);
+
+        assertThat(callsByChannel.get(0).size(), is(4));
+        assertThat(callsByChannel.get(1).size(), is(1));
+    }
+
+    @Test
+    void statsCountCallsFailuresAndMaxInFlightPerChannel() {
+        start(2, MetadataChannelSelection.ROUND_ROBIN);
+
+        for (var i = 0; i < 4; i++) {
+            pool.getAlbum("album", EXECUTOR);
+        }
+        callsByChannel.get(0).get(0).complete(null);
+        callsByChannel.get(0).get(1).completeExceptionally(new RuntimeException("failed"));
+        callsByChannel.get(1).get(0).complete(null);
+
+        assertThat(pool.channelStats(), contains(
+                startsWith("2 calls, 1 failed, max 2 in flight"),
+                startsWith("1 calls, 0 failed, max 2 in flight")));
+    }
+
+    private void start(int channelCount, MetadataChannelSelection selection) {
+        List<Provider<GooglePhotosClient>> channelProviders = new ArrayList<>();
+        for (var i = 0; i < PhotosChannelPoolModule.MAX_CHANNEL_COUNT; i++) {
+            var client = mock(GooglePhotosClient.class);
+            List<CompletableFuture<GooglePhotosAlbum>> calls = new ArrayList<>();
+            when(client.getAlbum(any(), any())).thenAnswer(invocation -> {
+                var call = new CompletableFuture<GooglePhotosAlbum>();
+                calls.add(call);
+                return call;
+            });
+            var createdCount = new AtomicInteger();
+            clients.add(client);
+            createdCounts.add(createdCount);
+            callsByChannel.add(calls);
+            channelProviders.add(() -> {
+                createdCount.incrementAndGet();
+                return client;
+            });
+        }
+        var preferencesManager = mock(PreferencesManager.class);
+        when(preferencesManager.get()).thenReturn(Preferences.builder()
+                .setMetadataChannelCount(channelCount)
+                .setMetadataChannelSelection(selection)
+                .build());
+        pool = new PooledGooglePhotosClient(channelProviders, preferencesManager, mock(GoogleAuthorization.class));
+        pool.start();
+    }
+}
@@ -6,10 +6,12 @@ import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
 
 import java.nio.file.Paths;
+import java.time.LocalTime;
 
 import static net.yudichev.googlephotosupload.core.OptionalMatchers.emptyOptional;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 class PreferencesTest {
     @SuppressWarnings("deprecation")
@@ -92,6 +94,20 @@ class PreferencesTest {
         assertThat(preferences.shouldIncludePath(Paths.get("a.html")), is(true));
     }
 
+    @Test
+    void uploadPoolDefaultsToSingleThread() {
+        var preferences = Preferences.builder().build();
+
+        assertThat(preferences.uploadThreadCount(), is(1));
+        assertThat(preferences.uploadQueueCapacity(), is(2));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {0, -1})
+    void rejectsNonPositiveUploadThreadCount(int threadCount) {
+        assertThrows(IllegalArgumentException.class, () -> Preferences.builder().setUploadThreadCount(threadCount).build());
+    }
+
     @ParameterizedTest
     @ValueSource(strings = {
             "/path/to/picasa.ini",
@@ -112,4 +128,28 @@ class PreferencesTest {
 
         assertThat(preferences.shouldIncludePath(Paths.get(path)), is(false));
     }
-}
\ No newline at end of file
+
+    @Test
+    void bandwidthScheduleRoundTripsThroughText() {
+        var schedule = BandwidthSchedules.parse("08:00-19:00=5120, 22:00-06:00=20000");
+
+        assertThat(schedule, contains(BandwidthLimitWindow.of("08:00", "19:00", 5120), BandwidthLimitWindow.of("22:00", "06:00", 20000)));
+        assertThat(BandwidthSchedules.format(schedule), is("08:00-19:00=5120, 22:00-06:00=20000"));
+    }
+
+    @Test
+    void bandwidthLimitWindowSpansMidnightIfItEndsBeforeItStarts() {
+        var window = BandwidthLimitWindow.of("22:00", "06:00", 1);
+
+        assertThat(window.contains(LocalTime.of(23, 0)), is(true));
+        assertThat(window.contains(LocalTime.of(5, 59)), is(true));
+        assertThat(window.contains(LocalTime.of(6, 0)), is(false));
+        assertThat(window.contains(LocalTime.of(12, 0)), is(false));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"8:00-19:00=5120", "08:00-25:00=5120", "08:00-19:00=0", "08:00-19:00"})
+    void invalidBandwidthScheduleIsRejected(String value) {
+        assertThrows(IllegalArgumentException.class, () -> BandwidthSchedules.parse(value));
+    }
+}
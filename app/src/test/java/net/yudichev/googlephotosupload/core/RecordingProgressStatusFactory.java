@@ -1,8 +1,10 @@
 package net.yudichev.googlephotosupload.core;
 
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.OptionalLong;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.locks.Lock;
@@ -82,6 +84,22 @@ final class RecordingProgressStatusFactory implements ProgressStatusFactory {
         public void onBackoffDelay(long backoffDelayMs) {
         }
 
+        @Override
+        public void onConcurrencyLimitChange(int currentLimit, List<Integer> limitHistory) {
+        }
+
+        @Override
+        public void onTransferStalled() {
+        }
+
+        @Override
+        public void onBandwidthLimitChange(OptionalLong bytesPerSecond) {
+        }
+
+        @Override
+        public void onBytesLostToExpiry(long totalBytes) {
+        }
+
         @Override
         public void close(boolean success) {
             inLock(lock, () -> {
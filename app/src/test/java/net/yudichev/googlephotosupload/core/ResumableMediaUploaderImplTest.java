@@ -0,0 +1,240 @@
+package net.yudichev.googlephotosupload.core;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import okhttp3.OkHttpClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static net.yudichev.googlephotosupload.core.UploadProtocol.COMMAND_HEADER;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.everyItem;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ResumableMediaUploaderImplTest {
+    private static final int GRANULARITY = 256 * 1024;
+    private static final int CHUNK_SIZE = 1024 * 1024;
+    private static final int FILE_SIZE = 2 * CHUNK_SIZE + CHUNK_SIZE / 2;
+
+    private final Map<Path, UploadSession> savedSessions = new ConcurrentHashMap<>();
+    private final Map<String, ByteArrayOutputStream> receivedBySession = new ConcurrentHashMap<>();
+    private final List<String> commands = new CopyOnWriteArrayList<>();
+    private final List<Integer> chunkLengths = new CopyOnWriteArrayList<>();
+    private final AtomicInteger startCount = new AtomicInteger();
+    private final AtomicLong failChunkAtOffset = new AtomicLong(-1);
+    private final AtomicInteger failedChunkResponseCode = new AtomicInteger();
+    private final AtomicInteger bytesReceivedFromFailedChunk = new AtomicInteger();
+    private final AtomicInteger queryResponseCode = new AtomicInteger(200);
+    private final UploadStateManager uploadStateManager = mock(UploadStateManager.class);
+    private final PreferencesManager preferencesManager = mock(PreferencesManager.class);
+    private HttpServer server;
+    private OkHttpClient client;
+    private ResumableMediaUploaderImpl uploader;
+    private Path file;
+    private byte[] fileContents;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/v1/uploads", this::handleStart);
+        server.createContext("/session/", this::handleSessionCommand);
+        server.start();
+
+        fileContents = new byte[FILE_SIZE];
+        new Random(42).nextBytes(fileContents);
+        file = Files.createTempFile(getClass().getSimpleName(), ".mp4");
+        Files.write(file, fileContents);
+
+        when(uploadStateManager.loadUploadSession(any())).thenAnswer(invocation -> Optional.ofNullable(savedSessions.get(invocation.<Path>getArgument(0))));
+        doAnswer(invocation -> savedSessions.put(invocation.getArgument(0), invocation.getArgument(1)))
+                .when(uploadStateManager).saveUploadSession(any(), any());
+        doAnswer(invocation -> savedSessions.remove(invocation.<Path>getArgument(0)))
+                .when(uploadStateManager).forgetUploadSession(any());
+        when(preferencesManager.get()).thenReturn(Preferences.builder().setResumableUploadChunkMegabytes(CHUNK_SIZE / 1024 / 1024).build());
+
+        client = new OkHttpClient();
+        startUploader();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        uploader.stop();
+        client.dispatcher().executorService().shutdown();
+        client.connectionPool().evictAll();
+        server.stop(0);
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    void uploadsFileInAlignedChunksAndReturnsUploadToken() throws Exception {
+        var uploadToken = upload();
+
+        assertThat(uploadToken, is("upload-token"));
+        assertThat(startCount.get(), is(1));
+        assertThat(receivedBySession.get("1").toByteArray(), equalTo(fileContents));
+        assertThat(chunkLengths, contains(CHUNK_SIZE, CHUNK_SIZE, CHUNK_SIZE / 2));
+        assertThat(savedSessions.get(file), is(nullValue()));
+    }
+
+    @Test
+    void resumesInterruptedUploadAfterRestart() throws Exception {
+        failChunkAtOffset.set(CHUNK_SIZE);
+        failedChunkResponseCode.set(503);
+        var exception = assertThrows(ExecutionException.class, this::upload);
+        assertThat(exception.getCause(), instanceOf(InterruptedUploadException.class));
+        assertThat(savedSessions.get(file).committedOffset(), is((long) CHUNK_SIZE));
+
+        uploader.stop();
+        startUploader();
+        var uploadToken = upload();
+
+        assertThat(uploadToken, is("upload-token"));
+        assertThat(startCount.get(), is(1));
+        assertThat(commands, hasItem("query"));
+        assertThat(receivedBySession.get("1").toByteArray(), equalTo(fileContents));
+    }
+
+    @Test
+    void resumesFromUnalignedSizeReceived() throws Exception {
+        failChunkAtOffset.set(CHUNK_SIZE);
+        failedChunkResponseCode.set(503);
+        bytesReceivedFromFailedChunk.set(1000);
+        assertThrows(ExecutionException.class, this::upload);
+
+        var uploadToken = upload();
+
+        assertThat(uploadToken, is("upload-token"));
+        assertThat(receivedBySession.get("1").toByteArray(), equalTo(fileContents));
+        // only the last chunk may be of any size
+        assertThat(chunkLengths.subList(0, chunkLengths.size() - 1), everyItem(is(CHUNK_SIZE)));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {404, 410})
+    void sessionThatCannotBeResumedIsStartedOver(int queryResponseCode) throws Exception {
+        failChunkAtOffset.set(CHUNK_SIZE);
+        failedChunkResponseCode.set(503);
+        assertThrows(ExecutionException.class, this::upload);
+        this.queryResponseCode.set(queryResponseCode);
+
+        var uploadToken = upload();
+
+        assertThat(uploadToken, is("upload-token"));
+        assertThat(startCount.get(), is(2));
+        assertThat(receivedBySession.get("2").toByteArray(), equalTo(fileContents));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {404, 410})
+    void sessionExpiredWhileUploadingIsStartedOverOnRetry(int chunkResponseCode) throws Exception {
+        failChunkAtOffset.set(CHUNK_SIZE);
+        failedChunkResponseCode.set(chunkResponseCode);
+        var exception = assertThrows(ExecutionException.class, this::upload);
+        assertThat(exception.getCause(), instanceOf(InterruptedUploadException.class));
+        assertThat(savedSessions.get(file), is(nullValue()));
+
+        var uploadToken = upload();
+
+        assertThat(uploadToken, is("upload-token"));
+        assertThat(startCount.get(), is(2));
+        assertThat(commands, not(hasItem("query")));
+        assertThat(receivedBySession.get("2").toByteArray(), equalTo(fileContents));
+    }
+
+    private void startUploader() {
+        uploader = new ResumableMediaUploaderImpl(
+                () -> client,
+                uri -> Map.of("Authorization", List.of("Bearer test-token")),
+                new DirectBufferPool(64 * 1024, 2),
+                mock(BandwidthLimiter.class),
+                "http://localhost:" + server.getAddress().getPort() + "/v1/uploads",
+                uploadStateManager,
+                preferencesManager);
+        uploader.start();
+    }
+
+    private String upload() throws Exception {
+        return uploader.uploadMediaData(file, Runnable::run, () -> {}).get();
+    }
+
+    private void handleStart(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            exchange.getRequestBody().readAllBytes();
+            var sessionId = Integer.toString(startCount.incrementAndGet());
+            receivedBySession.put(sessionId, new ByteArrayOutputStream());
+            exchange.getResponseHeaders().add("X-Goog-Upload-URL", "http://localhost:" + server.getAddress().getPort() + "/session/" + sessionId);
+            exchange.getResponseHeaders().add("X-Goog-Upload-Chunk-Granularity", Integer.toString(GRANULARITY));
+            exchange.sendResponseHeaders(200, -1);
+        }
+    }
+
+    private void handleSessionCommand(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            var body = exchange.getRequestBody().readAllBytes();
+            var sessionId = exchange.getRequestURI().getPath().substring("/session/".length());
+            var received = receivedBySession.get(sessionId);
+            var command = exchange.getRequestHeaders().getFirst(COMMAND_HEADER);
+            commands.add(command);
+            if (command.equals("query")) {
+                if (queryResponseCode.get() != 200) {
+                    exchange.sendResponseHeaders(queryResponseCode.get(), -1);
+                    return;
+                }
+                exchange.getResponseHeaders().add("X-Goog-Upload-Status", "active");
+                exchange.getResponseHeaders().add("X-Goog-Upload-Size-Received", Integer.toString(received.size()));
+                exchange.sendResponseHeaders(200, -1);
+                return;
+            }
+            var offset = Long.parseLong(exchange.getRequestHeaders().getFirst("X-Goog-Upload-Offset"));
+            if (offset != received.size()) {
+                exchange.sendResponseHeaders(400, -1);
+                return;
+            }
+            if (failChunkAtOffset.compareAndSet(offset, -1)) {
+                received.write(body, 0, bytesReceivedFromFailedChunk.get());
+                exchange.sendResponseHeaders(failedChunkResponseCode.get(), -1);
+                return;
+            }
+            received.write(body);
+            chunkLengths.add(body.length);
+            if (command.equals("upload, finalize")) {
+                var response = "upload-token".getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(200, response.length);
+                exchange.getResponseBody().write(response);
+            } else {
+                exchange.sendResponseHeaders(200, -1);
+            }
+        }
+    }
+}
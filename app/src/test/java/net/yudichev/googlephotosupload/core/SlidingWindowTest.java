@@ -0,0 +1,103 @@
+package net.yudichev.googlephotosupload.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SlidingWindowTest {
+    private final List<CompletableFuture<Void>> tasks = new ArrayList<>();
+    private final AtomicInteger pulledItemCount = new AtomicInteger();
+
+    @Test
+    void keepsAtMostWindowSizeInFlightAndPullsItemsOnlyWhenAdmitted() {
+        var result = SlidingWindow.run(items(5), 2, this::startTask);
+
+        assertThat(tasks.size(), is(2));
+        assertThat(pulledItemCount.get(), is(2));
+
+        tasks.get(1).complete(null);
+        assertThat(tasks.size(), is(3));
+        assertThat(pulledItemCount.get(), is(3));
+
+        tasks.get(0).complete(null);
+        tasks.get(2).complete(null);
+        tasks.get(3).complete(null);
+        assertThat(tasks.size(), is(5));
+        assertThat(result.isDone(), is(false));
+
+        tasks.get(4).complete(null);
+        assertThat(result.isDone(), is(true));
+        assertThat(result.isCompletedExceptionally(), is(false));
+    }
+
+    @Test
+    void stopsAdmittingAfterFailureAndFailsOnceTasksInFlightComplete() {
+        var result = SlidingWindow.run(items(5), 2, this::startTask);
+
+        tasks.get(0).completeExceptionally(new IllegalStateException("failed"));
+        assertThat(tasks.size(), is(2));
+        assertThat(result.isDone(), is(false));
+
+        tasks.get(1).complete(null);
+        assertThat(tasks.size(), is(2));
+        var exception = assertThrows(Exception.class, result::join);
+        assertThat(exception.getCause(), instanceOf(IllegalStateException.class));
+    }
+
+    @Test
+    void taskThrowingIsTreatedAsFailure() {
+        var result = SlidingWindow.run(items(3), 2, item -> {
+            throw new IllegalStateException("thrown");
+        });
+
+        assertThat(result.isCompletedExceptionally(), is(true));
+        assertThat(pulledItemCount.get(), is(1));
+    }
+
+    @Test
+    void completesImmediatelyWithNoItems() {
+        assertThat(SlidingWindow.run(items(0), 2, this::startTask).isDone(), is(true));
+    }
+
+    @Test
+    void manySynchronouslyCompletingTasksDoNotGrowTheStack() {
+        var result = SlidingWindow.run(items(100_000), 4, item -> completedFuture(null));
+
+        assertThat(result.isDone(), is(true));
+        assertThat(result.isCompletedExceptionally(), is(false));
+        assertThat(pulledItemCount.get(), is(100_000));
+    }
+
+    private CompletableFuture<Void> startTask(Integer item) {
+        var task = new CompletableFuture<Void>();
+        tasks.add(task);
+        return task;
+    }
+
+    private Iterator<Integer> items(int count) {
+        var iterator = IntStream.range(0, count).iterator();
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public Integer next() {
+                pulledItemCount.incrementAndGet();
+                return iterator.next();
+            }
+        };
+    }
+}
@@ -0,0 +1,121 @@
+package net.yudichev.googlephotosupload.core;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import okhttp3.OkHttpClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+
+class StreamingMediaUploaderImplTest {
+    private static final int FILE_SIZE = 100_000;
+
+    private final AtomicReference<byte[]> receivedBody = new AtomicReference<>();
+    private final AtomicReference<String> receivedAuthorization = new AtomicReference<>();
+    private final AtomicReference<String> receivedProtocol = new AtomicReference<>();
+    private final AtomicInteger responseCode = new AtomicInteger(200);
+    private final RequestTimings requestTimings = new RequestTimings();
+    private HttpServer server;
+    private OkHttpClient client;
+    private StreamingMediaUploaderImpl uploader;
+    private Path file;
+    private byte[] fileContents;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/v1/uploads", this::handleUpload);
+        server.start();
+
+        fileContents = new byte[FILE_SIZE];
+        new Random(42).nextBytes(fileContents);
+        file = Files.createTempFile(getClass().getSimpleName(), ".jpg");
+        Files.write(file, fileContents);
+
+        client = new OkHttpClient.Builder()
+                .eventListenerFactory(requestTimings.listenerFactory())
+                .build();
+        uploader = new StreamingMediaUploaderImpl(
+                () -> client,
+                uri -> Map.of("Authorization", List.of("Bearer test-token")),
+                new DirectBufferPool(8 * 1024, 2),
+                mock(BandwidthLimiter.class),
+                "http://localhost:" + server.getAddress().getPort() + "/v1/uploads");
+        uploader.start();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        uploader.stop();
+        client.dispatcher().executorService().shutdown();
+        client.connectionPool().evictAll();
+        server.stop(0);
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    void streamsFileAndReturnsUploadToken() throws Exception {
+        var progressCount = new AtomicInteger();
+
+        var uploadToken = uploader.uploadMediaData(file, Runnable::run, progressCount::incrementAndGet).get();
+
+        assertThat(uploadToken, is("upload-token"));
+        assertThat(receivedBody.get(), equalTo(fileContents));
+        assertThat(receivedAuthorization.get(), is("Bearer test-token"));
+        assertThat(receivedProtocol.get(), is("raw"));
+        // 8K buffer - progress reported as each buffer is sent
+        assertThat(progressCount.get(), greaterThan(10));
+        assertThat(requestTimings.requestCount(), is(1L));
+        assertThat(requestTimings.bytesSent(), is((long) FILE_SIZE));
+    }
+
+    @Test
+    void serverErrorIsRetryable() {
+        responseCode.set(503);
+
+        var exception = assertThrows(ExecutionException.class, () -> uploader.uploadMediaData(file, Runnable::run, () -> {}).get());
+
+        assertThat(exception.getCause(), instanceOf(InterruptedUploadException.class));
+    }
+
+    @Test
+    void clientErrorIsNotRetryable() {
+        responseCode.set(400);
+
+        var exception = assertThrows(ExecutionException.class, () -> uploader.uploadMediaData(file, Runnable::run, () -> {}).get());
+
+        assertThat(exception.getCause(), instanceOf(IllegalStateException.class));
+    }
+
+    private void handleUpload(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            receivedBody.set(exchange.getRequestBody().readAllBytes());
+            receivedAuthorization.set(exchange.getRequestHeaders().getFirst("Authorization"));
+            receivedProtocol.set(exchange.getRequestHeaders().getFirst(UploadProtocol.PROTOCOL_HEADER));
+            var response = "upload-token".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(responseCode.get(), response.length);
+            exchange.getResponseBody().write(response);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package net.yudichev.googlephotosupload.core;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+class TokenBucketTest {
+    private static final long SECOND = 1_000_000_000L;
+    private TokenBucket bucket;
+
+    @BeforeEach
+    void setUp() {
+        bucket = new TokenBucket(2, 2, 0);
+    }
+
+    @Test
+    void burstUpToCapacityIsNotDelayed() {
+        assertThat(bucket.reserve(1, 0), is(0L));
+        assertThat(bucket.reserve(1, 0), is(0L));
+    }
+
+    @Test
+    void callersQueueUpBehindEachOtherOnceCapacityIsExhausted() {
+        bucket.reserve(2, 0);
+
+        assertThat(bucket.reserve(1, 0), is(SECOND / 2));
+        assertThat(bucket.reserve(1, 0), is(SECOND));
+    }
+
+    @Test
+    void refillsOverTimeButNotBeyondCapacity() {
+        bucket.reserve(2, 0);
+
+        assertThat(bucket.reserve(1, SECOND / 2), is(0L));
+        assertThat(bucket.reserve(2, 10 * SECOND), is(0L));
+        assertThat(bucket.reserve(1, 10 * SECOND), is(SECOND / 2));
+    }
+
+    @Test
+    void reservationBiggerThanCapacityGoesIntoDebt() {
+        assertThat(bucket.reserve(6, 0), is(2 * SECOND));
+        assertThat(bucket.reserve(1, 2 * SECOND), is(SECOND / 2));
+    }
+}
@@ -0,0 +1,122 @@
+package net.yudichev.googlephotosupload.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.BooleanSupplier;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TransferWatchdogTest {
+    private static final Duration SHORT = Duration.ofMillis(100);
+    private static final Duration LONG = Duration.ofHours(1);
+
+    private final CompletableFuture<String> transfer = new CompletableFuture<>();
+
+    @Test
+    void passesResultOfTransferThrough() throws Exception {
+        var watchdog = new TransferWatchdog("upload", LONG, LONG);
+        var result = watchdog.watch(transfer);
+        watchdog.onStarted();
+
+        transfer.complete("token");
+
+        assertThat(result.get(5, SECONDS), is("token"));
+    }
+
+    @Test
+    void overdueTransferIsAbandonedButOnlyFailsOnceItStopsRunning() throws Exception {
+        var watchdog = new TransferWatchdog("upload", SHORT, LONG);
+        var result = watchdog.watch(transfer);
+        watchdog.onStarted();
+
+        awaitCondition(transfer::isCancelled);
+        // the cancelled transfer is still winding down, holding the permits of its upload
+        Thread.sleep(SHORT.toMillis());
+        assertThat(result.isDone(), is(false));
+
+        watchdog.onFinished();
+
+        assertStalled(result);
+    }
+
+    @Test
+    void queuedTransferIsNotAbandoned() throws Exception {
+        var watchdog = new TransferWatchdog("upload", SHORT, SHORT);
+        var result = watchdog.watch(transfer);
+
+        Thread.sleep(SHORT.toMillis() * 3);
+
+        assertThat(transfer.isCancelled(), is(false));
+        assertThat(result.isDone(), is(false));
+    }
+
+    @Test
+    void stallIsOnlyDetectedAfterFirstProgress() throws Exception {
+        var watchdog = new TransferWatchdog("upload", LONG, SHORT);
+        var result = watchdog.watch(transfer);
+        watchdog.onStarted();
+
+        // e.g. still connecting
+        Thread.sleep(SHORT.toMillis() * 3);
+        assertThat(transfer.isCancelled(), is(false));
+
+        watchdog.onProgress();
+        awaitCondition(transfer::isCancelled);
+        watchdog.onFinished();
+
+        assertStalled(result);
+    }
+
+    @Test
+    void transferMakingProgressIsNotAbandoned() throws Exception {
+        var watchdog = new TransferWatchdog("upload", LONG, SHORT.multipliedBy(2));
+        var result = watchdog.watch(transfer);
+        watchdog.onStarted();
+
+        for (var i = 0; i < 12; i++) {
+            watchdog.onProgress();
+            Thread.sleep(SHORT.toMillis() / 2);
+        }
+        assertThat(transfer.isCancelled(), is(false));
+
+        transfer.complete("token");
+        watchdog.onFinished();
+        assertThat(result.get(5, SECONDS), is("token"));
+    }
+
+    @Test
+    void timeHeldBackByBandwidthLimitDoesNotCount() throws Exception {
+        var watchdog = new TransferWatchdog("upload", SHORT.multipliedBy(2), SHORT.multipliedBy(2));
+        var result = watchdog.watch(transfer);
+        watchdog.onStarted();
+        watchdog.onProgress();
+
+        watchdog.onThrottled(SHORT.multipliedBy(5).toNanos());
+        Thread.sleep(SHORT.toMillis() * 4);
+        assertThat(transfer.isCancelled(), is(false));
+
+        awaitCondition(transfer::isCancelled);
+        watchdog.onFinished();
+        assertStalled(result);
+    }
+
+    private static void assertStalled(CompletableFuture<String> result) {
+        var exception = assertThrows(ExecutionException.class, () -> result.get(5, SECONDS));
+        assertThat(exception.getCause(), instanceOf(StalledTransferException.class));
+    }
+
+    private static void awaitCondition(BooleanSupplier condition) throws InterruptedException {
+        var deadline = System.nanoTime() + SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertThat("condition not met in 5 seconds", System.nanoTime() < deadline, is(true));
+            Thread.sleep(10);
+        }
+    }
+}
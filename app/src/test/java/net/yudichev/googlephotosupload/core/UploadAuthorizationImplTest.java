@@ -0,0 +1,123 @@
+package net.yudichev.googlephotosupload.core;
+
+import com.google.auth.oauth2.AccessToken;
+import com.google.auth.oauth2.OAuth2Credentials;
+import net.yudichev.jiotty.connector.google.common.GoogleAuthorization;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static net.yudichev.jiotty.common.lang.MoreThrowables.getAsUnchecked;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.everyItem;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.startsWith;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class UploadAuthorizationImplTest {
+    private static final URI UPLOAD_URI = URI.create("https://photoslibrary.googleapis.com/v1/uploads");
+    private static final int REQUEST_COUNT = 8;
+
+    private UploadAuthorizationImpl authorization;
+
+    @AfterEach
+    void tearDown() {
+        authorization.stop();
+    }
+
+    @Test
+    void concurrentRequestsFindingExpiredTokenShareOneRefresh() throws Exception {
+        var credentials = new StubCredentials(token("token0", Duration.ofSeconds(30)));
+        start(credentials);
+        assertThat(credentials.refreshStarted.await(5, SECONDS), is(true));
+
+        var requests = new ArrayList<CompletableFuture<Map<String, List<String>>>>();
+        for (var i = 0; i < REQUEST_COUNT; i++) {
+            requests.add(CompletableFuture.supplyAsync(() -> getAsUnchecked(() -> authorization.requestHeaders(UPLOAD_URI))));
+        }
+        Thread.sleep(200);
+        credentials.allowRefresh.countDown();
+
+        for (var request : requests) {
+            assertThat(request.get(5, SECONDS), is(Map.of("Authorization", List.of("Bearer token1"))));
+        }
+        assertThat(credentials.refreshCount.get(), is(1));
+        assertThat(credentials.refreshThreadNames, everyItem(startsWith("auth-refresh-")));
+    }
+
+    @Test
+    void tokenIsRefreshedAheadOfExpiryWithoutHoldingUpRequests() throws Exception {
+        var credentials = new StubCredentials(token("token0", Duration.ofMinutes(5)));
+        start(credentials);
+        assertThat(credentials.refreshStarted.await(5, SECONDS), is(true));
+
+        assertThat(authorization.requestHeaders(UPLOAD_URI), is(Map.of("Authorization", List.of("Bearer token0"))));
+
+        credentials.allowRefresh.countDown();
+        var deadline = System.nanoTime() + SECONDS.toNanos(5);
+        while (!authorization.requestHeaders(UPLOAD_URI).equals(Map.of("Authorization", List.of("Bearer token1")))) {
+            assertThat("token not refreshed in 5 seconds", System.nanoTime() < deadline, is(true));
+            Thread.sleep(10);
+        }
+        assertThat(credentials.refreshCount.get(), is(1));
+        assertThat(credentials.refreshThreadNames, everyItem(startsWith("auth-refresh-")));
+    }
+
+    @Test
+    void tokenFarFromExpiryIsNotRefreshed() throws Exception {
+        var credentials = new StubCredentials(token("token0", Duration.ofHours(1)));
+        credentials.allowRefresh.countDown();
+        start(credentials);
+
+        assertThat(authorization.requestHeaders(UPLOAD_URI), is(Map.of("Authorization", List.of("Bearer token0"))));
+        assertThat(credentials.refreshCount.get(), is(0));
+    }
+
+    private void start(OAuth2Credentials credentials) {
+        var googleAuthorization = mock(GoogleAuthorization.class);
+        when(googleAuthorization.getCredentials()).thenReturn(credentials);
+        authorization = new UploadAuthorizationImpl(googleAuthorization);
+        authorization.start();
+    }
+
+    private static AccessToken token(String value, Duration validity) {
+        return new AccessToken(value, new Date(System.currentTimeMillis() + validity.toMillis()));
+    }
+
+    private static final class StubCredentials extends OAuth2Credentials {
+        final AtomicInteger refreshCount = new AtomicInteger();
+        final Set<String> refreshThreadNames = ConcurrentHashMap.newKeySet();
+        final CountDownLatch refreshStarted = new CountDownLatch(1);
+        final CountDownLatch allowRefresh = new CountDownLatch(1);
+
+        StubCredentials(AccessToken accessToken) {
+            super(accessToken);
+        }
+
+        @Override
+        public AccessToken refreshAccessToken() {
+            refreshThreadNames.add(Thread.currentThread().getName());
+            refreshStarted.countDown();
+            try {
+                allowRefresh.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+            return token("token" + refreshCount.incrementAndGet(), Duration.ofHours(1));
+        }
+    }
+}
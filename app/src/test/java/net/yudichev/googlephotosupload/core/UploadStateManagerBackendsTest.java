@@ -0,0 +1,321 @@
+package net.yudichev.googlephotosupload.core;
+
+import net.yudichev.jiotty.common.varstore.VarStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+import static java.nio.file.StandardOpenOption.APPEND;
+import static net.yudichev.googlephotosupload.core.OptionalMatchers.emptyOptional;
+import static net.yudichev.googlephotosupload.core.OptionalMatchers.optionalWithValue;
+import static net.yudichev.googlephotosupload.core.StateStoreBackend.H2_SQL;
+import static net.yudichev.googlephotosupload.core.StateStoreBackend.JOURNAL;
+import static net.yudichev.googlephotosupload.core.StateStoreMigration.NONE;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.anEmptyMap;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.mock;
+
+class UploadStateManagerBackendsTest {
+    private static final ItemState UPLOADED = ItemState.builder()
+            .setUploadState(UploadMediaItemState.of("token1", Instant.ofEpochSecond(1_600_000_000, 123)))
+            .build();
+    private static final ItemState CREATED = ItemState.builder()
+            .setUploadState(UploadMediaItemState.of("token2", Instant.ofEpochSecond(1_600_000_001)))
+            .setMediaId("mediaId2")
+            .build();
+    private static final ItemState CREATED_WITHOUT_UPLOAD_STATE = ItemState.builder()
+            .setMediaId("mediaId3")
+            .build();
+
+    private final VarStore varStore = mock(VarStore.class);
+    private final List<Runnable> stoppers = new ArrayList<>();
+    private Path settingsRoot;
+    private Path file1;
+    private Path file2;
+    private Path file3;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        settingsRoot = Files.createTempDirectory(getClass().getSimpleName());
+        file1 = settingsRoot.resolve("album1").resolve("1.jpg");
+        file2 = settingsRoot.resolve("album1").resolve("2.jpg");
+        file3 = settingsRoot.resolve("album2").resolve("1.jpg");
+    }
+
+    @AfterEach
+    void tearDown() {
+        stopAll();
+    }
+
+    @ParameterizedTest
+    @EnumSource(StateStoreBackend.class)
+    void itemStatesSurviveRestart(StateStoreBackend backend) {
+        var stateManager = start(backend, NONE);
+        stateManager.saveItemState(file1, CREATED);
+        stateManager.saveItemState(file1, UPLOADED);
+        stateManager.saveItemState(file2, CREATED);
+        stateManager.saveItemState(file3, CREATED_WITHOUT_UPLOAD_STATE);
+
+        stopAll();
+        stateManager = start(backend, NONE);
+
+        assertThat(stateManager.itemCount(), is(3));
+        assertThat(stateManager.loadItemStates(List.of(file1, file3, settingsRoot.resolve("album1").resolve("3.jpg"))),
+                equalTo(Map.of(file1, UPLOADED, file3, CREATED_WITHOUT_UPLOAD_STATE)));
+        assertThat(stateManager.loadItemStatesPendingMediaCreation(), equalTo(Map.of(file1, UPLOADED)));
+        assertThat(stateManager.loadUploadedMediaItemIdByAbsolutePath(), equalTo(Map.of(
+                file1.toString(), UPLOADED,
+                file2.toString(), CREATED,
+                file3.toString(), CREATED_WITHOUT_UPLOAD_STATE)));
+    }
+
+    @ParameterizedTest
+    @EnumSource(StateStoreBackend.class)
+    void itemLeavesPendingMediaCreationOnceCreated(StateStoreBackend backend) {
+        var stateManager = start(backend, NONE);
+        stateManager.saveItemState(file1, UPLOADED);
+        stateManager.saveItemState(file2, UPLOADED);
+        stateManager.saveItemState(file2, CREATED);
+
+        stopAll();
+        stateManager = start(backend, NONE);
+
+        assertThat(stateManager.loadItemStatesPendingMediaCreation(), equalTo(Map.of(file1, UPLOADED)));
+        stateManager.saveItemState(file1, CREATED);
+        assertThat(stateManager.loadItemStatesPendingMediaCreation(), is(anEmptyMap()));
+    }
+
+    @ParameterizedTest
+    @EnumSource(StateStoreBackend.class)
+    void stateWrittenBehindIsWrittenOnStop(StateStoreBackend backend) {
+        var stateManager = start(backend, NONE);
+        stateManager.setWriteBehindWindow(Duration.ofMinutes(1));
+        stateManager.saveItemState(file1, CREATED);
+
+        stopAll();
+        stateManager = start(backend, NONE);
+
+        assertThat(stateManager.loadItemStates(List.of(file1)), equalTo(Map.of(file1, CREATED)));
+    }
+
+    @ParameterizedTest
+    @EnumSource(StateStoreBackend.class)
+    void uploadSessionsSurviveRestart(StateStoreBackend backend) {
+        var session = UploadSession.of("http://upload/1", 256 * 1024, 1_000_000, Instant.ofEpochSecond(1_600_000_000, 5), 262_144);
+        var stateManager = start(backend, NONE);
+        stateManager.saveUploadSession(file1, session);
+        stateManager.saveUploadSession(file2, session);
+        stateManager.forgetUploadSession(file2);
+
+        stopAll();
+        stateManager = start(backend, NONE);
+
+        assertThat(stateManager.loadUploadSession(file1), optionalWithValue(equalTo(session)));
+        assertThat(stateManager.loadUploadSession(file2), emptyOptional());
+    }
+
+    @ParameterizedTest
+    @EnumSource(StateStoreBackend.class)
+    void forgetsState(StateStoreBackend backend) {
+        var stateManager = start(backend, NONE);
+        stateManager.saveItemState(file1, CREATED);
+        stateManager.forgetState();
+
+        stopAll();
+        stateManager = start(backend, NONE);
+
+        assertThat(stateManager.itemCount(), is(0));
+        assertThat(stateManager.loadUploadedMediaItemIdByAbsolutePath(), is(anEmptyMap()));
+    }
+
+    @ParameterizedTest
+    @EnumSource(StateStoreBackend.class)
+    void migratesStateOfAnotherBackend(StateStoreBackend backend) {
+        var sourceBackend = backend == H2_SQL ? JOURNAL : H2_SQL;
+        var source = start(sourceBackend, NONE);
+        source.saveItemState(file1, UPLOADED);
+        source.saveItemState(file3, CREATED);
+        stopAll();
+
+        var stateManager = start(backend, new StateStoreMigrationImpl(backend, varStore, h2DbPath(), mvStorePath(), journalBasePath()));
+
+        assertThat(stateManager.loadUploadedMediaItemIdByAbsolutePath(), equalTo(Map.of(file1.toString(), UPLOADED, file3.toString(), CREATED)));
+        stopAll();
+        // and only once
+        assertThat(start(sourceBackend, NONE).itemCount(), is(0));
+    }
+
+    @ParameterizedTest
+    @EnumSource(StateStoreBackend.class)
+    void migratesStateOfFormerLogBackend(StateStoreBackend backend) throws IOException {
+        var logPath = settingsRoot.resolve(LegacyStateLog.FILE_NAME);
+        try (var output = new DataOutputStream(Files.newOutputStream(logPath))) {
+            output.writeByte(1);
+            output.writeUTF(file1.toString());
+            StateRecords.writeItemState(output, CREATED);
+            output.writeByte(2);
+            output.writeUTF(file2.toString());
+            output.writeInt(3);
+            output.write(new byte[]{1, 2, 3});
+            output.writeByte(1);
+            output.writeUTF(file1.toString());
+            StateRecords.writeItemState(output, UPLOADED);
+            output.writeByte(1);
+            output.writeUTF(file3.toString());
+            // cut short by a crash
+            output.writeByte(1);
+        }
+
+        var stateManager = start(backend, new StateStoreMigrationImpl(backend, varStore, h2DbPath(), mvStorePath(), journalBasePath()));
+
+        assertThat(stateManager.loadUploadedMediaItemIdByAbsolutePath(), equalTo(Map.of(file1.toString(), UPLOADED)));
+        assertThat(Files.exists(logPath), is(false));
+    }
+
+    @Test
+    void migratesItemsOfFlatTableToNormalizedSchema() throws SQLException {
+        try (var connection = DriverManager.getConnection("jdbc:h2:" + h2DbPath().toAbsolutePath(), "sa", "")) {
+            try (var statement = connection.createStatement()) {
+                statement.execute("CREATE TABLE MEDIA_ITEMS(" +
+                        "PATH VARCHAR(4096) PRIMARY KEY, " +
+                        "TOKEN VARCHAR(1024), " +
+                        "UPL_TIMESTAMP TIMESTAMP WITH TIME ZONE, " +
+                        "MEDIA_ID VARCHAR(256)" +
+                        ");");
+            }
+            try (var insert = connection.prepareStatement("INSERT INTO MEDIA_ITEMS (PATH, TOKEN, UPL_TIMESTAMP, MEDIA_ID) VALUES (?,?,?,?)")) {
+                insertFlatTableRow(insert, file1, UPLOADED);
+                insertFlatTableRow(insert, file2, CREATED);
+                insertFlatTableRow(insert, file3, CREATED_WITHOUT_UPLOAD_STATE);
+            }
+        }
+
+        var stateManager = start(H2_SQL, NONE);
+
+        assertThat(stateManager.itemCount(), is(3));
+        assertThat(stateManager.loadItemStates(List.of(file1, file2, file3)),
+                equalTo(Map.of(file1, UPLOADED, file2, CREATED, file3, CREATED_WITHOUT_UPLOAD_STATE)));
+        stopAll();
+        try (var connection = DriverManager.getConnection("jdbc:h2:" + h2DbPath().toAbsolutePath(), "sa", "");
+             var tables = connection.getMetaData().getTables(null, null, "MEDIA_ITEMS", null)) {
+            assertThat(tables.next(), is(false));
+        }
+        // and only once
+        assertThat(start(H2_SQL, NONE).itemCount(), is(3));
+    }
+
+    @Test
+    void journalRecordCutShortByCrashIsDropped() throws IOException {
+        var stateManager = start(JOURNAL, NONE);
+        stateManager.saveItemState(file1, CREATED);
+        // writes a snapshot
+        stateManager.forgetState();
+        stateManager.saveItemState(file2, UPLOADED);
+        stopAll();
+        Files.write(lastJournal(), new byte[]{0, 0, 1, 0, 42, 42}, APPEND);
+
+        stateManager = start(JOURNAL, NONE);
+        assertThat(stateManager.loadUploadedMediaItemIdByAbsolutePath(), equalTo(Map.of(file2.toString(), UPLOADED)));
+        stateManager.saveItemState(file3, CREATED);
+        stopAll();
+
+        stateManager = start(JOURNAL, NONE);
+        assertThat(stateManager.loadUploadedMediaItemIdByAbsolutePath(), equalTo(Map.of(file2.toString(), UPLOADED, file3.toString(), CREATED)));
+    }
+
+    @Test
+    void zeroFilledJournalTailIsDropped() throws IOException {
+        var stateManager = start(JOURNAL, NONE);
+        stateManager.saveItemState(file1, CREATED);
+        stopAll();
+        // left by a crash on file systems that extend the file before writing the data
+        Files.write(lastJournal(), new byte[4096], APPEND);
+
+        stateManager = start(JOURNAL, NONE);
+        assertThat(stateManager.loadUploadedMediaItemIdByAbsolutePath(), equalTo(Map.of(file1.toString(), CREATED)));
+        stateManager.saveItemState(file2, UPLOADED);
+        stopAll();
+
+        stateManager = start(JOURNAL, NONE);
+        assertThat(stateManager.loadUploadedMediaItemIdByAbsolutePath(), equalTo(Map.of(file1.toString(), CREATED, file2.toString(), UPLOADED)));
+    }
+
+    @Test
+    void journalLargerThanReadWindowIsReplayed() {
+        var stateManager = start(JOURNAL, NONE);
+        stateManager.setWriteBehindWindow(Duration.ofMinutes(1));
+        // a few megabytes of records, read back a window at a time
+        var itemCount = 50_000;
+        for (var i = 0; i < itemCount; i++) {
+            stateManager.saveItemState(settingsRoot.resolve("album" + i / 100).resolve(i + ".jpg"), CREATED);
+        }
+        stopAll();
+
+        stateManager = start(JOURNAL, NONE);
+        assertThat(stateManager.itemCount(), is(itemCount));
+        assertThat(stateManager.loadItemStates(List.of(settingsRoot.resolve("album499").resolve("49999.jpg"))),
+                equalTo(Map.of(settingsRoot.resolve("album499").resolve("49999.jpg"), CREATED)));
+    }
+
+    private Path lastJournal() throws IOException {
+        try (var journals = Files.list(settingsRoot)) {
+            return journals.filter(file -> file.getFileName().toString().startsWith("state.journal."))
+                    .max(Comparator.naturalOrder())
+                    .orElseThrow();
+        }
+    }
+
+    private static void insertFlatTableRow(PreparedStatement insert, Path file, ItemState itemState) throws SQLException {
+        insert.setString(1, file.toString());
+        insert.setString(2, itemState.uploadState().map(UploadMediaItemState::token).orElse(null));
+        insert.setObject(3, itemState.uploadState().map(UploadMediaItemState::uploadInstant).orElse(null));
+        insert.setString(4, itemState.mediaId().orElse(null));
+        insert.executeUpdate();
+    }
+
+    private UploadStateManager start(StateStoreBackend backend, StateStoreMigration migration) {
+        var stateManager = switch (backend) {
+            case H2_SQL -> new UploadStateManagerImpl(varStore, h2DbPath(), migration);
+            case H2_MV_STORE -> new MvStoreUploadStateManager(mvStorePath(), migration);
+            case JOURNAL -> new JournalUploadStateManager(journalBasePath(), migration);
+        };
+        stateManager.start();
+        stoppers.add(stateManager::stop);
+        return stateManager;
+    }
+
+    private void stopAll() {
+        stoppers.forEach(Runnable::run);
+        stoppers.clear();
+    }
+
+    private Path h2DbPath() {
+        return settingsRoot.resolve("data");
+    }
+
+    private Path mvStorePath() {
+        return settingsRoot.resolve("state.mvstore");
+    }
+
+    private Path journalBasePath() {
+        return settingsRoot.resolve("state");
+    }
+}
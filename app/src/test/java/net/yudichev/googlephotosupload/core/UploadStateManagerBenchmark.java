@@ -0,0 +1,99 @@
+package net.yudichev.googlephotosupload.core;
+
+import net.yudichev.jiotty.common.inject.BaseLifecycleComponent;
+import net.yudichev.jiotty.common.varstore.VarStore;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import static net.yudichev.googlephotosupload.core.StateStoreMigration.NONE;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Compares the state store backends on a synthetic archive: put throughput (in write-behind mode, as during a bulk upload), size on disk,
+ * start time, and time of the full scan. Not run by default; to run, give it the number of items (and, if 8g is not enough, the heap size in
+ * {@code stateStoreBenchmark.maxHeapSize}), e.g.
+ * {@code ./gradlew test --tests '*UploadStateManagerBenchmark' -DstateStoreBenchmark.itemCount=1000000}. Results are logged.
+ */
+@EnabledIfSystemProperty(named = UploadStateManagerBenchmark.ITEM_COUNT_PROPERTY, matches = "\\d+")
+class UploadStateManagerBenchmark {
+    static final String ITEM_COUNT_PROPERTY = "stateStoreBenchmark.itemCount";
+    private static final Logger logger = LoggerFactory.getLogger(UploadStateManagerBenchmark.class);
+    private static final int FILES_PER_DIRECTORY = 500;
+    /**
+     * Upload tokens are long opaque strings.
+     */
+    private static final String TOKEN_PREFIX = "CAIS6QIAaBz4IjUQvQZpT2dTqtRm0VAWcTVDzRgMNk5ssbvXkd2aHcIFWVWOvrHpzGb1ahqFIRQE4hWaDbnKd9QmD5WZ5yXb9wP3hp-";
+    private static final String MEDIA_ID_PREFIX = "AF1QipNqT3bWQ4Xk1zBb5yIuLrPsvx2CmW9ZtV7e8D0aJhKgFoNiEsRlMwUdYcHpAq-";
+
+    private final VarStore varStore = mock(VarStore.class);
+
+    @ParameterizedTest
+    @EnumSource(StateStoreBackend.class)
+    void benchmark(StateStoreBackend backend) throws IOException {
+        var settingsRoot = Files.createTempDirectory(getClass().getSimpleName());
+        switch (backend) {
+            case H2_SQL -> benchmark(backend, settingsRoot, () -> new UploadStateManagerImpl(varStore, settingsRoot.resolve("data"), NONE));
+            case H2_MV_STORE -> benchmark(backend, settingsRoot, () -> new MvStoreUploadStateManager(settingsRoot.resolve("state.mvstore"), NONE));
+            case JOURNAL -> benchmark(backend, settingsRoot, () -> new JournalUploadStateManager(settingsRoot.resolve("state"), NONE));
+        }
+    }
+
+    private static <T extends BaseLifecycleComponent & UploadStateManager> void benchmark(StateStoreBackend backend,
+                                                                                       Path settingsRoot,
+                                                                                       Supplier<T> stateManagerFactory) throws IOException {
+        var itemCount = Integer.getInteger(ITEM_COUNT_PROPERTY);
+        var uploadRoot = Paths.get("/photos/archive");
+
+        var stateManager = stateManagerFactory.get();
+        var startNanos = System.nanoTime();
+        stateManager.start();
+        stateManager.setWriteBehindWindow(Duration.ofSeconds(1));
+        for (var i = 0; i < itemCount; i++) {
+            var file = uploadRoot.resolve("year" + i / 100_000).resolve("album" + i / FILES_PER_DIRECTORY).resolve("IMG_" + i + ".jpg");
+            var itemStateBuilder = ItemState.builder()
+                    .setUploadState(UploadMediaItemState.of(TOKEN_PREFIX + i, Instant.ofEpochSecond(1_600_000_000L + i)));
+            // the tail of the archive is still awaiting media item creation
+            if (i < itemCount * 9L / 10) {
+                itemStateBuilder.setMediaId(MEDIA_ID_PREFIX + i);
+            }
+            stateManager.saveItemState(file, itemStateBuilder.build());
+        }
+        stateManager.setWriteBehindWindow(Duration.ZERO);
+        var putNanos = System.nanoTime() - startNanos;
+        stateManager.stop();
+        var diskBytes = diskSize(settingsRoot);
+
+        stateManager = stateManagerFactory.get();
+        startNanos = System.nanoTime();
+        stateManager.start();
+        var startupNanos = System.nanoTime() - startNanos;
+        startNanos = System.nanoTime();
+        var loadedItemCount = stateManager.loadUploadedMediaItemIdByAbsolutePath().size();
+        var fullScanNanos = System.nanoTime() - startNanos;
+        stateManager.stop();
+
+        assertThat(loadedItemCount, is(itemCount));
+        logger.info("{} with {} items: {} puts/s, {} MB on disk, start {}ms, full scan {}ms",
+                backend, itemCount, itemCount * 1_000_000_000L / putNanos, diskBytes / 1024 / 1024, startupNanos / 1_000_000, fullScanNanos / 1_000_000);
+    }
+
+    private static long diskSize(Path dir) throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            return files.filter(Files::isRegularFile).mapToLong(file -> file.toFile().length()).sum();
+        }
+    }
+}